@@ -0,0 +1,164 @@
+package com.uam.auxiliar;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de soluciones paso a paso direccionada por contenido.<p>
+ * La clave combina el tipo de scriptlet, la expresión LaTeX normalizada, la variable, x0 y
+ * una huella del código Python que se ejecuta (el preludio y el trabajo ya armado), de modo
+ * que al editar una plantilla de Python o la traducción de LaTeX a SymPy las entradas
+ * anteriores dejan de coincidir solas.<p>
+ * Tiene dos niveles: uno en memoria con política LRU y otro en disco que sobrevive
+ * entre ejecuciones (un archivo por solución, nombrado con la huella SHA-256 de la clave).
+ */
+public class CacheSoluciones {
+
+    private final Map<String, String> memoria;
+    private final Path directorio;
+
+    private final AtomicLong aciertosMemoria = new AtomicLong();
+    private final AtomicLong aciertosDisco = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+
+    /**
+     * @param capacidadMemoria número máximo de soluciones en memoria
+     * @param directorio directorio del nivel en disco, o null para usar sólo memoria
+     */
+    public CacheSoluciones(int capacidadMemoria, Path directorio) {
+        this.directorio = directorio;
+        this.memoria = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> mayor) {
+                if (size() > capacidadMemoria) {
+                    desalojos.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Arma la clave de una solicitud. La expresión se normaliza quitando los espacios.
+     *
+     * @param solicitud problema a resolver
+     * @param huellaPreludio {@link #huella} del preludio, calculada una sola vez
+     * @param trabajo código Python que la resuelve, ya armado
+     * @return clave de la cache
+     */
+    public static String clave(SolicitudSimbolica solicitud, String huellaPreludio, String trabajo) {
+        return solicitud.getTipo() + "|" + solicitud.getExpresion().replaceAll("\\s+", "") + "|"
+                + solicitud.getVariable() + "|" + solicitud.getX0() + "|" + huella(huellaPreludio + "\n" + trabajo);
+    }
+
+    /**
+     * @param clave clave armada con {@link #clave}
+     * @return la solución guardada o null si no está en ningún nivel
+     */
+    public String obtener(String clave) {
+        String solucion;
+        synchronized (memoria) {
+            solucion = memoria.get(clave);
+        }
+        if (solucion != null) {
+            aciertosMemoria.incrementAndGet();
+            return solucion;
+        }
+        if (directorio != null) {
+            Path archivo = archivo(clave);
+            if (Files.exists(archivo)) {
+                try {
+                    solucion = new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8);
+                    aciertosDisco.incrementAndGet();
+                    synchronized (memoria) {
+                        memoria.put(clave, solucion);
+                    }
+                    return solucion;
+                } catch (IOException e) {
+                    System.err.format("Leyendo cache IOException: %s%n", e);
+                }
+            }
+        }
+        fallos.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Guarda una solución en ambos niveles. Las soluciones vacías (fallas de Python) no se guardan.
+     *
+     * @param clave clave armada con {@link #clave}
+     * @param solucion solución paso a paso en HTML
+     */
+    public void guardar(String clave, String solucion) {
+        if (solucion == null || solucion.isEmpty()) {
+            return;
+        }
+        synchronized (memoria) {
+            memoria.put(clave, solucion);
+        }
+        if (directorio != null) {
+            Path archivo = archivo(clave);
+            try {
+                Files.createDirectories(archivo.getParent());
+                // Se escribe en un temporal y se mueve, para que otro proceso nunca lea una solución a medias
+                Path temporal = Files.createTempFile(archivo.getParent(), "sol", ".tmp");
+                Files.write(temporal, solucion.getBytes(StandardCharsets.UTF_8));
+                Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.format("Escribiendo cache IOException: %s%n", e);
+            }
+        }
+    }
+
+    private Path archivo(String clave) {
+        String nombre = huella(clave);
+        return directorio.resolve(nombre.substring(0, 2)).resolve(nombre + ".html");
+    }
+
+    /**
+     * @param texto texto a resumir
+     * @return huella SHA-256 del texto en hexadecimal
+     */
+    public static String huella(String texto) {
+        try {
+            byte[] digesto = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digesto.length * 2);
+            for (byte b : digesto) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 no está disponible en esta JVM", e);
+        }
+    }
+
+    public long getAciertosMemoria() {
+        return aciertosMemoria.get();
+    }
+
+    public long getAciertosDisco() {
+        return aciertosDisco.get();
+    }
+
+    public long getFallos() {
+        return fallos.get();
+    }
+
+    public long getDesalojos() {
+        return desalojos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Cache de soluciones: aciertos en memoria=" + aciertosMemoria + ", aciertos en disco=" + aciertosDisco
+                + ", fallos=" + fallos + ", desalojos=" + desalojos;
+    }
+}
@@ -0,0 +1,186 @@
+package com.uam.auxiliar;
+
+import com.uam.motor.Fraccion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Valores que el scriptlet calcula además del HTML de la solución, para que los generadores
+ * no tengan que recalcularlos. El scriptlet los escribe con escribe_campos al final de su
+ * "salida", cada uno en un marco de caracteres de control que no aparecen en el HTML:
+ * <pre>
+ * \x1e nombre \x1f valor \x1e
+ * </pre>
+ * Si un campo se escribe dos veces vale el último (las derivadas sucesivas reescriben
+ * "derivada" en cada orden). Los números vienen como los imprime str() de SymPy, "p" o "p/q";
+ * un valor irracional viene en decimal y no se lee como {@link Fraccion}.<p>
+ * Campos:
+ * <ul>
+ * <li>derivada: LaTeX de la derivada de mayor orden.</li>
+ * <li>derivada_x0, y0, ordenada: f'(x0), f(x0) y la ordenada al origen de la recta tangente.</li>
+ * <li>raices: raíces de la derivada separadas por comas.</li>
+ * <li>puntos: puntos con tangente horizontal, "x,y" separados por punto y coma.</li>
+ * <li>caja: caja de la gráfica como la recibe JSXGraph, xmin,ymax,xmax,ymin.</li>
+ * </ul>
+ */
+public final class DatosSolucion {
+
+    /** Marco de un campo en la salida del scriptlet. */
+    private static final Pattern CAMPO = Pattern.compile("\u001e([^\u001e\u001f]*)\u001f([^\u001e]*)\u001e");
+
+    /** Sin campos: soluciones del motor en Java, del simulado o instanciadas de una plantilla. */
+    public static final DatosSolucion VACIOS = new DatosSolucion(Collections.emptyMap());
+
+    private final Map<String, String> campos;
+
+    private DatosSolucion(Map<String, String> campos) {
+        this.campos = campos;
+    }
+
+    /**
+     * @param salida salida de un trabajo, con HTML y campos
+     * @return los campos de la salida
+     */
+    static DatosSolucion lee(String salida) {
+        if (salida.indexOf('\u001e') < 0) {
+            return VACIOS;
+        }
+        Map<String, String> campos = new LinkedHashMap<>();
+        Matcher matcher = CAMPO.matcher(salida);
+        while (matcher.find()) {
+            campos.put(matcher.group(1), matcher.group(2));
+        }
+        return new DatosSolucion(Collections.unmodifiableMap(campos));
+    }
+
+    /**
+     * @param salida salida de un trabajo, con HTML y campos
+     * @return sólo el HTML
+     */
+    static String quitaCampos(String salida) {
+        return salida.indexOf('\u001e') < 0 ? salida : CAMPO.matcher(salida).replaceAll("");
+    }
+
+    public boolean estaVacio() {
+        return campos.isEmpty();
+    }
+
+    /**
+     * @param nombre nombre del campo
+     * @return su valor tal como lo escribió el scriptlet, o null si no lo escribió
+     */
+    public String get(String nombre) {
+        return campos.get(nombre);
+    }
+
+    /**
+     * @return LaTeX de la derivada de mayor orden, o null
+     */
+    public String getDerivada() {
+        return campos.get("derivada");
+    }
+
+    /**
+     * @return f'(x0) de la recta tangente, o null si no es racional o no se calculó
+     */
+    public Fraccion getDerivadaEnX0() {
+        return numero(campos.get("derivada_x0"));
+    }
+
+    /**
+     * @return ordenada al origen de la recta tangente, o null si no es racional o no se calculó
+     */
+    public Fraccion getOrdenada() {
+        return numero(campos.get("ordenada"));
+    }
+
+    /**
+     * @return raíces de la derivada en el orden en que las dio SymPy; null en las irracionales
+     */
+    public List<Fraccion> getRaices() {
+        List<Fraccion> raices = new ArrayList<>();
+        for (String raiz : lista(campos.get("raices"), ",")) {
+            raices.add(numero(raiz));
+        }
+        return raices;
+    }
+
+    /**
+     * @return puntos con tangente horizontal {x, y}, ordenados por abscisa; sólo los racionales
+     */
+    public List<Fraccion[]> getPuntos() {
+        List<Fraccion[]> puntos = new ArrayList<>();
+        for (String punto : lista(campos.get("puntos"), ";")) {
+            String[] coordenadas = punto.split(",", 2);
+            Fraccion x = numero(coordenadas[0]);
+            Fraccion y = coordenadas.length > 1 ? numero(coordenadas[1]) : null;
+            if (x != null && y != null) {
+                puntos.add(new Fraccion[]{x, y});
+            }
+        }
+        puntos.sort(Comparator.comparing(p -> p[0]));
+        return puntos;
+    }
+
+    /**
+     * @return {xmin, ymax, xmax, ymin} de la gráfica, o null si no hay gráfica
+     */
+    public double[] getCaja() {
+        List<String> valores = lista(campos.get("caja"), ",");
+        if (valores.size() != 4) {
+            return null;
+        }
+        double[] caja = new double[4];
+        for (int i = 0; i < caja.length; i++) {
+            Fraccion fraccion = numero(valores.get(i));
+            try {
+                caja[i] = fraccion != null
+                        ? (double) fraccion.getNumerador() / fraccion.getDenominador()
+                        : Double.parseDouble(valores.get(i));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return caja;
+    }
+
+    private static List<String> lista(String valor, String separador) {
+        List<String> elementos = new ArrayList<>();
+        if (valor == null || valor.isEmpty()) {
+            return elementos;
+        }
+        for (String elemento : valor.split(separador)) {
+            elementos.add(elemento.trim());
+        }
+        return elementos;
+    }
+
+    /**
+     * @param texto "p" o "p/q" como lo imprime SymPy
+     * @return el número, o null si no es racional
+     */
+    private static Fraccion numero(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        String[] partes = texto.trim().split("/", 2);
+        try {
+            long numerador = Long.parseLong(partes[0]);
+            return partes.length == 1 ? Fraccion.de(numerador) : Fraccion.de(numerador, Long.parseLong(partes[1]));
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return campos.toString();
+    }
+}
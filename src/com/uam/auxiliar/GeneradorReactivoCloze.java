@@ -1,5 +1,11 @@
 package com.uam.auxiliar;
 
+import com.uam.utilidades.FlujosAleatorios;
+import com.uam.utilidades.MuestreadorParametros;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+
 /**
  *
  * @author Eduardo Mart&iacute;nez Cruz
@@ -10,10 +16,163 @@ public interface GeneradorReactivoCloze {
      * Genera el texto del reactivo tipo cloze listo para ser
      * vaciado al archivo de salida. No debe incluir el separador de
      * reactivos.
-     * 
+     *
+     * Si SymPy falla o agota su tiempo, se vuelve a preparar el reactivo con constantes
+     * nuevas según {@link PoliticaReintentos}; nunca se regresa con la solución en blanco.
+     *
+     * @param numeroReactivo El contador de reactivo.
+     * @return
+     * @throws java.lang.Exception
+     */
+    public default String generarReactivoCloze(int numeroReactivo) {
+        return generarReactivoCloze(numeroReactivo, 1);
+    }
+
+    /**
+     * Como {@link #generarReactivoCloze(int)}, pero empezando en un intento posterior cuando
+     * los anteriores ya fallaron (por ejemplo, dentro de un lote).
+     *
+     * @param numeroReactivo El contador de reactivo.
+     * @param primerIntento intento con el que se empieza, desde 1
+     * @return el texto del reactivo
+     */
+    public default String generarReactivoCloze(int numeroReactivo, int primerIntento) {
+        StringBuilder reactivo = new StringBuilder();
+        generarReactivoCloze(numeroReactivo, primerIntento, reactivo);
+        return reactivo.toString();
+    }
+
+    /**
+     * Como {@link #generarReactivoCloze(int)}, pero escribe el reactivo directamente al destino
+     * (por ejemplo, la salida del archivo) sin armarlo antes en una cadena.
+     *
+     * @param numeroReactivo El contador de reactivo.
+     * @param destino a donde se escribe el texto del reactivo
+     * @return el reactivo que se escribió, con sus parámetros
+     */
+    public default ReactivoPendiente generarReactivoCloze(int numeroReactivo, Appendable destino) {
+        return generarReactivoCloze(numeroReactivo, 1, destino);
+    }
+
+    /**
+     * Versión de {@link #generarReactivoCloze(int, Appendable)} que empieza en un intento posterior.
+     *
+     * @param numeroReactivo El contador de reactivo.
+     * @param primerIntento intento con el que se empieza, desde 1
+     * @param destino a donde se escribe el texto del reactivo
+     * @return el reactivo que se escribió, con sus parámetros
+     */
+    public default ReactivoPendiente generarReactivoCloze(int numeroReactivo, int primerIntento, Appendable destino) {
+        for (int intento = primerIntento; ; intento++) {
+            ReactivoPendiente reactivo = prepararReactivo(numeroReactivo, intento);
+            ResultadoSimbolico resultado = getSolucionador().resuelve(reactivo.getSolicitud());
+            if (resultado.esExitoso()) {
+                reactivo.completar(resultado, destino);
+                return reactivo;
+            }
+            PoliticaReintentos.verifica(reactivo, resultado, intento);
+        }
+    }
+
+    /**
+     * Versión asíncrona de generarReactivoCloze: muestrea los parámetros en el hilo que llama
+     * y arma el reactivo cuando llega la solución, para tener varios reactivos en vuelo.
+     *
      * @param numeroReactivo El contador de reactivo.
-     * @return 
-     * @throws java.lang.Exception 
+     * @return futuro con el texto del reactivo
+     */
+    public default CompletableFuture<String> generarReactivoClozeAsync(int numeroReactivo) {
+        return generarReactivoClozeAsync(numeroReactivo, 1);
+    }
+
+    private CompletableFuture<String> generarReactivoClozeAsync(int numeroReactivo, int intento) {
+        ReactivoPendiente reactivo = prepararReactivo(numeroReactivo, intento);
+        return getSolucionador().resuelveAsync(reactivo.getSolicitud()).thenCompose(resultado -> {
+            if (resultado.esExitoso()) {
+                return CompletableFuture.completedFuture(reactivo.completar(resultado));
+            }
+            PoliticaReintentos.verifica(reactivo, resultado, intento);
+            return generarReactivoClozeAsync(numeroReactivo, intento + 1);
+        });
+    }
+
+    /**
+     * Arma el texto del reactivo con las constantes recibidas, dejando pendiente
+     * la solución simbólica para que pueda resolverse aparte (por ejemplo, en lote).
+     * Lo demás que sea aleatorio se toma del flujo recibido, nunca de un generador compartido.
+     *
+     * @param numeroReactivo El contador de reactivo.
+     * @param parametros constantes del reactivo, tomadas de {@link #getMuestreador()}
+     * @param aleatorio flujo propio del reactivo y del intento
+     * @return el reactivo sin $SOLUCION$ y la solicitud para SymPy
+     */
+    public ReactivoPendiente prepararReactivo(int numeroReactivo, MuestreadorParametros.Parametros parametros,
+                                              SplittableRandom aleatorio);
+
+    /**
+     * @return el muestreador con las constantes del generador y sus restricciones
+     */
+    public MuestreadorParametros getMuestreador();
+
+    /**
+     * @return prefijo del comentario con el que se etiqueta cada reactivo en el archivo; le
+     * sigue el número de reactivo
+     */
+    public String getPrefijoComentario();
+
+    /**
+     * @return número de combinaciones distintas de constantes, o -1 si no se conoce; una
+     * corrida no puede pedir más reactivos que éstos
+     */
+    public default long tamanoEspacio() {
+        return getMuestreador().tamano();
+    }
+
+    /**
+     * Prepara un intento del reactivo. En el primero, el reactivo n toma la combinación n de
+     * una permutación del espacio de parámetros propia del generador y de la semilla, así que
+     * los reactivos de una corrida no se repiten. Los reintentos muestrean al azar del flujo
+     * del intento y pueden coincidir con otro reactivo.
+     *
+     * @param numeroReactivo El contador de reactivo.
+     * @param intento intento de generación, desde 1
+     * @return el reactivo sin $SOLUCION$ y la solicitud para SymPy
+     */
+    public default ReactivoPendiente prepararReactivo(int numeroReactivo, int intento) {
+        SplittableRandom aleatorio = flujoAleatorio(numeroReactivo, intento);
+        MuestreadorParametros muestreador = getMuestreador();
+        MuestreadorParametros.Parametros parametros = intento == 1 && muestreador.tamano() >= 0
+                ? muestreador.enumera(FlujosAleatorios.llave(getClass().getName()), numeroReactivo)
+                : muestreador.muestrea(aleatorio);
+        ReactivoPendiente reactivo = prepararReactivo(numeroReactivo, parametros, aleatorio);
+        reactivo.setParametros(parametros);
+        return reactivo;
+    }
+
+    /**
+     * Prepara el primer intento del reactivo.
+     *
+     * @param numeroReactivo El contador de reactivo.
+     * @return el reactivo sin $SOLUCION$ y la solicitud para SymPy
+     */
+    public default ReactivoPendiente prepararReactivo(int numeroReactivo) {
+        return prepararReactivo(numeroReactivo, 1);
+    }
+
+    /**
+     * @param numeroReactivo El contador de reactivo.
+     * @param intento intento de generación, desde 1
+     * @return el flujo aleatorio del reactivo, derivado de la semilla de la corrida y del nombre del generador
+     */
+    public default SplittableRandom flujoAleatorio(int numeroReactivo, int intento) {
+        return FlujosAleatorios.flujo(getClass().getName(), numeroReactivo, intento);
+    }
+
+    /**
+     * @return el solucionador con el que se resuelven las solicitudes de este generador;
+     * por omisión el activo de {@link RegistroSolucionadores}
      */
-    public String generarReactivoCloze(int numeroReactivo);
+    public default SolucionadorSimbolico getSolucionador() {
+        return RegistroSolucionadores.activo();
+    }
 }
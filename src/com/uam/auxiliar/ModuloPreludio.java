@@ -0,0 +1,137 @@
+package com.uam.auxiliar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Instala el preludio de Python como un paquete en disco, para que cada intérprete lo
+ * importe de su bytecode en lugar de recibir, tokenizar y compilar todo su código fuente.<p>
+ * El paquete se escribe en un subdirectorio nombrado con la huella del código, así que un
+ * preludio editado se instala junto al anterior y nunca se mezcla con él:
+ * <pre>
+ * ~/.cache/sevilla/preludio/3f1a9c0d5e7b2a46/sevilla_derivador/__init__.py
+ * ~/.cache/sevilla/preludio/3f1a9c0d5e7b2a46/sevilla_derivador/__pycache__/__init__.cpython-38.pyc
+ * </pre>
+ * El .pyc se compila con py_compile al instalar, sin revisión de fecha (el directorio ya
+ * identifica al código). La versión se arma en un directorio temporal y se mueve completa,
+ * de modo que varios procesos pueden instalar la misma a la vez.
+ */
+final class ModuloPreludio {
+
+    static final String PAQUETE = "sevilla_derivador";
+
+    /** Caracteres de la huella que nombran la versión. */
+    private static final int LONGITUD_VERSION = 16;
+    private static final long LIMITE_COMPILACION_SEGUNDOS = 60;
+
+    private static final String COMPILADOR = "import py_compile, sys\n" +
+            "py_compile.compile(sys.argv[1], doraise=True,\n" +
+            "                   invalidation_mode=py_compile.PycInvalidationMode.UNCHECKED_HASH)\n";
+
+    private ModuloPreludio() {
+    }
+
+    /**
+     * Instala el preludio si su versión no está instalada.
+     *
+     * @param fuente código Python del preludio
+     * @param directorio directorio donde se guardan las versiones
+     * @return el directorio de la versión, que va en sys.path
+     * @throws IOException si no se pudo escribir el paquete o python3 no lo pudo compilar
+     */
+    static Path instala(String fuente, Path directorio) throws IOException {
+        Path version = directorio.resolve(CacheSoluciones.huella(fuente).substring(0, LONGITUD_VERSION));
+        if (Files.isDirectory(version)) {
+            return version;
+        }
+        Files.createDirectories(directorio);
+        Path temporal = Files.createTempDirectory(directorio, version.getFileName() + ".");
+        try {
+            Path paquete = Files.createDirectory(temporal.resolve(PAQUETE));
+            Path modulo = paquete.resolve("__init__.py");
+            Files.write(modulo, fuente.getBytes(StandardCharsets.UTF_8));
+            compila(modulo);
+            try {
+                Files.move(temporal, version, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Si otro proceso la instaló primero se usa la suya
+                if (!Files.isDirectory(version)) {
+                    throw e;
+                }
+            }
+        } finally {
+            borra(temporal);
+        }
+        return version;
+    }
+
+    /**
+     * @param version directorio devuelto por {@link #instala}
+     * @return código Python que importa el preludio instalado en el espacio de nombres global
+     */
+    static String importacion(Path version) {
+        return "import sys as _sys\n" +
+                "_sys.path.insert(0, " + literal(version.toAbsolutePath().toString()) + ")\n" +
+                "from " + PAQUETE + " import *\n";
+    }
+
+    private static void compila(Path modulo) throws IOException {
+        Process p = new ProcessBuilder("python3", "-c", COMPILADOR, modulo.toString())
+                .redirectErrorStream(true)
+                .start();
+        try {
+            p.getOutputStream().close();
+            // La salida se lee en otro hilo para que el límite de tiempo corra aunque python3 no la cierre
+            ByteArrayOutputStream salida = new ByteArrayOutputStream();
+            Thread lector = new Thread(() -> {
+                try (InputStream entrada = p.getInputStream()) {
+                    entrada.transferTo(salida);
+                } catch (IOException e) {
+                    System.err.format("Leyendo py_compile IOException: %s%n", e);
+                }
+            }, "compila-preludio");
+            lector.setDaemon(true);
+            lector.start();
+            if (!p.waitFor(LIMITE_COMPILACION_SEGUNDOS, TimeUnit.SECONDS)) {
+                throw new IOException("python3 no terminó de compilar " + modulo + " en "
+                        + LIMITE_COMPILACION_SEGUNDOS + " s");
+            }
+            lector.join(TimeUnit.SECONDS.toMillis(LIMITE_COMPILACION_SEGUNDOS));
+            if (p.exitValue() != 0) {
+                throw new IOException("python3 no pudo compilar " + modulo + ":\n"
+                        + new String(salida.toByteArray(), StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compilación del preludio interrumpida", e);
+        } finally {
+            TrabajadorPython.destruyeArbol(p);
+        }
+    }
+
+    /**
+     * @return el texto como literal de cadena de Python
+     */
+    private static String literal(String texto) {
+        return "'" + texto.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    private static void borra(Path directorio) throws IOException {
+        if (!Files.exists(directorio)) {
+            return;
+        }
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            for (Path ruta : (Iterable<Path>) rutas.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(ruta);
+            }
+        }
+    }
+}
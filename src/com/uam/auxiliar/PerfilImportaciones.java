@@ -0,0 +1,181 @@
+package com.uam.auxiliar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mide con "python3 -X importtime" lo que importa cada tipo de trabajo, ejecutando el mismo
+ * script que lanza el solucionador "proceso" (DERIVADOR, APERTURA, el trabajo y CLOSER) con
+ * una expresión de muestra. Para cada tipo escribe el tiempo total de importación, los
+ * módulos de primer nivel más caros y lo que el trabajo importa además del preludio.<p>
+ * Con -Dsevilla.parseLatex=true mide el camino de parse_latex en lugar del de
+ * {@link com.uam.motor.ExpresionSympy}.
+ */
+public final class PerfilImportaciones {
+
+    /** Módulos de primer nivel que se listan por tipo de trabajo. */
+    private static final int MODULOS_LISTADOS = 10;
+
+    private PerfilImportaciones() {
+    }
+
+    /**
+     * Una línea de la salida de -X importtime.
+     */
+    private static final class Importacion {
+        private final String modulo;
+        private final long propioMicros;
+        private final long acumuladoMicros;
+        private final boolean primerNivel;
+
+        private Importacion(String modulo, long propioMicros, long acumuladoMicros, boolean primerNivel) {
+            this.modulo = modulo;
+            this.propioMicros = propioMicros;
+            this.acumuladoMicros = acumuladoMicros;
+            this.primerNivel = primerNivel;
+        }
+    }
+
+    /**
+     * @return una solicitud de muestra por tipo de trabajo
+     */
+    private static Map<String, SolicitudSimbolica> muestras() {
+        Map<String, SolicitudSimbolica> muestras = new LinkedHashMap<>();
+        muestras.put("DERIVADA", SolicitudSimbolica.derivada("\\frac{3x^{3}+1}{x-2}", "x"));
+        muestras.put("SEGUNDA_DERIVADA", SolicitudSimbolica.segundaDerivada("3x^{4}-2x^{2}+5", "x"));
+        muestras.put("DERIVADA_SUCESIVA", SolicitudSimbolica.derivadaEnesima("x^{5}-4x^{3}", 3, "x"));
+        muestras.put("RECTA_TANGENTE", SolicitudSimbolica.rectaTangente("x^{3}-2x+1", 1, "x"));
+        muestras.put("TANGENTES_HORIZONTALES", SolicitudSimbolica.tangentesHorizontales("x^{3}-3x+1", "x"));
+        return muestras;
+    }
+
+    /**
+     * Ejecuta un script con -X importtime y lee las importaciones de su salida de error.
+     *
+     * @param script código Python completo
+     * @return las importaciones en el orden en que Python las reporta
+     * @throws IOException si no se pudo lanzar python3 o terminó con error
+     */
+    private static List<Importacion> perfila(String script) throws IOException, InterruptedException {
+        Process p = new ProcessBuilder("python3", "-X", "importtime", "-")
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            ByteArrayOutputStream errores = new ByteArrayOutputStream();
+            Thread lector = new Thread(() -> {
+                try (InputStream entrada = p.getErrorStream()) {
+                    entrada.transferTo(errores);
+                } catch (IOException e) {
+                    System.err.format("Leyendo importtime IOException: %s%n", e);
+                }
+            }, "importtime");
+            lector.start();
+            try (OutputStream entrada = p.getOutputStream()) {
+                entrada.write(script.getBytes(StandardCharsets.UTF_8));
+            }
+            int codigo = p.waitFor();
+            lector.join();
+            String texto = new String(errores.toByteArray(), StandardCharsets.UTF_8);
+            if (codigo != 0) {
+                throw new IOException("Python terminó con código " + codigo + ":\n" + texto);
+            }
+            List<Importacion> importaciones = new ArrayList<>();
+            for (String linea : texto.split("\n")) {
+                Importacion importacion = leeLinea(linea);
+                if (importacion != null) {
+                    importaciones.add(importacion);
+                }
+            }
+            return importaciones;
+        } finally {
+            TrabajadorPython.destruyeArbol(p);
+        }
+    }
+
+    /**
+     * @param linea "import time:   self |   cumulative | paquete", con la sangría del paquete según su profundidad
+     * @return la importación, o null si la línea no es de importtime o es el encabezado
+     */
+    private static Importacion leeLinea(String linea) {
+        if (!linea.startsWith("import time:")) {
+            return null;
+        }
+        String[] campos = linea.substring("import time:".length()).split("\\|", 3);
+        if (campos.length < 3) {
+            return null;
+        }
+        try {
+            long propio = Long.parseLong(campos[0].trim());
+            long acumulado = Long.parseLong(campos[1].trim());
+            String paquete = campos[2].startsWith(" ") ? campos[2].substring(1) : campos[2];
+            return new Importacion(paquete.trim(), propio, acumulado, !paquete.startsWith(" "));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void reporta(PrintStream salida, String tipo, List<Importacion> importaciones, Set<String> delPreludio) {
+        long total = 0;
+        long extra = 0;
+        List<Importacion> primerNivel = new ArrayList<>();
+        List<Importacion> extras = new ArrayList<>();
+        for (Importacion importacion : importaciones) {
+            if (importacion.primerNivel) {
+                total += importacion.acumuladoMicros;
+                primerNivel.add(importacion);
+            }
+            if (delPreludio != null && !delPreludio.contains(importacion.modulo)) {
+                extra += importacion.propioMicros;
+                extras.add(importacion);
+            }
+        }
+        salida.format("== %s: %d módulos, %.1f ms%n", tipo, importaciones.size(), total / 1000.0);
+        primerNivel.sort((a, b) -> Long.compare(b.acumuladoMicros, a.acumuladoMicros));
+        for (Importacion importacion : primerNivel.subList(0, Math.min(MODULOS_LISTADOS, primerNivel.size()))) {
+            salida.format("   %10.1f ms  %s%n", importacion.acumuladoMicros / 1000.0, importacion.modulo);
+        }
+        if (delPreludio != null) {
+            salida.format("   además del preludio: %d módulos, %.1f ms%n", extras.size(), extra / 1000.0);
+            extras.sort((a, b) -> Long.compare(b.propioMicros, a.propioMicros));
+            for (Importacion importacion : extras.subList(0, Math.min(MODULOS_LISTADOS, extras.size()))) {
+                salida.format("   %10.1f ms  %s%n", importacion.propioMicros / 1000.0, importacion.modulo);
+            }
+        }
+        salida.println();
+    }
+
+    /**
+     * @param args archivo donde se escribe el perfil; sin argumentos se escribe en la salida estándar
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        PrintStream salida = args.length > 0
+                ? new PrintStream(args[0], StandardCharsets.UTF_8.name())
+                : System.out;
+        try {
+            List<Importacion> preludio = perfila(SolucionaSimbolico.preludio());
+            reporta(salida, "preludio", preludio, null);
+            Set<String> delPreludio = new HashSet<>();
+            for (Importacion importacion : preludio) {
+                delPreludio.add(importacion.modulo);
+            }
+            for (Map.Entry<String, SolicitudSimbolica> muestra : muestras().entrySet()) {
+                reporta(salida, muestra.getKey(), perfila(SolucionaSimbolico.scriptCompleto(muestra.getValue())),
+                        delPreludio);
+            }
+        } finally {
+            if (salida != System.out) {
+                salida.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.uam.auxiliar;
+
+/**
+ * Política de reintentos de los generadores: cuando SymPy falla o se agota su tiempo,
+ * el reactivo se vuelve a preparar con constantes nuevas, hasta un número máximo de intentos.
+ * Nunca se entrega un reactivo con la solución en blanco.
+ */
+public final class PoliticaReintentos {
+
+    /**
+     * Intentos por reactivo, de la propiedad "sevilla.intentosPorReactivo" (por omisión 5).
+     */
+    public static final int MAXIMOS_INTENTOS = Integer.getInteger("sevilla.intentosPorReactivo", 5);
+
+    private PoliticaReintentos() {
+    }
+
+    /**
+     * Registra la falla de un intento. Si quedan intentos, sólo la reporta para que el
+     * generador muestree constantes nuevas; si no, detiene la generación del reactivo.
+     *
+     * @param reactivo reactivo cuya solución falló
+     * @param resultado resultado fallido
+     * @param intento número del intento que falló, empezando en 1
+     */
+    public static void verifica(ReactivoPendiente reactivo, ResultadoSimbolico resultado, int intento) {
+        if (intento >= MAXIMOS_INTENTOS) {
+            throw new RuntimeException("No se pudo resolver el reactivo " + reactivo.getNumeroReactivo()
+                    + " después de " + intento + " intentos. Último error en " + reactivo.getSolicitud()
+                    + ": " + resultado);
+        }
+        System.err.format("Reactivo %d, intento %d: %s falló (%s). Se reintenta con constantes nuevas.%n",
+                reactivo.getNumeroReactivo(), intento, reactivo.getSolicitud(), resultado.getEstado());
+    }
+}
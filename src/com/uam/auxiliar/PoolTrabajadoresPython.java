@@ -0,0 +1,297 @@
+package com.uam.auxiliar;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Pool de trabajadores de Python de larga vida. Los trabajadores se crean bajo demanda
+ * hasta el tamaño configurado y se reutilizan entre preguntas, de modo que el costo de
+ * importar sympy y el preludio se paga una sola vez por trabajador.<p>
+ * Con {@link #calienta} se arrancan todos en paralelo antes de la primera pregunta, cada uno
+ * resolviendo un trabajo desechable.<p>
+ * Un trabajador se recicla (se termina y se arranca otro en segundo plano) al alcanzar el
+ * máximo de trabajos o de memoria residente, para que las caches globales de sympy no
+ * crezcan sin límite en corridas largas.<p>
+ * Si un trabajador muere, se descarta y se crea otro en su lugar.<p>
+ * En modo zigoto cada trabajador es un servidor de fork que atiende cada trabajo en un hijo
+ * (véase {@link TrabajadorPython#BUCLE_ZIGOTO}).
+ */
+public class PoolTrabajadoresPython {
+
+    private final String preludio;
+    private final int tamano;
+    private final String calentamiento;
+    private final int maximoTrabajos;
+    private final long maximaMemoriaKB;
+    private final boolean zigoto;
+    private final BlockingQueue<TrabajadorPython> libres;
+    private final List<TrabajadorPython> todos = new ArrayList<>();
+    /** Trabajadores que se están arrancando en segundo plano; protegido por todos. */
+    private int arrancando;
+    private volatile boolean cerrado;
+    private final AtomicLong reciclados = new AtomicLong();
+    /** Cierra el pool si la JVM termina sin que nadie lo haya cerrado; se quita en {@link #cierra()}. */
+    private final Thread ganchoCierre = new Thread(this::cierra, "cierre-pool-python");
+
+    /**
+     * @param preludio código Python que cada trabajador carga al iniciar
+     * @param tamano número máximo de intérpretes simultáneos
+     */
+    public PoolTrabajadoresPython(String preludio, int tamano) {
+        this(preludio, tamano, null, 0, 0, false);
+    }
+
+    /**
+     * @param preludio código Python que cada trabajador carga al iniciar
+     * @param tamano número máximo de intérpretes simultáneos
+     * @param calentamiento trabajo desechable con el que se calienta cada trabajador nuevo; null para no calentar
+     * @param maximoTrabajos trabajos tras los que se recicla un trabajador; 0 para no reciclar por trabajos
+     * @param maximaMemoriaKB memoria residente en kB a partir de la que se recicla; 0 para no reciclar por memoria
+     * @param zigoto true para que cada trabajador sea un servidor de fork que atiende cada trabajo en un hijo
+     */
+    public PoolTrabajadoresPython(String preludio, int tamano, String calentamiento, int maximoTrabajos,
+                                  long maximaMemoriaKB, boolean zigoto) {
+        if (tamano < 1) {
+            throw new RuntimeException("El tamaño del pool de Python debe ser al menos 1. Encontrado: " + tamano);
+        }
+        this.preludio = preludio;
+        this.tamano = tamano;
+        this.calentamiento = calentamiento;
+        this.maximoTrabajos = maximoTrabajos;
+        this.maximaMemoriaKB = maximaMemoriaKB;
+        this.zigoto = zigoto;
+        this.libres = new ArrayBlockingQueue<>(tamano);
+        Runtime.getRuntime().addShutdownHook(ganchoCierre);
+    }
+
+    /**
+     * Arranca en paralelo los trabajadores que falten para llenar el pool, cada uno con el
+     * trabajo de calentamiento, y espera a que todos estén listos.
+     *
+     * @param limiteMilis límite de tiempo del calentamiento de cada trabajador
+     */
+    public void calienta(long limiteMilis) {
+        int faltantes;
+        synchronized (todos) {
+            faltantes = tamano - todos.size() - arrancando;
+            arrancando += Math.max(faltantes, 0);
+        }
+        List<Thread> hilos = new ArrayList<>();
+        for (int i = 0; i < faltantes; i++) {
+            hilos.add(arrancaEnSegundoPlano(limiteMilis, "calentador-python-" + i));
+        }
+        try {
+            for (Thread hilo : hilos) {
+                hilo.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ejecuta un trabajo en el primer trabajador libre, bloqueando si todos están ocupados.
+     * Si el trabajo agota su tiempo, el trabajador se destruye y se reemplaza.
+     *
+     * @param codigo scriptlet de Python que escribe su resultado en "salida"
+     * @param limiteMilis límite de tiempo del trabajo en milisegundos
+     * @return la salida del trabajo o el tipo de falla
+     * @throws IOException si no se pudo lanzar un trabajador o éste murió durante el trabajo
+     */
+    public ResultadoSimbolico ejecuta(String codigo, long limiteMilis) throws IOException {
+        return ejecuta(codigo, limiteMilis, null);
+    }
+
+    /**
+     * Como {@link #ejecuta(String, long)}, entregando los marcos "PARCIAL" del trabajo
+     * (véase {@link TrabajadorPython#ejecuta(String, long, Consumer)}).
+     *
+     * @param parciales recibe el texto de cada marco parcial; null si el trabajo no los escribe
+     */
+    public ResultadoSimbolico ejecuta(String codigo, long limiteMilis, Consumer<String> parciales) throws IOException {
+        TrabajadorPython trabajador = obtenTrabajador();
+        ResultadoSimbolico resultado = null;
+        try {
+            resultado = trabajador.ejecuta(codigo, limiteMilis, parciales);
+        } finally {
+            // Con cualquier excepción el trabajador se descarta, para no perder su lugar en el pool
+            if (resultado == null) {
+                descarta(trabajador);
+            }
+        }
+        if (!trabajador.estaVivo()) {
+            descarta(trabajador);
+        } else if (debeReciclarse(trabajador)) {
+            recicla(trabajador, limiteMilis);
+        } else {
+            libres.add(trabajador);
+        }
+        return resultado;
+    }
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    /**
+     * @return número de trabajadores reciclados por trabajos o memoria
+     */
+    public long getReciclados() {
+        return reciclados.get();
+    }
+
+    private boolean debeReciclarse(TrabajadorPython trabajador) {
+        if (maximoTrabajos > 0 && trabajador.getTrabajos() >= maximoTrabajos) {
+            return true;
+        }
+        return maximaMemoriaKB > 0 && trabajador.memoriaResidenteKB() > maximaMemoriaKB;
+    }
+
+    /**
+     * Termina el trabajador y arranca su reemplazo en segundo plano; mientras tanto las
+     * solicitudes esperan a los demás trabajadores.
+     */
+    private void recicla(TrabajadorPython trabajador, long limiteMilis) {
+        System.err.format("Reciclando trabajador de Python tras %d trabajos (%d kB)%n",
+                trabajador.getTrabajos(), trabajador.memoriaResidenteKB());
+        descarta(trabajador);
+        reciclados.incrementAndGet();
+        synchronized (todos) {
+            arrancando++;
+        }
+        arrancaEnSegundoPlano(limiteMilis, "reciclador-python");
+    }
+
+    /**
+     * Arranca y calienta un trabajador en un hilo demonio. El lugar ya debe estar reservado en arrancando.
+     */
+    private Thread arrancaEnSegundoPlano(long limiteMilis, String nombre) {
+        Thread hilo = new Thread(() -> arranca(limiteMilis), nombre);
+        hilo.setDaemon(true);
+        hilo.start();
+        return hilo;
+    }
+
+    private void arranca(long limiteMilis) {
+        TrabajadorPython trabajador = null;
+        try {
+            trabajador = new TrabajadorPython(preludio, zigoto);
+            if (calentamiento != null) {
+                ResultadoSimbolico resultado = trabajador.ejecuta(calentamiento, limiteMilis);
+                if (!resultado.esExitoso()) {
+                    System.err.format("El calentamiento de un trabajador de Python falló: %s%n", resultado.getEstado());
+                }
+            }
+        } catch (IOException e) {
+            System.err.format("Calentando trabajador de Python IOException: %s%n", e);
+        }
+        synchronized (todos) {
+            arrancando--;
+            if (trabajador != null && trabajador.estaVivo() && !cerrado) {
+                todos.add(trabajador);
+                libres.add(trabajador);
+                return;
+            }
+        }
+        if (trabajador != null) {
+            trabajador.close();
+        }
+    }
+
+    private TrabajadorPython obtenTrabajador() throws IOException {
+        while (true) {
+            if (cerrado) {
+                throw new IOException("El pool de Python está cerrado");
+            }
+            TrabajadorPython trabajador = libres.poll();
+            if (trabajador == null && reservaLugar()) {
+                trabajador = lanzaReservado();
+            }
+            if (trabajador == null) {
+                try {
+                    // Espera acotada: si otro hilo descarta un trabajador, aquí se vuelve a intentar crearlo
+                    trabajador = libres.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrumpido esperando un trabajador de Python", e);
+                }
+            }
+            if (trabajador != null) {
+                if (trabajador.estaVivo()) {
+                    return trabajador;
+                }
+                descarta(trabajador);
+            }
+        }
+    }
+
+    /**
+     * @return true si había un lugar libre en el pool; queda reservado en arrancando
+     */
+    private boolean reservaLugar() {
+        synchronized (todos) {
+            if (cerrado || todos.size() + arrancando >= tamano) {
+                return false;
+            }
+            arrancando++;
+            return true;
+        }
+    }
+
+    /**
+     * Lanza un trabajador en un lugar ya reservado, fuera del monitor para no bloquear a
+     * {@link #cierra()} ni a los demás hilos mientras arranca python3.
+     */
+    private TrabajadorPython lanzaReservado() throws IOException {
+        TrabajadorPython trabajador = null;
+        boolean agregado = false;
+        try {
+            trabajador = new TrabajadorPython(preludio, zigoto);
+        } finally {
+            synchronized (todos) {
+                arrancando--;
+                if (trabajador != null && !cerrado) {
+                    todos.add(trabajador);
+                    agregado = true;
+                }
+            }
+        }
+        if (!agregado) {
+            trabajador.close();
+            throw new IOException("El pool de Python se cerró mientras arrancaba un trabajador");
+        }
+        return trabajador;
+    }
+
+    private void descarta(TrabajadorPython trabajador) {
+        trabajador.close();
+        synchronized (todos) {
+            todos.remove(trabajador);
+        }
+    }
+
+    /**
+     * Termina todos los trabajadores. Se invoca automáticamente al salir de la JVM.
+     */
+    public void cierra() {
+        synchronized (todos) {
+            cerrado = true;
+            for (TrabajadorPython trabajador : todos) {
+                trabajador.close();
+            }
+            todos.clear();
+        }
+        libres.clear();
+        try {
+            Runtime.getRuntime().removeShutdownHook(ganchoCierre);
+        } catch (IllegalStateException e) {
+            // La JVM ya está terminando; el gancho es quien está cerrando el pool
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.uam.auxiliar;
+
+import com.uam.utilidades.MuestreadorParametros;
+import com.uam.utilidades.PlantillaCompilada;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Reactivo con todas las variables calculadas excepto $SOLUCION$, junto con la
+ * solicitud que SymPy debe resolver para completarlo. Permite muestrear los
+ * parámetros de muchos reactivos, resolverlos en lote y después armarlos.<p>
+ * El texto no se arma hasta tener la solución: entonces se llena la plantilla
+ * en una sola pasada.<p>
+ * Las respuestas que también calcula el solucionador se declaran con
+ * {@link #tomaDeSolucion}: al completar se usa el valor de la solución y se avisa si no
+ * coincide con el calculado en Java, sin volver a llamar al solucionador.
+ */
+public class ReactivoPendiente {
+
+    private final int numeroReactivo;
+    private final PlantillaCompilada plantilla;
+    private final Object[] valores;
+    private final int indiceSolucion;
+    private final SolicitudSimbolica solicitud;
+    private final List<String> variablesDeSolucion = new ArrayList<>();
+    private final List<Function<DatosSolucion, Object>> extractores = new ArrayList<>();
+    private MuestreadorParametros.Parametros parametros;
+
+    /**
+     * @param numeroReactivo El contador de reactivo.
+     * @param plantilla plantilla del reactivo; debe declarar la variable SOLUCION
+     * @param valores valores de las variables de la plantilla; el de SOLUCION se ignora
+     * @param solicitud problema que se resuelve para obtener la solución
+     */
+    public ReactivoPendiente(int numeroReactivo, PlantillaCompilada plantilla, Object[] valores,
+                             SolicitudSimbolica solicitud) {
+        this.numeroReactivo = numeroReactivo;
+        this.plantilla = plantilla;
+        this.valores = valores;
+        this.indiceSolucion = plantilla.indice("SOLUCION");
+        this.solicitud = solicitud;
+    }
+
+    public int getNumeroReactivo() {
+        return numeroReactivo;
+    }
+
+    public SolicitudSimbolica getSolicitud() {
+        return solicitud;
+    }
+
+    /**
+     * @return las constantes con las que se preparó el reactivo
+     */
+    public MuestreadorParametros.Parametros getParametros() {
+        return parametros;
+    }
+
+    void setParametros(MuestreadorParametros.Parametros parametros) {
+        this.parametros = parametros;
+    }
+
+    /**
+     * Declara que el solucionador también calcula el valor de una variable de la plantilla.
+     * Si la solución no trae campos (motor en Java, simulado, plantillas) se queda el valor
+     * calculado en Java.
+     *
+     * @param variable variable de la plantilla, por ejemplo "RESPUESTA_A"
+     * @param extractor toma el valor de los datos de la solución; null si no viene
+     * @return este reactivo
+     */
+    public ReactivoPendiente tomaDeSolucion(String variable, Function<DatosSolucion, Object> extractor) {
+        plantilla.indice(variable);
+        variablesDeSolucion.add(variable);
+        extractores.add(extractor);
+        return this;
+    }
+
+    /**
+     * @param solucion solución paso a paso en HTML
+     * @return el texto del reactivo listo para el archivo de salida
+     */
+    public String completar(String solucion) {
+        return plantilla.llena(conSolucion(solucion));
+    }
+
+    /**
+     * Escribe el reactivo completo directamente al destino, sin armarlo antes en una cadena.
+     *
+     * @param solucion solución paso a paso en HTML
+     * @param destino por ejemplo la salida del archivo
+     */
+    public void completar(String solucion, Appendable destino) {
+        plantilla.llena(destino, conSolucion(solucion));
+    }
+
+    /**
+     * @param resultado resultado exitoso del solucionador
+     * @return el texto del reactivo, con las respuestas declaradas en {@link #tomaDeSolucion} tomadas de la solución
+     */
+    public String completar(ResultadoSimbolico resultado) {
+        return plantilla.llena(conSolucion(resultado));
+    }
+
+    /**
+     * Como {@link #completar(ResultadoSimbolico)}, escribiendo directamente al destino.
+     *
+     * @param resultado resultado exitoso del solucionador
+     * @param destino por ejemplo la salida del archivo
+     */
+    public void completar(ResultadoSimbolico resultado, Appendable destino) {
+        plantilla.llena(destino, conSolucion(resultado));
+    }
+
+    private Object[] conSolucion(String solucion) {
+        Object[] completos = valores.clone();
+        completos[indiceSolucion] = solucion;
+        return completos;
+    }
+
+    private Object[] conSolucion(ResultadoSimbolico resultado) {
+        Object[] completos = conSolucion(resultado.getSolucion());
+        DatosSolucion datos = resultado.getDatos();
+        if (datos.estaVacio()) {
+            return completos;
+        }
+        for (int i = 0; i < variablesDeSolucion.size(); i++) {
+            String variable = variablesDeSolucion.get(i);
+            int indice = plantilla.indice(variable);
+            Object calculado = extractores.get(i).apply(datos);
+            if (calculado == null) {
+                System.err.format("Reactivo %d: la solución no trae el valor de %s; se usa el de Java, %s%n",
+                        numeroReactivo, variable, completos[indice]);
+            } else if (!Objects.equals(String.valueOf(calculado), String.valueOf(completos[indice]))) {
+                System.err.format("Reactivo %d (%s): %s vale %s en Java y %s según el solucionador; se usa el del solucionador%n",
+                        numeroReactivo, solicitud, variable, completos[indice], calculado);
+                completos[indice] = calculado;
+            }
+        }
+        return completos;
+    }
+}
@@ -0,0 +1,88 @@
+package com.uam.auxiliar;
+
+import com.uam.motor.SolucionadorJava;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Registro de las implementaciones de {@link SolucionadorSimbolico}, por nombre:
+ * <ul>
+ * <li>"proceso": SymPy, un python3 por trabajo.</li>
+ * <li>"pool": SymPy en el pool de trabajadores de larga vida (por omisión).</li>
+ * <li>"zigoto": SymPy en servidores de fork, un proceso hijo aislado por trabajo.</li>
+ * <li>"java": el motor de derivación en Java; lo que no cubre se resuelve con "pool".</li>
+ * <li>"plantilla": las primeras derivadas se instancian en Java de una plantilla que "pool"
+ * resuelve una vez por forma de expresión; lo demás se resuelve con "pool".</li>
+ * <li>"simulado": soluciones sintetizadas, con la latencia de la propiedad
+ * "sevilla.simulado.latenciaMilis" (por omisión 0).</li>
+ * </ul>
+ * El solucionador activo se toma de la propiedad "sevilla.solucionador" y es el que
+ * usan los generadores construidos sin uno explícito y los métodos de SolucionaSimbolico.
+ */
+public final class RegistroSolucionadores {
+
+    private static final Map<String, Supplier<SolucionadorSimbolico>> FABRICAS = new LinkedHashMap<>();
+    private static SolucionadorSimbolico activo;
+
+    static {
+        registra("proceso", () -> new SolucionadorPython(SolucionadorPython.Modo.PROCESO));
+        registra("pool", () -> new SolucionadorPython(SolucionadorPython.Modo.POOL));
+        registra("zigoto", () -> new SolucionadorPython(SolucionadorPython.Modo.ZIGOTO));
+        registra("java", () -> new SolucionadorJava(new SolucionadorPython(SolucionadorPython.Modo.POOL)));
+        registra("plantilla", () -> new SolucionadorPlantillas(new SolucionadorPython(SolucionadorPython.Modo.POOL)));
+        registra("simulado", () -> new SolucionadorSimulado(Long.getLong("sevilla.simulado.latenciaMilis", 0)));
+    }
+
+    private RegistroSolucionadores() {
+    }
+
+    /**
+     * Registra una implementación, reemplazando la que tuviera el mismo nombre.
+     * @param nombre nombre con el que se elige
+     * @param fabrica crea el solucionador
+     */
+    public static synchronized void registra(String nombre, Supplier<SolucionadorSimbolico> fabrica) {
+        FABRICAS.put(nombre, fabrica);
+    }
+
+    /**
+     * @param nombre nombre registrado
+     * @return un solucionador nuevo de ese tipo
+     */
+    public static synchronized SolucionadorSimbolico crea(String nombre) {
+        Supplier<SolucionadorSimbolico> fabrica = FABRICAS.get(nombre);
+        if (fabrica == null) {
+            throw new RuntimeException("Solucionador desconocido: " + nombre + ". Se esperaba uno de "
+                    + FABRICAS.keySet());
+        }
+        return fabrica.get();
+    }
+
+    /**
+     * @return el solucionador activo; la primera vez se crea el de "sevilla.solucionador"
+     */
+    public static synchronized SolucionadorSimbolico activo() {
+        if (activo == null) {
+            activo = crea(System.getProperty("sevilla.solucionador", "pool"));
+        }
+        return activo;
+    }
+
+    /**
+     * Cambia el solucionador activo. Los generadores ya construidos conservan el suyo.
+     * @param nombre nombre registrado
+     */
+    public static synchronized void configura(String nombre) {
+        activo = crea(nombre);
+    }
+
+    /**
+     * Cambia el solucionador activo por una instancia ya armada.
+     * @param solucionador solucionador a usar
+     */
+    public static synchronized void configura(SolucionadorSimbolico solucionador) {
+        activo = solucionador;
+    }
+}
@@ -0,0 +1,98 @@
+package com.uam.auxiliar;
+
+/**
+ * Resultado de resolver una solicitud simbólica: la solución en HTML y los valores que la
+ * acompañan ({@link DatosSolucion}), o el tipo de falla con su detalle (traceback de Python,
+ * límite de tiempo, proceso muerto, etc.).
+ */
+public class ResultadoSimbolico {
+
+    /**
+     * Estados posibles de una solución.
+     */
+    public enum Estado {
+        /** Python terminó y escribió una solución no vacía. */
+        EXITO,
+        /** El scriptlet lanzó una excepción en Python. */
+        ERROR_PYTHON,
+        /** Python terminó sin error pero no escribió nada. */
+        SOLUCION_VACIA,
+        /** Se agotó el límite de tiempo y se destruyó el proceso. */
+        TIEMPO_AGOTADO,
+        /** No se pudo lanzar el proceso o murió sin responder. */
+        FALLA_PROCESO
+    }
+
+    private final Estado estado;
+    private final String salida;
+    private final String solucion;
+    private final DatosSolucion datos;
+    private final String detalle;
+
+    private ResultadoSimbolico(Estado estado, String salida, String detalle) {
+        this.estado = estado;
+        this.salida = salida;
+        this.solucion = DatosSolucion.quitaCampos(salida);
+        this.datos = DatosSolucion.lee(salida);
+        this.detalle = detalle;
+    }
+
+    /**
+     * @param salida salida de Python, con el HTML y los campos; si no tiene HTML el resultado es SOLUCION_VACIA
+     * @return resultado exitoso
+     */
+    public static ResultadoSimbolico exito(String salida) {
+        if (salida == null || DatosSolucion.quitaCampos(salida).trim().isEmpty()) {
+            return new ResultadoSimbolico(Estado.SOLUCION_VACIA, "", "Python no escribió ninguna solución");
+        }
+        return new ResultadoSimbolico(Estado.EXITO, salida, "");
+    }
+
+    /**
+     * @param estado tipo de falla
+     * @param detalle descripción o traceback
+     * @return resultado fallido, con solución vacía
+     */
+    public static ResultadoSimbolico falla(Estado estado, String detalle) {
+        return new ResultadoSimbolico(estado, "", detalle);
+    }
+
+    public boolean esExitoso() {
+        return estado == Estado.EXITO;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    /**
+     * @return la solución en HTML, sin los campos, o cadena vacía si falló
+     */
+    public String getSolucion() {
+        return solucion;
+    }
+
+    /**
+     * @return los valores calculados junto con la solución; vacíos si el solucionador no los da o falló
+     */
+    public DatosSolucion getDatos() {
+        return datos;
+    }
+
+    /**
+     * @return la salida tal como llegó, con los campos; es lo que se guarda en la cache y
+     * lo que se separa en trabajos cuando el resultado es un lote
+     */
+    public String getSalida() {
+        return salida;
+    }
+
+    public String getDetalle() {
+        return detalle;
+    }
+
+    @Override
+    public String toString() {
+        return esExitoso() ? estado.toString() : estado + ": " + detalle;
+    }
+}
@@ -0,0 +1,112 @@
+package com.uam.auxiliar;
+
+/**
+ * Describe un problema que se envía a SymPy: el tipo de scriptlet a usar,
+ * la expresión en LaTeX, la variable independiente y, para la recta tangente,
+ * la abscisa del punto de tangencia y, para las derivadas sucesivas, el orden.
+ */
+public class SolicitudSimbolica {
+
+    /**
+     * Tipos de solución soportados, uno por cada scriptlet de SolucionaSimbolico.
+     */
+    public enum Tipo {
+        DERIVADA,
+        SEGUNDA_DERIVADA,
+        DERIVADA_SUCESIVA,
+        RECTA_TANGENTE,
+        TANGENTES_HORIZONTALES
+    }
+
+    private final Tipo tipo;
+    private final String expresion;
+    private final String variable;
+    private final Integer x0;
+    private final int orden;
+
+    /**
+     * @throws RuntimeException con DERIVADA_SUCESIVA, que necesita su orden: véase {@link #derivadaEnesima}
+     */
+    public SolicitudSimbolica(Tipo tipo, String expresion, String variable, Integer x0) {
+        this(tipo, expresion, variable, x0, ordenDe(tipo));
+    }
+
+    private static int ordenDe(Tipo tipo) {
+        if (tipo == Tipo.DERIVADA_SUCESIVA) {
+            throw new RuntimeException("Una derivada sucesiva necesita su orden; use SolicitudSimbolica.derivadaEnesima");
+        }
+        return tipo == Tipo.SEGUNDA_DERIVADA ? 2 : 1;
+    }
+
+    private SolicitudSimbolica(Tipo tipo, String expresion, String variable, Integer x0, int orden) {
+        this.tipo = tipo;
+        this.expresion = expresion;
+        this.variable = variable;
+        this.x0 = x0;
+        this.orden = orden;
+    }
+
+    public static SolicitudSimbolica derivada(String expresion, String variable) {
+        return new SolicitudSimbolica(Tipo.DERIVADA, expresion, variable, null);
+    }
+
+    public static SolicitudSimbolica segundaDerivada(String expresion, String variable) {
+        return new SolicitudSimbolica(Tipo.SEGUNDA_DERIVADA, expresion, variable, null);
+    }
+
+    /**
+     * @param expresion expresión en LaTeX
+     * @param orden orden de la derivada, al menos 1
+     * @param variable variable independiente
+     * @return la solicitud de la derivada de ese orden; las de orden 1 y 2 usan sus propios tipos
+     */
+    public static SolicitudSimbolica derivadaEnesima(String expresion, int orden, String variable) {
+        if (orden < 1) {
+            throw new RuntimeException("El orden de la derivada debe ser al menos 1. Encontrado: " + orden);
+        }
+        if (orden == 1) {
+            return derivada(expresion, variable);
+        }
+        if (orden == 2) {
+            return segundaDerivada(expresion, variable);
+        }
+        return new SolicitudSimbolica(Tipo.DERIVADA_SUCESIVA, expresion, variable, null, orden);
+    }
+
+    public static SolicitudSimbolica rectaTangente(String expresion, Integer x0, String variable) {
+        return new SolicitudSimbolica(Tipo.RECTA_TANGENTE, expresion, variable, x0);
+    }
+
+    public static SolicitudSimbolica tangentesHorizontales(String expresion, String variable) {
+        return new SolicitudSimbolica(Tipo.TANGENTES_HORIZONTALES, expresion, variable, null);
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public String getExpresion() {
+        return expresion;
+    }
+
+    public String getVariable() {
+        return variable;
+    }
+
+    public Integer getX0() {
+        return x0;
+    }
+
+    /**
+     * @return orden de la derivada que se pide; 1 para la recta tangente y las tangentes horizontales
+     */
+    public int getOrden() {
+        return orden;
+    }
+
+    @Override
+    public String toString() {
+        return tipo + "[" + expresion + ", " + variable + (x0 == null ? "" : ", x0=" + x0)
+                + (tipo == Tipo.DERIVADA_SUCESIVA ? ", orden=" + orden : "") + "]";
+    }
+}
@@ -1,19 +1,30 @@
 package com.uam.auxiliar;
 
+import com.uam.motor.ExpresionNoSoportada;
+import com.uam.motor.ExpresionSympy;
+
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Genera scripts Python para hacer derivación simbolica usando
  * la biblioteca SymPy (https://www.sympy.org/).
  * Véase https://www.sympygamma.com/ para una demostración interactiva.
  * Se usa Python3.
- * Para poder leer las expresiones en LaTex es necesario instalar (pip o conda) antlr4 <p>
+ * Las expresiones que produce el generador se traducen en Java a un árbol de SymPy
+ * ({@link ExpresionSympy}); sólo las demás se leen con parse_latex, que requiere instalar
+ * (pip o conda) antlr4 <p>
  * $ pip3 install antlr4-python3-runtime <p>
  * o <p>
  * $ conda install --channel=conda-forge antlr-python-runtime <p>
@@ -61,30 +72,24 @@ public class SolucionaSimbolico {
      * Se tradujeron los mensajes al español. <p>
      * La función acomodaNotacion de Python se asegura de colocar paréntesis en la notación
      * de las derivadas, evitando ambigüedad. <p>
-     * Se debería actualizar el código desde web y hacer automática la traducción
+     * Se debería actualizar el código desde web y hacer automática la traducción <p>
+     * Sólo importa lo que usan print_html_steps y acomodaNotacion; cada scriptlet importa lo
+     * demás que necesita (parse_latex en PARSER, solve en la tangente horizontal, factor en
+     * DIFF_STEP). {@link PerfilImportaciones} mide lo que importa cada tipo de trabajo.<p>
+     * Los intérpretes no reciben este código: lo importan de un paquete compilado que
+     * {@link ModuloPreludio} instala una vez por versión (véase {@link #preludio()}).
      *
      */
     private static final String DERIVADOR = "import sympy\n" +
             "import collections\n" +
             "\n" +
+            "from functools import reduce\n" +
+            "from contextlib import contextmanager\n" +
+            "\n" +
             "from sympy.core.function import AppliedUndef, Derivative\n" +
             "from sympy.functions.elementary.trigonometric import TrigonometricFunction\n" +
             "from sympy.strategies.core import switch\n" +
-            "from sympy.core.compatibility import reduce\n" +
-            "from sympy import factor\n" +
-            "from sympy import simplify\n" +
-            "from sympy import Symbol\n" +
-            "from sympy import pi\n" +
-            "from sympy import sin\n" +
-            "from sympy import cos\n" +
-            "from sympy import solve\n" +
-            "from sympy.plotting import plot\n" +
-            "\n" +
-            "from contextlib import contextmanager\n" +
-            "\n" +
-            "from mpmath.libmp.backend import basestring\n" +
             "from sympy import latex, symbols\n" +
-            "from sympy.parsing.latex import parse_latex\n" +
             "\n" +
             "\n" +
             "def Rule(name, props=\"\"):\n" +
@@ -183,7 +188,7 @@ public class SolucionaSimbolico {
             "            latex(math))\n" +
             "\n" +
             "    def format_math_display(self, math):\n" +
-            "        if not isinstance(math, basestring):\n" +
+            "        if not isinstance(math, str):\n" +
             "            math = latex(math)\n" +
             "        return '<script type=\"math/tex; mode=display\">{}</script>'.format(\n" +
             "            math)\n" +
@@ -805,33 +810,76 @@ public class SolucionaSimbolico {
             "                                \"\\\\frac{d}{d x}( g{\\\\left(x \\\\right)})\")\n" +
             "    return expresion\n" +
             "\n"+
+            "\n" +
+            "def numero(valor):\n" +
+            "    # 'p' o 'p/q' si es racional; si no, en decimal\n" +
+            "    valor = sympy.sympify(valor).doit()\n" +
+            "    if valor.is_Rational:\n" +
+            "        return str(valor)\n" +
+            "    if valor.is_real:\n" +
+            "        return repr(float(valor))\n" +
+            "    return str(valor)\n" +
+            "\n" +
+            "\n" +
+            "def escribe_campos(salida, **campos):\n" +
+            "    # Un marco por campo, con caracteres de control que no aparecen en el HTML\n" +
+            "    for nombre, valor in campos.items():\n" +
+            "        salida.write('\\x1e%s\\x1f%s\\x1e' % (nombre, valor))\n" +
             "\n" ;
     /**
-     * Contiene el punto de entrada del script de Python para procesar la expresión
-     * 1.- Abre un archivo de texto para guardar la salida <p>
-     * 2.- Define "x" como un símbolo para poder derivar expresiones respecto a ella. <p>
-     * 3.- Se convierte la expresión en LaTeX an una expresión Sympy, definiendo "pi"
+     * Contiene el punto de entrada del script de Python cuando se ejecuta un proceso por pregunta.
+     * La salida se acumula en memoria; CLOSER la escribe como un marco en stdout.
+     * Cualquier print del script se desvía a stderr para no corromper el marco. <p>
+     * En el pool de trabajadores no se usa: "salida" la provee el trabajador.
+     */
+    private static final String APERTURA =                 "##MAIN##\n" +
+            "\n" +
+            "import io as _io\n" +
+            "import sys as _sys\n" +
+            "_respuesta = _sys.stdout.buffer\n" +
+            "_sys.stdout = _sys.stderr\n" +
+            "salida = _io.StringIO()\n";
+    /**
+     * Lee la expresión a procesar<p>
+     * 0.- Importa parse_latex, que no está en el preludio. <p>
+     * 1.- Define "x" como un símbolo para poder derivar expresiones respecto a ella. <p>
+     * 2.- Se convierte la expresión en LaTeX an una expresión Sympy, definiendo "pi"
      * como un símbolo reconocible <p>
      * Se debe poder definir como símbolo otra variable diferente de "x" , como "t" por ejemplo
      *
      */
-    private static final String PARSER =                 "##MAIN##\n" +
-            "\n" +
-            "salida = open(\"/tmp/solucion_$UUID$.txt\",\"w\")\n" +
+    private static final String PARSER =
+            "from sympy.parsing.latex import parse_latex\n" +
+            "from sympy import Symbol, pi\n" +
             "$VARIABLEIND$ = symbols(\'$VARIABLEIND$\')\n" +
             "expr = parse_latex(r\"$EXPRESION$\").subs({Symbol('pi'): pi})\n";
     /**
-     * Escribe en el archivo de salida, abierto en el fragmento PARSER, el problema
+     * Reemplaza a PARSER cuando la expresión se tradujo en Java: construye directamente el
+     * árbol que armaría parse_latex, sin importar antlr ni leer LaTeX.
+     */
+    private static final String CONSTRUCTOR =
+            "$VARIABLEIND$ = symbols(\'$VARIABLEIND$\')\n" +
+            "expr = $ARBOL$\n";
+    /**
+     * Con la propiedad "sevilla.parseLatex" en true todas las expresiones se leen con
+     * parse_latex, para comparar contra la traducción en Java.
+     */
+    private static final boolean SOLO_PARSE_LATEX = Boolean.getBoolean("sevilla.parseLatex");
+    /**
+     * Escribe en "salida", abierta en el fragmento APERTURA o provista por el trabajador, el problema
      * y la solución en html/MathJax invocando print_html_steps contenida en el fragmento
      * DERIVADOR
      * <p>
      * acomodaNotacion pone paréntesis explícitos para evitar ambigüedades en expresiones
+     * <p>
+     * Al final escribe el campo "derivada" ({@link DatosSolucion}).
      */
     private static final String SOLVER =
             "salida.write(\"Obtener: $$%s$$<br><br>\" % latex(Derivative(expr,$VARIABLEIND$)))\n" +
                     "solucion = print_html_steps(expr, $VARIABLEIND$)\n" +
                     "solucion=acomodaNotacion(solucion)\n"+
-                    "salida.write(solucion)\n" ;
+                    "salida.write(solucion)\n" +
+                    "escribe_campos(salida, derivada=latex(sympy.diff(expr, $VARIABLEIND$)))\n" ;
     /**
      * Scriplet para obtener la tangente horizontal.<p>
      * 1. Se deriva la expresión.
@@ -841,10 +889,11 @@ public class SolucionaSimbolico {
      * 4. Construye una gráfica con el plug-in JSX (JavaScript) del problema y lo incluye en la solución
      * JSX Graphs funciona en JavaScript
      * ES NECESARIO INSTALAR EN EL SERVIDOR DE MOODLE EL PLUG-IN JSX
+     * 5. Escribe los campos derivada, raices, puntos y caja ({@link DatosSolucion}).
      */
     private static final String SOLVER_TANGENTE_HORIZONTAL_GRAFICA_JSX =
-            /* hay que instalar seaborn y matplotlib para que esta parte funcione bien*/
-            "salida.write(\"Obtener: $$%s$$<br><br>\" % latex(Derivative(expr, $VARIABLEIND$)))\n" +
+            "from sympy import solve\n" +
+                    "salida.write(\"Obtener: $$%s$$<br><br>\" % latex(Derivative(expr, $VARIABLEIND$)))\n" +
                     "solucion = print_html_steps(expr, $VARIABLEIND$)\n" +
                     "solucion = acomodaNotacion(solucion)\n" +
                     "salida.write(solucion)\n" +
@@ -899,7 +948,11 @@ public class SolucionaSimbolico {
                     "    salida.write('var p = brd.create(\"point\", ['+str(xt)+','+str(yt)+'],{name:' + nombrepunto + ',fixed:true});\\n')\n" +
                     "    salida.write('var l = brd.create(\"functiongraph\",[function(x){ return '+str(yt)+';}]);\\n')\n" +
                     "salida.write('var c = brd.create(\"functiongraph\", f, {strokewidth:2});\\n')\n" +
-                    "salida.write('</jsxgraph>\\n')\n"
+                    "salida.write('</jsxgraph>\\n')\n" +
+                    "escribe_campos(salida, derivada=latex(derivada),\n" +
+                    "               raices=','.join(numero(x_0) for x_0 in anula),\n" +
+                    "               puntos=';'.join('%s,%s' % (numero(xt), numero(yt)) for xt, yt in puntos),\n" +
+                    "               caja=','.join(numero(v) for v in (xmin, ymax, xmax, ymin)))\n"
             ;
     /**
      * Scriptlet para obtener la tangente a una curva en un punto y graficar
@@ -909,6 +962,7 @@ public class SolucionaSimbolico {
      * <p>
      * 2.-Se evalúa la derivada en el punto solicitado y se escribe la solución.
      * 3.-Se genera grafica SVG
+     * 4.-Escribe los campos derivada, derivada_x0, y0, ordenada y caja ({@link DatosSolucion}).
      */
     private static final String SOLVER_RECTA_TANGENTE_GRAFICA =
             "x0 = $X0$\n"
@@ -947,91 +1001,277 @@ public class SolucionaSimbolico {
                     "salida.write('var p = brd.create(\"point\", ['+str(x0)+','+str(y_0)+'],{name:\\'P0\\',fixed:true});\\n')\n" +
                     "salida.write('var l = brd.create(\"functiongraph\", t, {strokecolor:\\'green\\'});\\n')\n"+
                     "salida.write('var c = brd.create(\"functiongraph\", f, {strokewidth:2});\\n')\n" +
-                    "salida.write('</jsxgraph>\\n')\n"
+                    "salida.write('</jsxgraph>\\n')\n" +
+                    "escribe_campos(salida, derivada=latex(sympy.diff(expr, x)), derivada_x0=numero(m),\n" +
+                    "               y0=numero(y_0), ordenada=numero(b),\n" +
+                    "               caja=','.join(numero(v) for v in (xmin, ymax, xmax, ymin)))\n"
             ;
 
     /**
      * Scriptlet de Python para efectuar derivadas sucesivas.
-     * Se concatena sucesivamente para obtener derivadas de mayor orden
+     * Se concatena sucesivamente para obtener derivadas de mayor orden;
+     * cada uno reescribe el campo "derivada" con la de su orden.
      */
     private static final String DIFF_STEP =
-            "derivada = Derivative(expr)\n"+
+            "from sympy import factor\n" +
+                    "derivada = Derivative(expr)\n"+
                     "derivada = factor(derivada.doit())\n"+
                     "salida.write(\"<br/>Siguiente derivada<br/>Obtener: $$%s$$<br><br>\" % latex(Derivative(derivada,$VARIABLEIND$)))\n" +
                     "solucion = print_html_steps(derivada, $VARIABLEIND$)\n" +
                     "solucion=acomodaNotacion(solucion)\n"+
                     "expr = derivada\n" +
-                    "salida.write(solucion)\n" ;
+                    "salida.write(solucion)\n" +
+                    "escribe_campos(salida, derivada=latex(sympy.diff(expr, $VARIABLEIND$)))\n" ;
+    /**
+     * Scriptlet para resolver varios trabajos en una sola ejecución del intérprete.<p>
+     * Cada trabajo (PARSER más su scriptlet de solución) llega codificado en base64 y se ejecuta
+     * en una copia del espacio de nombres, con su propia "salida", de modo que un error
+     * en una expresión no afecta a las demás.<p>
+     * En cuanto termina cada trabajo escribe en _respuesta un marco "PARCIAL" con su registro,
+     * "OK n" o "ERR n" seguido de n caracteres con la solución o el traceback, de modo que
+     * Java lee los resultados en orden conforme llegan y el límite de tiempo es por trabajo.
+     */
+    private static final String LOTE =
+            "import base64 as _base64\n" +
+                    "import io as _io\n" +
+                    "import traceback as _traceback\n" +
+                    "_base_lote = dict(globals())\n" +
+                    "for _trabajo in [$TRABAJOS$]:\n" +
+                    "    _ambito = dict(_base_lote)\n" +
+                    "    _ambito['salida'] = _io.StringIO()\n" +
+                    "    try:\n" +
+                    "        exec(_base64.b64decode(_trabajo).decode('utf-8'), _ambito)\n" +
+                    "        _estado, _texto = 'OK', _ambito['salida'].getvalue()\n" +
+                    "    except Exception:\n" +
+                    "        _estado, _texto = 'ERR', _traceback.format_exc()\n" +
+                    "    _registro = ('%s %d\\n' % (_estado, len(_texto)) + _texto).encode('utf-8')\n" +
+                    "    _respuesta.write(b'PARCIAL %d\\n' % len(_registro))\n" +
+                    "    _respuesta.write(_registro)\n" +
+                    "    _respuesta.flush()\n";
     /**
-     * Cierra el archivo en el que se escribe la salida.
+     * Escribe la salida acumulada en stdout con un marco "OK n" seguido de n bytes en UTF-8,
+     * el mismo formato que responden los trabajadores del pool.
      * Debe ser el último elemento que se concatena para
      * armar un script con los scriptlets previos
      */
-    private static final String CLOSER      =                      "salida.close()\n";
+    private static final String CLOSER      =
+            "_datos = salida.getvalue().encode('utf-8')\n" +
+                    "_respuesta.write(b'OK %d\\n' % len(_datos))\n" +
+                    "_respuesta.write(_datos)\n" +
+                    "_respuesta.flush()\n";
+
 
+    /**
+     * Límite de tiempo por trabajo, de la propiedad "sevilla.limiteSegundos" (por omisión 120).
+     * Al agotarse se destruye el árbol de procesos de Python y el resultado es TIEMPO_AGOTADO.
+     */
+    private static final long LIMITE_MILIS = 1000L * Integer.getInteger("sevilla.limiteSegundos", 120);
 
     /**
      * Recibe un script en python, lo ejecuta y regresa la salida de la ejecución.
-     * Está pensado para un ambiente Linux, escribe y lee de /tmp.
+     * El script se envía por la entrada estándar del intérprete ("python3 -") y la
+     * solución se lee de su salida estándar como un marco con longitud, sin archivos temporales.
+     * La salida de error se drena en un hilo aparte para que nunca bloquee la tubería.
+     * Si el script no termina antes de limiteMilis se destruye el árbol de procesos.
      * Asume que Python3 y sus bibliotecas están instalados.
-     * Usa randomUUID para evitar colisiones si se ejecuta en forma simultanea
-     * con otros generadores del proyecto.
      *
      * @param code String con script en Python para ejecutar.
-     * @return String con el resultado de la ejecución.
+     * @param limiteMilis límite de tiempo en milisegundos
+     * @return el resultado de la ejecución o el tipo de falla
      * @author Iván Gutierrez
      */
-    private static String ejecutaPython(String code) {
-        String uuid = String.valueOf(UUID.randomUUID());
-        String solucion = "";
-        code = code.replace("$UUID$", uuid);
-        try (FileWriter scriptFile = new FileWriter("/tmp/script_" + uuid + ".py");
-             BufferedWriter bw = new BufferedWriter(scriptFile)) {
-            bw.write(code);
-        } catch (IOException e) {
-            System.err.format("Escribiendo Script IOException: %s%n", e);
-        }
-        String cmd = "python3 /tmp/script_" + uuid + ".py";
+    private static ResultadoSimbolico ejecutaPython(String code, long limiteMilis) {
+        return ejecutaPython(code, limiteMilis, null);
+    }
+
+    /**
+     * Como {@link #ejecutaPython(String, long)}, entregando los marcos "PARCIAL" del script;
+     * cada uno vuelve a contar limiteMilis.
+     *
+     * @param parciales recibe el texto de cada marco parcial; null si el script no los escribe
+     */
+    private static ResultadoSimbolico ejecutaPython(String code, long limiteMilis, Consumer<String> parciales) {
+        ResultadoSimbolico resultado;
+        Process p;
         try {
-            Process p = Runtime.getRuntime().exec(cmd);
-            InputStream errorPython = p.getErrorStream();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(errorPython, StandardCharsets.UTF_8));
-            String line;
-            try {
-                while ((line = reader.readLine()) != null) {
-                    System.out.println("Python: " + line);
-                }
-            } catch (IOException e) {
-                System.out.println("Exception in reading output" + e);
-            }
-            int exitVal = p.waitFor();
-            if (exitVal == 0) System.out.println("Ok");
+            p = new ProcessBuilder("python3", "-").start();
         } catch (java.io.IOException e) {
             System.err.format("Ejecutando Python IOException: %s%n", e);
-        } catch (Throwable t) {
-            t.printStackTrace();
+            return ResultadoSimbolico.falla(ResultadoSimbolico.Estado.FALLA_PROCESO, e.toString());
         }
+        TrabajadorPython.LimiteTiempo limite = TrabajadorPython.LimiteTiempo.programa(p, limiteMilis);
         try {
-            solucion = new String(Files.readAllBytes(Paths.get("/tmp/solucion_" + uuid + ".txt")));
-            File archivoSolucion = new File("/tmp/solucion_" + uuid + ".txt");
-            archivoSolucion.delete();
-            File archivoScript = new File("/tmp/script_" + uuid + ".py");
-            archivoScript.delete();
+            TrabajadorPython.drenaErrores(p.getErrorStream());
+            try (OutputStream script = new BufferedOutputStream(p.getOutputStream())) {
+                script.write(code.getBytes(StandardCharsets.UTF_8));
+            }
+            String[] respuesta;
+            try (InputStream salidaPython = new BufferedInputStream(p.getInputStream())) {
+                respuesta = TrabajadorPython.leeRespuesta(salidaPython, limite, parciales, "OK");
+            }
+            int exitVal = p.waitFor();
+            if (limite.expiro()) {
+                resultado = ResultadoSimbolico.falla(ResultadoSimbolico.Estado.TIEMPO_AGOTADO,
+                        "Se agotaron " + limiteMilis + " ms; se destruyó el proceso");
+            } else if (respuesta == null) {
+                resultado = ResultadoSimbolico.falla(ResultadoSimbolico.Estado.ERROR_PYTHON,
+                        "Python terminó con código " + exitVal + " sin escribir la solución");
+            } else {
+                resultado = ResultadoSimbolico.exito(respuesta[1]);
+            }
         } catch (java.io.IOException e) {
-            System.err.format("Leyendo Solucion IOException: %s%n", e);
+            if (limite.expiro()) {
+                resultado = ResultadoSimbolico.falla(ResultadoSimbolico.Estado.TIEMPO_AGOTADO,
+                        "Se agotaron " + limiteMilis + " ms; se destruyó el proceso");
+            } else {
+                System.err.format("Ejecutando Python IOException: %s%n", e);
+                resultado = ResultadoSimbolico.falla(ResultadoSimbolico.Estado.FALLA_PROCESO, e.toString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resultado = ResultadoSimbolico.falla(ResultadoSimbolico.Estado.FALLA_PROCESO, e.toString());
+        } finally {
+            limite.cancela();
+            TrabajadorPython.destruyeArbol(p);
         }
-        SimpleDateFormat formatter= new SimpleDateFormat("yyyy-MM-dd '-' HH:mm:ss z");
-        Date date = new Date(System.currentTimeMillis());
-        System.out.println(formatter.format(date));
-        return solucion;
+        return resultado;
 
     }
 
+    /**
+     * Número de intérpretes de Python de larga vida que atienden los trabajos.
+     * Se toma de la propiedad del sistema "sevilla.trabajadoresPython" (por omisión, el número
+     * de núcleos). Con 0 se vuelve al esquema de un python3 por pregunta.
+     */
+    private static int trabajadoresPython =
+            Integer.getInteger("sevilla.trabajadoresPython", Runtime.getRuntime().availableProcessors());
+    private static PoolTrabajadoresPython pool;
+    private static PoolTrabajadoresPython poolZigoto;
+
+    /**
+     * Reciclaje de los trabajadores del pool: tras "sevilla.reciclarTrabajos" trabajos
+     * (por omisión 5000) o al pasar de "sevilla.reciclarMemoriaMB" MB de memoria residente
+     * (por omisión 1024). Con 0 no se recicla por ese criterio.
+     */
+    private static final int RECICLAR_TRABAJOS = Integer.getInteger("sevilla.reciclarTrabajos", 5000);
+    private static final long RECICLAR_MEMORIA_KB = 1024L * Integer.getInteger("sevilla.reciclarMemoriaMB", 1024);
+
+    /**
+     * Si se calientan los trabajadores al arrancar, de la propiedad "sevilla.calentarPool" (por omisión true).
+     */
+    private static final boolean CALENTAR_POOL =
+            Boolean.parseBoolean(System.getProperty("sevilla.calentarPool", "true"));
+
+    /**
+     * Cambia el tamaño de los pools de trabajadores de Python, cerrando los anteriores.
+     * @param tamano número de intérpretes; 0 para lanzar un proceso por pregunta
+     */
+    public static synchronized void configuraPool(int tamano) {
+        if (pool != null) {
+            pool.cierra();
+            pool = null;
+        }
+        if (poolZigoto != null) {
+            poolZigoto.cierra();
+            poolZigoto = null;
+        }
+        trabajadoresPython = tamano;
+    }
+
+    private static synchronized PoolTrabajadoresPython obtenPool() {
+        if (pool == null) {
+            pool = new PoolTrabajadoresPython(preludio(), trabajadoresPython, trabajoCalentamiento(),
+                    RECICLAR_TRABAJOS, RECICLAR_MEMORIA_KB, false);
+        }
+        return pool;
+    }
+
+    /**
+     * Pool de servidores de fork: cada uno carga DERIVADOR, se calienta en su propio proceso
+     * (no en un hijo, que perdería lo cargado) y después atiende cada trabajo en un hijo nuevo.
+     * No se recicla, porque lo que crece en memoria se queda en los hijos.
+     */
+    private static synchronized PoolTrabajadoresPython obtenPoolZigoto() {
+        if (poolZigoto == null) {
+            String preludio = preludio() + "import io as _io\n" + "salida = _io.StringIO()\n"
+                    + trabajoCalentamiento() + "del salida\n";
+            // El trabajo de calentamiento sólo confirma que el padre ya terminó de cargar el preludio
+            poolZigoto = new PoolTrabajadoresPython(preludio, trabajadoresPython, "salida.write('ok')\n", 0, 0, true);
+        }
+        return poolZigoto;
+    }
+
+    private static PoolTrabajadoresPython obtenPool(SolucionadorPython.Modo modo) {
+        return modo == SolucionadorPython.Modo.ZIGOTO ? obtenPoolZigoto() : obtenPool();
+    }
+
+    /**
+     * Trabajo desechable con el que se calienta cada trabajador: una derivada de cociente por
+     * CONSTRUCTOR (o PARSER, que carga antlr) y SOLVER, que llena las caches de print_html_steps.
+     */
+    private static String trabajoCalentamiento() {
+        return construyeTrabajo(SolicitudSimbolica.derivada("\\frac{3x^{3}+1}{x-2}", "x"));
+    }
+
+    /**
+     * Arranca en paralelo todos los trabajadores del pool y los calienta, para que las primeras
+     * preguntas no paguen la importación de sympy. No hace nada sin pool o con
+     * "sevilla.calentarPool" en false.
+     */
+    public static void calientaPool() {
+        calientaPool(SolucionadorPython.Modo.POOL);
+    }
+
+    /**
+     * @param modo POOL o ZIGOTO; el pool de ese modo es el que se calienta
+     */
+    static void calientaPool(SolucionadorPython.Modo modo) {
+        if (modo == SolucionadorPython.Modo.PROCESO || trabajadoresPython <= 0 || !CALENTAR_POOL) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        PoolTrabajadoresPython actual = obtenPool(modo);
+        actual.calienta(LIMITE_MILIS);
+        System.out.format("Pool de Python caliente: %d trabajadores en %d ms%n",
+                actual.getTamano(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Ejecuta un trabajo (PARSER más el scriptlet de solución ya sustituidos).
+     * Si hay pool y no se pide un proceso por trabajo, lo envía a un trabajador del pool
+     * del modo (de larga vida o servidor de fork); si no, arma el script completo con
+     * el preludio instalado, APERTURA y CLOSER y lanza un python3.
+     *
+     * @param trabajo código Python que escribe en "salida"
+     * @param limiteMilis límite de tiempo en milisegundos
+     * @param modo cómo se ejecuta el trabajo; PROCESO lanza un python3 aunque haya pool
+     * @return el resultado de la ejecución o el tipo de falla
+     */
+    private static ResultadoSimbolico ejecuta(String trabajo, long limiteMilis, SolucionadorPython.Modo modo) {
+        return ejecuta(trabajo, limiteMilis, modo, null);
+    }
+
+    /**
+     * @param parciales recibe el texto de cada marco "PARCIAL" del trabajo; null si no los escribe
+     */
+    private static ResultadoSimbolico ejecuta(String trabajo, long limiteMilis, SolucionadorPython.Modo modo,
+                                              Consumer<String> parciales) {
+        if (modo == SolucionadorPython.Modo.PROCESO || trabajadoresPython <= 0) {
+            return ejecutaPython(preludio() + APERTURA + trabajo + CLOSER, limiteMilis, parciales);
+        }
+        try {
+            return obtenPool(modo).ejecuta(trabajo, limiteMilis, parciales);
+        } catch (IOException e) {
+            System.err.format("Ejecutando trabajo en el pool de Python IOException: %s%n", e);
+            return ResultadoSimbolico.falla(ResultadoSimbolico.Estado.FALLA_PROCESO, e.toString());
+        }
+    }
+
     /**
      * Deriva funciones de "x", regresa la derivación paso a paso.<p>
-     * Construye un script Python con los scriptlets DERIVADOR,PARSER,SOLVER y CLOSER.<p>
-     * Sustituye en el script la expresión en LaTeX pasada como parámetro.<p>
-     * Ejecuta el script. <p>
+     * Construye un trabajo Python con los scriptlets PARSER y SOLVER.<p>
+     * Sustituye en el trabajo la expresión en LaTeX pasada como parámetro.<p>
+     * Ejecuta el trabajo en el pool de Python. <p>
      * Regresa la solución en HTML. <p>
      * @param expresion String en LaTeX a derivar
      * @param variableindep variable respecto de la que se derivará. Usualmente 'x'
@@ -1039,17 +1279,14 @@ public class SolucionaSimbolico {
      * @author Iván Gutiérrez
      */
     public static String derivaSimbolico(String expresion, String variableindep){
-        String script = DERIVADOR+PARSER+SOLVER+CLOSER;
-        script = script.replace("$EXPRESION$", expresion);
-        script = script.replace("$VARIABLEIND$", variableindep);
-        return ejecutaPython(script);
+        return resuelve(SolicitudSimbolica.derivada(expresion, variableindep)).getSolucion();
     }
 
     /**
      * Deriva funciones de "x", regresa la derivación paso a paso.<p>
-     * Construye un script Python con los scriptlets DERIVADOR,PARSER,SOLVER y CLOSER.<p>
-     * Sustituye en el script la expresión en LaTeX pasada como parámetro.<p>
-     * Ejecuta el script. <p>
+     * Construye un trabajo Python con los scriptlets PARSER, SOLVER y DIFF_STEP.<p>
+     * Sustituye en el trabajo la expresión en LaTeX pasada como parámetro.<p>
+     * Ejecuta el trabajo en el pool de Python. <p>
      * Regresa la solución en HTML. <p>
      * @param expresion String en LaTeX a derivar
      * @param variableindep usualmente 'x'
@@ -1057,18 +1294,15 @@ public class SolucionaSimbolico {
      * @author Iván Gutiérrez
      */
     public static String derivaSimbolicoSegunda(String expresion, String variableindep){
-        String script = DERIVADOR+PARSER+SOLVER+DIFF_STEP+CLOSER;
-        script = script.replace("$EXPRESION$", expresion);
-        script = script.replace("$VARIABLEIND$", variableindep);
-        return ejecutaPython(script);
+        return resuelve(SolicitudSimbolica.segundaDerivada(expresion, variableindep)).getSolucion();
     }
 
     /**
      * Encuentra la recta tangente a funciones \f$f(x)\f$ en un punto \f$x_0\f$<p>
      * Regresa la derivación paso a paso y la ecuación de la recta.<p>
-     * Construye un script Python con los scriptlets DERIVADOR,PARSER,SOLVER_RECTA_TANGENTE y CLOSER.<p>
-     * Sustituye en el script la expresión en LaTeX pasada como parámetro.<p>
-     * Ejecuta el script. <p>
+     * Construye un trabajo Python con los scriptlets PARSER y SOLVER_RECTA_TANGENTE_GRAFICA.<p>
+     * Sustituye en el trabajo la expresión en LaTeX pasada como parámetro.<p>
+     * Ejecuta el trabajo en el pool de Python. <p>
      * Regresa la solución en HTML. <p>
      * @param expresion String en LaTeX a derivar
      * @param x0 abscisa del punto de tangencia
@@ -1077,19 +1311,15 @@ public class SolucionaSimbolico {
      * @author Iván Gutiérrez
      */
     public static String rectaTangenteGrafica(String expresion, Integer x0, String variableindep){
-        String script = DERIVADOR+PARSER+SOLVER_RECTA_TANGENTE_GRAFICA+CLOSER;
-        script = script.replace("$EXPRESION$", expresion);
-        script = script.replace("$VARIABLEIND$", variableindep);
-        script = script.replace("$X0$", x0.toString());
-        return ejecutaPython(script);
+        return resuelve(SolicitudSimbolica.rectaTangente(expresion, x0, variableindep)).getSolucion();
     }
 
     /**
      * Encuentra las rectas tangentes horizontales \f$f(x)\f$<p>
      * Regresa la derivación paso a paso y la ecuación de la recta.<p>
-     * Construye un script Python con los scriptlets DERIVADOR,PARSER,SOLVER_TANGENTE_HORIZONTAL_GRAFICA_JSX y CLOSER.<p>
-     * Sustituye en el script la expresión en LaTeX pasada como parámetro.<p>
-     * Ejecuta el script. <p>
+     * Construye un trabajo Python con los scriptlets PARSER y SOLVER_TANGENTE_HORIZONTAL_GRAFICA_JSX.<p>
+     * Sustituye en el trabajo la expresión en LaTeX pasada como parámetro.<p>
+     * Ejecuta el trabajo en el pool de Python. <p>
      * Regresa la solución en HTML. <p>
      * @param expresion String con función en LaTeX
      * @param variableindep usualmente 'x'
@@ -1098,10 +1328,441 @@ public class SolucionaSimbolico {
      * @author Iván Gutiérrez
      */
     public static String tangentesHorizontalesGraficaJSX(String expresion, String variableindep){
-        String script = DERIVADOR+PARSER+ SOLVER_TANGENTE_HORIZONTAL_GRAFICA_JSX +CLOSER;
-        script = script.replace("$EXPRESION$", expresion);
-        script = script.replace("$VARIABLEIND$", variableindep);
-        return ejecutaPython(script);
+        return resuelve(SolicitudSimbolica.tangentesHorizontales(expresion, variableindep)).getSolucion();
+    }
+
+    /**
+     * @param solicitud problema a resolver
+     * @return PARSER más el scriptlet de su tipo, sin sustituir. Las derivadas sucesivas
+     * encadenan un DIFF_STEP por cada orden después del primero
+     */
+    private static String plantillaTrabajo(SolicitudSimbolica solicitud) {
+        switch (solicitud.getTipo()) {
+            case SEGUNDA_DERIVADA:
+            case DERIVADA_SUCESIVA:
+                StringBuilder script = new StringBuilder(PARSER+SOLVER);
+                for (int i = 1; i < solicitud.getOrden(); i++) {
+                    script.append(DIFF_STEP);
+                }
+                return script.toString();
+            case RECTA_TANGENTE:
+                return PARSER+SOLVER_RECTA_TANGENTE_GRAFICA;
+            case TANGENTES_HORIZONTALES:
+                return PARSER+SOLVER_TANGENTE_HORIZONTAL_GRAFICA_JSX;
+            default:
+                return PARSER+SOLVER;
+        }
+    }
+
+    /**
+     * Arma el trabajo Python de una solicitud: PARSER más el scriptlet de su tipo,
+     * con la expresión, la variable y, si aplica, x0 sustituidos. Si la expresión se puede
+     * traducir en Java, CONSTRUCTOR toma el lugar de PARSER.
+     * @param solicitud problema a resolver
+     * @return código Python que escribe la solución en "salida"
+     */
+    private static String construyeTrabajo(SolicitudSimbolica solicitud) {
+        String script = plantillaTrabajo(solicitud);
+        String arbol = SOLO_PARSE_LATEX ? null : traduce(solicitud.getExpresion());
+        if (arbol != null) {
+            script = CONSTRUCTOR.replace("$ARBOL$", arbol) + script.substring(PARSER.length());
+        }
+        if (solicitud.getX0() != null) {
+            script = script.replace("$X0$", solicitud.getX0().toString());
+        }
+        script = script.replace("$EXPRESION$", solicitud.getExpresion());
+        script = script.replace("$VARIABLEIND$", solicitud.getVariable());
+        return script;
+    }
+
+    /**
+     * @param solicitud problema a resolver
+     * @return el script que se enviaría a un python3 por trabajo: el preludio, APERTURA, el trabajo y CLOSER
+     */
+    static String scriptCompleto(SolicitudSimbolica solicitud) {
+        return preludio() + APERTURA + construyeTrabajo(solicitud) + CLOSER;
+    }
+
+    /**
+     * Directorio donde se instala DERIVADOR como paquete compilado ({@link ModuloPreludio}); se
+     * toma de "sevilla.preludio.directorio" (por omisión ~/.cache/sevilla/preludio; vacío para
+     * enviar el código fuente a cada intérprete).
+     */
+    private static final String DIRECTORIO_PRELUDIO = System.getProperty("sevilla.preludio.directorio",
+            Paths.get(System.getProperty("user.home"), ".cache", "sevilla", "preludio").toString());
+    private static String preludioCargado;
+
+    /**
+     * Instala DERIVADOR la primera vez que se pide. Si no se puede instalar se usa su código fuente.
+     *
+     * @return el código que carga DERIVADOR en un intérprete: la importación del paquete instalado
+     */
+    static synchronized String preludio() {
+        if (preludioCargado == null) {
+            preludioCargado = DERIVADOR;
+            if (!DIRECTORIO_PRELUDIO.isEmpty()) {
+                try {
+                    preludioCargado = ModuloPreludio.importacion(ModuloPreludio.instala(DERIVADOR, Paths.get(DIRECTORIO_PRELUDIO)));
+                } catch (IOException e) {
+                    System.err.format("No se pudo instalar el preludio en %s (%s); se envía su código fuente%n",
+                            DIRECTORIO_PRELUDIO, e.getMessage());
+                }
+            }
+        }
+        return preludioCargado;
+    }
+
+    /**
+     * @return el código Python que construye la expresión, o null si hay que leerla con parse_latex
+     */
+    private static String traduce(String expresion) {
+        try {
+            return ExpresionSympy.deLatex(expresion).python();
+        } catch (ExpresionNoSoportada e) {
+            System.err.format("Expresión sin traducción a SymPy (%s); se lee con parse_latex%n", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cache de soluciones delante de Python. La capacidad en memoria se toma de la propiedad
+     * "sevilla.cache.capacidad" (por omisión 10000) y el directorio del nivel en disco de
+     * "sevilla.cache.directorio" (por omisión ~/.cache/sevilla/soluciones; vacío para desactivarlo).
+     */
+    private static final CacheSoluciones CACHE = creaCache();
+
+    /** Huella de DERIVADOR para las claves; se calcula una vez y no en cada consulta. */
+    private static final String HUELLA_DERIVADOR = CacheSoluciones.huella(DERIVADOR);
+
+    private static CacheSoluciones creaCache() {
+        String directorio = System.getProperty("sevilla.cache.directorio",
+                Paths.get(System.getProperty("user.home"), ".cache", "sevilla", "soluciones").toString());
+        return new CacheSoluciones(Integer.getInteger("sevilla.cache.capacidad", 10000),
+                directorio.isEmpty() ? null : Paths.get(directorio));
+    }
+
+    /**
+     * @return la cache de soluciones, para consultar aciertos, fallos y desalojos
+     */
+    public static CacheSoluciones getCache() {
+        return CACHE;
+    }
+
+    /**
+     * @param solicitud problema a resolver
+     * @param trabajo su trabajo armado por {@link #construyeTrabajo}, que refleja si la expresión
+     * se construye en Java o se lee con parse_latex
+     * @return la clave de la solución en la cache
+     */
+    private static String claveCache(SolicitudSimbolica solicitud, String trabajo) {
+        return CacheSoluciones.clave(solicitud, HUELLA_DERIVADOR, trabajo);
+    }
+
+    /**
+     * Resuelve una solicitud con el solucionador activo de {@link RegistroSolucionadores}.
+     * @param solicitud problema a resolver
+     * @return la solución paso a paso en HTML o el tipo de falla
+     */
+    public static ResultadoSimbolico resuelve(SolicitudSimbolica solicitud) {
+        return RegistroSolucionadores.activo().resuelve(solicitud);
+    }
+
+    /**
+     * Resuelve varias solicitudes con el solucionador activo de {@link RegistroSolucionadores}.
+     * @param solicitudes problemas a resolver
+     * @return lista de resultados, en el orden de entrada
+     */
+    public static List<ResultadoSimbolico> resuelveLote(List<SolicitudSimbolica> solicitudes) {
+        return RegistroSolucionadores.activo().resuelveLote(solicitudes);
+    }
+
+    /**
+     * Resuelve una solicitud con SymPy, con el scriptlet correspondiente a su tipo,
+     * consultando primero la cache de soluciones.
+     * @param solicitud problema a resolver
+     * @param modo proceso por trabajo, pool de larga vida o servidor de fork
+     * @return la solución paso a paso en HTML o el tipo de falla
+     */
+    static ResultadoSimbolico resuelveConPython(SolicitudSimbolica solicitud, SolucionadorPython.Modo modo) {
+        String trabajo = construyeTrabajo(solicitud);
+        String clave = claveCache(solicitud, trabajo);
+        String solucion = CACHE.obtener(clave);
+        if (solucion != null) {
+            return ResultadoSimbolico.exito(solucion);
+        }
+        ResultadoSimbolico resultado = ejecuta(trabajo, LIMITE_MILIS, modo);
+        if (resultado.esExitoso()) {
+            CACHE.guardar(clave, resultado.getSalida());
+        }
+        return resultado;
+    }
+
+    /**
+     * Resuelve varias solicitudes, de cualquier tipo, en una sola ejecución del intérprete
+     * usando el scriptlet LOTE. Sólo se envían a Python las que no están en la cache.<p>
+     * Los resultados se regresan en el orden de entrada. Si una expresión falla, sólo su
+     * resultado es una falla. El límite de tiempo es por expresión: si una se atora, su
+     * resultado es TIEMPO_AGOTADO, se conservan las ya resueltas y sólo las que faltan se
+     * envían en otro lote.
+     *
+     * @param solicitudes problemas a resolver
+     * @param modo proceso por trabajo, pool de larga vida o servidor de fork
+     * @return lista de resultados
+     */
+    static List<ResultadoSimbolico> resuelveLoteConPython(List<SolicitudSimbolica> solicitudes,
+                                                           SolucionadorPython.Modo modo) {
+        List<ResultadoSimbolico> resultados = new ArrayList<>(solicitudes.size());
+        List<String> claves = new ArrayList<>();
+        List<Integer> pendientes = new ArrayList<>();
+        List<SolicitudSimbolica> nuevas = new ArrayList<>();
+        List<String> trabajos = new ArrayList<>();
+        for (SolicitudSimbolica solicitud : solicitudes) {
+            String trabajo = construyeTrabajo(solicitud);
+            String clave = claveCache(solicitud, trabajo);
+            String solucion = CACHE.obtener(clave);
+            if (solucion == null) {
+                claves.add(clave);
+                pendientes.add(resultados.size());
+                nuevas.add(solicitud);
+                trabajos.add(trabajo);
+                resultados.add(null);
+            } else {
+                resultados.add(ResultadoSimbolico.exito(solucion));
+            }
+        }
+        List<ResultadoSimbolico> resueltos = ejecutaLote(nuevas, trabajos, modo);
+        for (int i = 0; i < resueltos.size(); i++) {
+            resultados.set(pendientes.get(i), resueltos.get(i));
+            if (resueltos.get(i).esExitoso()) {
+                CACHE.guardar(claves.get(i), resueltos.get(i).getSalida());
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Ejecuta los trabajos con el scriptlet LOTE y lee sus registros conforme llegan, con
+     * LIMITE_MILIS por trabajo. Si el lote se detiene (se agota el tiempo de un trabajo o
+     * se cae el intérprete), se conservan los resultados ya recibidos, el trabajo en curso
+     * recibe la falla del lote y los que faltan se envían en un lote nuevo.
+     *
+     * @param solicitudes problemas a resolver
+     * @param trabajos el trabajo de cada solicitud, armado por {@link #construyeTrabajo}
+     */
+    private static List<ResultadoSimbolico> ejecutaLote(List<SolicitudSimbolica> solicitudes, List<String> trabajos,
+                                                        SolucionadorPython.Modo modo) {
+        List<ResultadoSimbolico> resultados = new ArrayList<>(solicitudes.size());
+        while (resultados.size() < solicitudes.size()) {
+            int inicio = resultados.size();
+            StringJoiner codificados = new StringJoiner(",");
+            for (String trabajo : trabajos.subList(inicio, trabajos.size())) {
+                byte[] bytes = trabajo.getBytes(StandardCharsets.UTF_8);
+                codificados.add("'" + Base64.getEncoder().encodeToString(bytes) + "'");
+            }
+            ResultadoSimbolico lote = ejecuta(LOTE.replace("$TRABAJOS$", codificados.toString()), LIMITE_MILIS, modo,
+                    registro -> {
+                        if (resultados.size() < solicitudes.size()) {
+                            resultados.add(leeRegistro(registro, solicitudes.get(resultados.size())));
+                        }
+                    });
+            if (resultados.size() < solicitudes.size()) {
+                SolicitudSimbolica detenida = solicitudes.get(resultados.size());
+                int restantes = solicitudes.size() - resultados.size() - 1;
+                System.err.format("El lote se detuvo en %s (%s); se envían las %d solicitudes restantes%n",
+                        detenida, lote.esExitoso() ? "lote incompleto" : lote.getEstado(), restantes);
+                resultados.add(lote.esExitoso()
+                        ? ResultadoSimbolico.falla(ResultadoSimbolico.Estado.FALLA_PROCESO, "Lote incompleto")
+                        : lote);
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * @param registro "OK n" o "ERR n" y n caracteres con la solución o el traceback
+     * @param solicitud problema al que corresponde, para los mensajes
+     * @return el resultado del registro
+     */
+    private static ResultadoSimbolico leeRegistro(String registro, SolicitudSimbolica solicitud) {
+        int finCabecera = registro.indexOf('\n');
+        String cabecera = finCabecera < 0 ? registro : registro.substring(0, finCabecera);
+        String texto = finCabecera < 0 ? "" : registro.substring(finCabecera + 1);
+        int longitud = TrabajadorPython.longitudMarco(cabecera, "OK", "ERR");
+        if (longitud < 0 || finCabecera < 0 || texto.codePointCount(0, texto.length()) != longitud) {
+            System.err.format("Registro de lote inválido para %s: %s%n", solicitud, cabecera);
+            return ResultadoSimbolico.falla(ResultadoSimbolico.Estado.FALLA_PROCESO,
+                    "Registro de lote inválido: " + cabecera);
+        }
+        if (cabecera.startsWith("OK ")) {
+            return ResultadoSimbolico.exito(texto);
+        }
+        System.err.format("Error de Python resolviendo %s%n", solicitud);
+        for (String linea : texto.split("\n")) {
+            System.out.println("Python: " + linea);
+        }
+        return ResultadoSimbolico.falla(ResultadoSimbolico.Estado.ERROR_PYTHON, texto);
+    }
+
+    /**
+     * @param resultados resultados de un lote
+     * @return sus soluciones; cadena vacía para las que fallaron
+     */
+    private static List<String> soluciones(List<ResultadoSimbolico> resultados) {
+        List<String> soluciones = new ArrayList<>(resultados.size());
+        for (ResultadoSimbolico resultado : resultados) {
+            soluciones.add(resultado.getSolucion());
+        }
+        return soluciones;
+    }
+
+    /**
+     * Número máximo de soluciones que se calculan al mismo tiempo en las versiones asíncronas.
+     * Se toma de la propiedad "sevilla.solucionesSimultaneas" (por omisión, el número de núcleos).
+     */
+    private static ExecutorService ejecutorAsincrono =
+            creaEjecutorAsincrono(Integer.getInteger("sevilla.solucionesSimultaneas",
+                    Runtime.getRuntime().availableProcessors()));
+
+    private static ExecutorService creaEjecutorAsincrono(int simultaneas) {
+        if (simultaneas < 1) {
+            throw new RuntimeException("Debe permitirse al menos una solución simultánea. Encontrado: " + simultaneas);
+        }
+        AtomicInteger contador = new AtomicInteger();
+        return Executors.newFixedThreadPool(simultaneas, tarea -> {
+            Thread hilo = new Thread(tarea, "solucionador-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Cambia el número máximo de soluciones simultáneas. Las que ya estaban en curso terminan
+     * en el ejecutor anterior.
+     * @param simultaneas número de procesos de solución que pueden correr a la vez
+     */
+    public static synchronized void configuraConcurrencia(int simultaneas) {
+        ExecutorService anterior = ejecutorAsincrono;
+        ejecutorAsincrono = creaEjecutorAsincrono(simultaneas);
+        anterior.shutdown();
+    }
+
+    /**
+     * @return el ejecutor de las versiones asíncronas, compartido por todos los solucionadores
+     */
+    static synchronized ExecutorService obtenEjecutorAsincrono() {
+        return ejecutorAsincrono;
+    }
+
+    /**
+     * Versión asíncrona de {@link #resuelve}.
+     * @param solicitud problema a resolver
+     * @return futuro que se completa con el resultado
+     */
+    public static CompletableFuture<ResultadoSimbolico> resuelveAsync(SolicitudSimbolica solicitud) {
+        return RegistroSolucionadores.activo().resuelveAsync(solicitud);
+    }
+
+    /**
+     * Versión asíncrona de derivaSimbolico.
+     * @param expresion String en LaTeX a derivar
+     * @param variableindep variable respecto de la que se derivará. Usualmente 'x'
+     * @return futuro con la solución paso a paso en HTML
+     */
+    public static CompletableFuture<String> derivaSimbolicoAsync(String expresion, String variableindep) {
+        return resuelveAsync(SolicitudSimbolica.derivada(expresion, variableindep)).thenApply(ResultadoSimbolico::getSolucion);
+    }
+
+    /**
+     * Versión asíncrona de derivaSimbolicoSegunda.
+     * @param expresion String en LaTeX a derivar
+     * @param variableindep usualmente 'x'
+     * @return futuro con la solución paso a paso en HTML
+     */
+    public static CompletableFuture<String> derivaSimbolicoSegundaAsync(String expresion, String variableindep) {
+        return resuelveAsync(SolicitudSimbolica.segundaDerivada(expresion, variableindep)).thenApply(ResultadoSimbolico::getSolucion);
+    }
+
+    /**
+     * Versión asíncrona de rectaTangenteGrafica.
+     * @param expresion String en LaTeX a derivar
+     * @param x0 abscisa del punto de tangencia
+     * @param variableindep variable independiente, usualmente 'x'
+     * @return futuro con la solución paso a paso en HTML
+     */
+    public static CompletableFuture<String> rectaTangenteGraficaAsync(String expresion, Integer x0, String variableindep) {
+        return resuelveAsync(SolicitudSimbolica.rectaTangente(expresion, x0, variableindep)).thenApply(ResultadoSimbolico::getSolucion);
+    }
+
+    /**
+     * Versión asíncrona de tangentesHorizontalesGraficaJSX.
+     * @param expresion String con función en LaTeX
+     * @param variableindep usualmente 'x'
+     * @return futuro con la solución paso a paso en HTML
+     */
+    public static CompletableFuture<String> tangentesHorizontalesGraficaJSXAsync(String expresion, String variableindep) {
+        return resuelveAsync(SolicitudSimbolica.tangentesHorizontales(expresion, variableindep)).thenApply(ResultadoSimbolico::getSolucion);
+    }
+
+    /**
+     * Versión en lote de derivaSimbolico: deriva todas las expresiones en una sola
+     * ejecución del intérprete.
+     * @param expresiones Strings en LaTeX a derivar
+     * @param variableindep variable respecto de la que se derivará. Usualmente 'x'
+     * @return soluciones paso a paso en HTML, en el orden de entrada; vacías las que fallaron
+     */
+    public static List<String> derivaSimbolicoLote(List<String> expresiones, String variableindep) {
+        List<SolicitudSimbolica> solicitudes = new ArrayList<>(expresiones.size());
+        for (String expresion : expresiones) {
+            solicitudes.add(SolicitudSimbolica.derivada(expresion, variableindep));
+        }
+        return soluciones(resuelveLote(solicitudes));
+    }
+
+    /**
+     * Versión en lote de derivaSimbolicoSegunda.
+     * @param expresiones Strings en LaTeX a derivar
+     * @param variableindep usualmente 'x'
+     * @return soluciones paso a paso en HTML, en el orden de entrada; vacías las que fallaron
+     */
+    public static List<String> derivaSimbolicoSegundaLote(List<String> expresiones, String variableindep) {
+        List<SolicitudSimbolica> solicitudes = new ArrayList<>(expresiones.size());
+        for (String expresion : expresiones) {
+            solicitudes.add(SolicitudSimbolica.segundaDerivada(expresion, variableindep));
+        }
+        return soluciones(resuelveLote(solicitudes));
+    }
+
+    /**
+     * Versión en lote de rectaTangenteGrafica.
+     * @param expresiones Strings en LaTeX a derivar
+     * @param x0s abscisas de los puntos de tangencia, una por expresión
+     * @param variableindep variable independiente, usualmente 'x'
+     * @return soluciones paso a paso en HTML, en el orden de entrada; vacías las que fallaron
+     */
+    public static List<String> rectaTangenteGraficaLote(List<String> expresiones, List<Integer> x0s, String variableindep) {
+        if (expresiones.size() != x0s.size()) {
+            throw new RuntimeException("Se esperaba un x0 por expresión. Expresiones: " + expresiones.size()
+                    + ", x0: " + x0s.size());
+        }
+        List<SolicitudSimbolica> solicitudes = new ArrayList<>(expresiones.size());
+        for (int i = 0; i < expresiones.size(); i++) {
+            solicitudes.add(SolicitudSimbolica.rectaTangente(expresiones.get(i), x0s.get(i), variableindep));
+        }
+        return soluciones(resuelveLote(solicitudes));
+    }
+
+    /**
+     * Versión en lote de tangentesHorizontalesGraficaJSX.
+     * @param expresiones Strings con funciones en LaTeX
+     * @param variableindep usualmente 'x'
+     * @return soluciones paso a paso en HTML, en el orden de entrada; vacías las que fallaron
+     */
+    public static List<String> tangentesHorizontalesGraficaJSXLote(List<String> expresiones, String variableindep) {
+        List<SolicitudSimbolica> solicitudes = new ArrayList<>(expresiones.size());
+        for (String expresion : expresiones) {
+            solicitudes.add(SolicitudSimbolica.tangentesHorizontales(expresion, variableindep));
+        }
+        return soluciones(resuelveLote(solicitudes));
     }
 
 }
@@ -0,0 +1,273 @@
+package com.uam.auxiliar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Solucionador que deriva con SymPy una sola vez por forma de expresión. Todos los reactivos
+ * de un generador tienen la misma estructura y sólo cambian sus constantes enteras, así que
+ * las constantes de la expresión se cambian por símbolos (\frac{3x+5}{2x-7} se vuelve
+ * \frac{k_{1}x+k_{2}}{k_{3}x-k_{4}}), el respaldo resuelve esa expresión simbólica y su HTML
+ * queda como plantilla de la forma. Cada reactivo se resuelve en Java sustituyendo sus
+ * constantes en la plantilla y simplificando los números dentro de las fórmulas: productos y
+ * potencias de números, signos seguidos, sumas de sólo números dentro de un grupo y
+ * fracciones de números.<p>
+ * Sólo cubre las primeras derivadas. Las constantes 0 y 1 cambian los pasos (un término
+ * desaparece, un coeficiente no se escribe), así que esos reactivos, las formas cuya
+ * plantilla no pudo resolverse y los demás tipos de solicitud se envían al respaldo.
+ */
+public class SolucionadorPlantillas implements SolucionadorSimbolico {
+
+    /** Enteros sin signo de la expresión; los exponentes y subíndices son parte de la forma. */
+    private static final Pattern CONSTANTE = Pattern.compile("([\\^_]\\{?)?(\\d+)");
+    private static final Pattern SIMBOLO = Pattern.compile("k_\\{(\\d+)\\}");
+    private static final Pattern FORMULA = Pattern.compile(
+            "(\\$\\$)(.*?)(\\$\\$)|(<script type=\"math/tex[^\"]*\">)(.*?)(</script>)", Pattern.DOTALL);
+
+    /** Un número que no es exponente, subíndice ni parte de un nombre. */
+    private static final String NUMERO = "(?<![\\w.^_])(?<!\\^\\{)(?<!_\\{)(\\d+)";
+    private static final Pattern POTENCIA = Pattern.compile(NUMERO + "\\^\\{(\\d+)\\}");
+    private static final Pattern PRODUCTO = Pattern.compile(NUMERO + "(?:\\s*\\\\cdot\\s*|\\s+)(\\d+)(?![\\w.^])");
+    private static final Pattern SIGNOS = Pattern.compile("([+-])\\s*([+-])\\s*");
+    private static final Pattern SUMA = Pattern.compile(
+            "(\\{|\\\\left\\()(\\s*-?\\s*\\d+(?:\\s*[+-]\\s*\\d+)+\\s*)(\\}|\\\\right\\))");
+    private static final Pattern FRACCION = Pattern.compile("\\\\frac\\{(-?\\d+)\\}\\{(\\d+)\\}");
+
+    private final SolucionadorSimbolico respaldo;
+    private final ConcurrentMap<String, Optional<String>> plantillas = new ConcurrentHashMap<>();
+
+    /**
+     * @param respaldo resuelve las plantillas y lo que no se puede instanciar, normalmente SymPy
+     */
+    public SolucionadorPlantillas(SolucionadorSimbolico respaldo) {
+        this.respaldo = respaldo;
+    }
+
+    /**
+     * Expresión con sus constantes cambiadas por símbolos, y los valores de esas constantes.
+     */
+    private static final class Forma {
+        private final String expresion;
+        private final long[] constantes;
+
+        private Forma(String expresion, long[] constantes) {
+            this.expresion = expresion;
+            this.constantes = constantes;
+        }
+    }
+
+    /**
+     * @return la forma de la solicitud, o null si no se resuelve con plantilla
+     */
+    private static Forma forma(SolicitudSimbolica solicitud) {
+        if (solicitud.getTipo() != SolicitudSimbolica.Tipo.DERIVADA) {
+            return null;
+        }
+        Matcher matcher = CONSTANTE.matcher(solicitud.getExpresion());
+        StringBuffer simbolica = new StringBuffer();
+        List<Long> constantes = new ArrayList<>();
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                continue;
+            }
+            long valor;
+            try {
+                valor = Long.parseLong(matcher.group(2));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (valor <= 1) {
+                return null;
+            }
+            constantes.add(valor);
+            matcher.appendReplacement(simbolica, Matcher.quoteReplacement("k_{" + constantes.size() + "}"));
+        }
+        if (constantes.isEmpty()) {
+            return null;
+        }
+        matcher.appendTail(simbolica);
+        long[] valores = new long[constantes.size()];
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = constantes.get(i);
+        }
+        return new Forma(simbolica.toString(), valores);
+    }
+
+    /**
+     * @return la plantilla de la forma, resuelta por el respaldo la primera vez que se pide
+     */
+    private String plantilla(Forma forma, SolicitudSimbolica solicitud) {
+        String clave = solicitud.getVariable() + "|" + forma.expresion;
+        return plantillas.computeIfAbsent(clave, c -> {
+            ResultadoSimbolico resultado = respaldo.resuelve(SolicitudSimbolica.derivada(forma.expresion,
+                    solicitud.getVariable()));
+            if (!resultado.esExitoso()) {
+                System.err.format("No se pudo resolver la plantilla %s (%s); sus reactivos se envían al respaldo%n",
+                        forma.expresion, resultado.getEstado());
+                return Optional.empty();
+            }
+            return Optional.of(resultado.getSolucion());
+        }).orElse(null);
+    }
+
+    /**
+     * @return la solución instanciada de la plantilla, o null si no se resuelve con plantilla
+     */
+    private ResultadoSimbolico resuelveConPlantilla(SolicitudSimbolica solicitud) {
+        Forma forma = forma(solicitud);
+        if (forma == null) {
+            return null;
+        }
+        String plantilla = plantilla(forma, solicitud);
+        if (plantilla == null) {
+            return null;
+        }
+        try {
+            String solucion = instancia(plantilla, forma.constantes);
+            // Un símbolo que no es de la expresión quedaría sin valor
+            return SIMBOLO.matcher(solucion).find() ? null : ResultadoSimbolico.exito(solucion);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sustituye las constantes en el HTML de una plantilla y simplifica los números de cada fórmula.
+     *
+     * @param plantilla solución de la expresión simbólica, con k_{1}, k_{2}...
+     * @param constantes valor de cada símbolo, en orden
+     * @return la solución del reactivo; los símbolos sin valor se dejan como están
+     * @throws ArithmeticException si un producto o potencia desborda un long
+     */
+    static String instancia(String plantilla, long[] constantes) {
+        UnaryOperator<String> sustituye = texto -> reemplaza(SIMBOLO, texto, m -> {
+            int indice = Integer.parseInt(m.group(1)) - 1;
+            return indice < constantes.length ? Long.toString(constantes[indice]) : m.group();
+        });
+        return reemplaza(FORMULA, plantilla, m -> m.group(1) != null
+                ? m.group(1) + simplifica(sustituye.apply(m.group(2))) + m.group(3)
+                : m.group(4) + simplifica(sustituye.apply(m.group(5))) + m.group(6));
+    }
+
+    /**
+     * Aplica las simplificaciones numéricas hasta que ninguna cambia la fórmula.
+     */
+    private static String simplifica(String formula) {
+        String anterior;
+        do {
+            anterior = formula;
+            formula = reemplaza(POTENCIA, formula, m -> Long.toString(
+                    potencia(Long.parseLong(m.group(1)), Integer.parseInt(m.group(2)))));
+            formula = reemplaza(PRODUCTO, formula, m -> Long.toString(
+                    Math.multiplyExact(Long.parseLong(m.group(1)), Long.parseLong(m.group(2)))));
+            formula = reemplaza(SIGNOS, formula, m -> m.group(1).equals(m.group(2)) ? "+ " : "- ");
+            formula = reemplaza(SUMA, formula, m -> m.group(1) + suma(m.group(2)) + m.group(3));
+            formula = reemplaza(FRACCION, formula, m -> fraccion(Long.parseLong(m.group(1)), Long.parseLong(m.group(2))));
+        } while (!formula.equals(anterior));
+        return formula;
+    }
+
+    private static long potencia(long base, int exponente) {
+        long resultado = 1;
+        for (int i = 0; i < exponente; i++) {
+            resultado = Math.multiplyExact(resultado, base);
+        }
+        return resultado;
+    }
+
+    /**
+     * @param terminos números separados por + y -, con un signo opcional al inicio
+     */
+    private static long suma(String terminos) {
+        Matcher termino = Pattern.compile("([+-]?)\\s*(\\d+)").matcher(terminos);
+        long total = 0;
+        while (termino.find()) {
+            long valor = Long.parseLong(termino.group(2));
+            total = Math.addExact(total, "-".equals(termino.group(1)) ? -valor : valor);
+        }
+        return total;
+    }
+
+    /**
+     * Reduce una fracción de números; si es entera queda sólo el número.
+     */
+    private static String fraccion(long numerador, long denominador) {
+        long divisor = mcd(Math.abs(numerador), denominador);
+        if (divisor == 0 || (divisor == 1 && denominador != 1)) {
+            return "\\frac{" + numerador + "}{" + denominador + "}";
+        }
+        if (denominador / divisor == 1) {
+            return Long.toString(numerador / divisor);
+        }
+        return "\\frac{" + numerador / divisor + "}{" + denominador / divisor + "}";
+    }
+
+    private static long mcd(long a, long b) {
+        return b == 0 ? a : mcd(b, a % b);
+    }
+
+    private static String reemplaza(Pattern patron, String texto, Function<Matcher, String> reemplazo) {
+        Matcher matcher = patron.matcher(texto);
+        if (!matcher.find()) {
+            return texto;
+        }
+        StringBuffer resultado = new StringBuffer(texto.length());
+        do {
+            matcher.appendReplacement(resultado, Matcher.quoteReplacement(reemplazo.apply(matcher)));
+        } while (matcher.find());
+        matcher.appendTail(resultado);
+        return resultado.toString();
+    }
+
+    @Override
+    public ResultadoSimbolico resuelve(SolicitudSimbolica solicitud) {
+        ResultadoSimbolico conPlantilla = resuelveConPlantilla(solicitud);
+        return conPlantilla != null ? conPlantilla : respaldo.resuelve(solicitud);
+    }
+
+    /**
+     * Resuelve con plantillas lo que puede y envía el resto al respaldo en un solo lote.
+     */
+    @Override
+    public List<ResultadoSimbolico> resuelveLote(List<SolicitudSimbolica> solicitudes) {
+        List<ResultadoSimbolico> resultados = new ArrayList<>(solicitudes.size());
+        List<Integer> pendientes = new ArrayList<>();
+        List<SolicitudSimbolica> restantes = new ArrayList<>();
+        for (SolicitudSimbolica solicitud : solicitudes) {
+            ResultadoSimbolico conPlantilla = resuelveConPlantilla(solicitud);
+            if (conPlantilla == null) {
+                pendientes.add(resultados.size());
+                restantes.add(solicitud);
+            }
+            resultados.add(conPlantilla);
+        }
+        if (!restantes.isEmpty()) {
+            List<ResultadoSimbolico> resueltos = respaldo.resuelveLote(restantes);
+            for (int i = 0; i < resueltos.size(); i++) {
+                resultados.set(pendientes.get(i), resueltos.get(i));
+            }
+        }
+        return resultados;
+    }
+
+    @Override
+    public void calienta() {
+        respaldo.calienta();
+    }
+
+    public SolucionadorSimbolico getRespaldo() {
+        return respaldo;
+    }
+
+    @Override
+    public String toString() {
+        return "plantilla, respaldo " + respaldo;
+    }
+}
@@ -0,0 +1,67 @@
+package com.uam.auxiliar;
+
+import java.util.List;
+
+/**
+ * Solucionador con SymPy: los scriptlets de {@link SolucionaSimbolico}, con su cache
+ * de soluciones y su límite de tiempo. Puede lanzar un python3 por trabajo, usar el
+ * pool de trabajadores de larga vida o el de servidores de fork.
+ */
+public class SolucionadorPython implements SolucionadorSimbolico {
+
+    /**
+     * Cómo se ejecuta cada trabajo de Python.
+     */
+    public enum Modo {
+        /** Un python3 por trabajo, que importa sympy cada vez. */
+        PROCESO,
+        /** Intérpretes de larga vida que reutilizan lo importado. */
+        POOL,
+        /**
+         * Servidores de fork ("zygote"): un padre con sympy ya importado crea un hijo por
+         * trabajo, que hereda el intérprete caliente y termina al responder. Un trabajo que
+         * truena o crece en memoria no afecta a los siguientes. Sólo en sistemas con fork.
+         */
+        ZIGOTO
+    }
+
+    private final Modo modo;
+
+    /**
+     * @param modo cómo se ejecuta cada trabajo; con 0 trabajadores, POOL y ZIGOTO
+     *             también lanzan un proceso por trabajo
+     */
+    public SolucionadorPython(Modo modo) {
+        this.modo = modo;
+    }
+
+    @Override
+    public ResultadoSimbolico resuelve(SolicitudSimbolica solicitud) {
+        return SolucionaSimbolico.resuelveConPython(solicitud, modo);
+    }
+
+    /**
+     * Con pool, arranca y calienta todos sus trabajadores en paralelo.
+     */
+    @Override
+    public void calienta() {
+        SolucionaSimbolico.calientaPool(modo);
+    }
+
+    /**
+     * Resuelve las solicitudes en una sola ejecución del scriptlet LOTE.
+     */
+    @Override
+    public List<ResultadoSimbolico> resuelveLote(List<SolicitudSimbolica> solicitudes) {
+        return SolucionaSimbolico.resuelveLoteConPython(solicitudes, modo);
+    }
+
+    public Modo getModo() {
+        return modo;
+    }
+
+    @Override
+    public String toString() {
+        return "python " + modo.name().toLowerCase();
+    }
+}
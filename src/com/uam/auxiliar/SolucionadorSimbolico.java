@@ -0,0 +1,88 @@
+package com.uam.auxiliar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Servicio que resuelve paso a paso los problemas simbólicos de los reactivos y
+ * regresa la solución en HTML, con los valores que la acompañan si el solucionador los
+ * calcula ({@link DatosSolucion}). Las implementaciones se eligen en
+ * {@link RegistroSolucionadores} y se inyectan a los generadores.<p>
+ * Basta implementar {@link #resuelve}; las operaciones particulares arman su
+ * {@link SolicitudSimbolica} y la delegan ahí.
+ */
+public interface SolucionadorSimbolico {
+
+    /**
+     * @param solicitud problema a resolver
+     * @return la solución paso a paso en HTML o el tipo de falla
+     */
+    ResultadoSimbolico resuelve(SolicitudSimbolica solicitud);
+
+    /**
+     * Prepara el solucionador antes de la primera solicitud. Por omisión no hace nada.
+     */
+    default void calienta() {
+    }
+
+    /**
+     * Resuelve varias solicitudes. Por omisión, una por una.
+     * @param solicitudes problemas a resolver
+     * @return lista de resultados, en el orden de entrada
+     */
+    default List<ResultadoSimbolico> resuelveLote(List<SolicitudSimbolica> solicitudes) {
+        List<ResultadoSimbolico> resultados = new ArrayList<>(solicitudes.size());
+        for (SolicitudSimbolica solicitud : solicitudes) {
+            resultados.add(resuelve(solicitud));
+        }
+        return resultados;
+    }
+
+    /**
+     * Versión asíncrona de {@link #resuelve}, en el ejecutor acotado de SolucionaSimbolico.
+     * @param solicitud problema a resolver
+     * @return futuro que se completa con el resultado
+     */
+    default CompletableFuture<ResultadoSimbolico> resuelveAsync(SolicitudSimbolica solicitud) {
+        return CompletableFuture.supplyAsync(() -> resuelve(solicitud), SolucionaSimbolico.obtenEjecutorAsincrono());
+    }
+
+    /**
+     * @param expresion String en LaTeX a derivar
+     * @param variable variable independiente, usualmente 'x'
+     * @return la primera derivada paso a paso
+     */
+    default ResultadoSimbolico derivada(String expresion, String variable) {
+        return resuelve(SolicitudSimbolica.derivada(expresion, variable));
+    }
+
+    /**
+     * @param expresion String en LaTeX a derivar
+     * @param orden orden de la derivada, al menos 1
+     * @param variable variable independiente, usualmente 'x'
+     * @return las derivadas sucesivas paso a paso hasta la de ese orden
+     */
+    default ResultadoSimbolico derivadaEnesima(String expresion, int orden, String variable) {
+        return resuelve(SolicitudSimbolica.derivadaEnesima(expresion, orden, variable));
+    }
+
+    /**
+     * @param expresion String en LaTeX con la función
+     * @param x0 abscisa del punto de tangencia
+     * @param variable variable independiente, usualmente 'x'
+     * @return la derivada paso a paso, la ecuación de la recta tangente y su gráfica
+     */
+    default ResultadoSimbolico rectaTangente(String expresion, Integer x0, String variable) {
+        return resuelve(SolicitudSimbolica.rectaTangente(expresion, x0, variable));
+    }
+
+    /**
+     * @param expresion String en LaTeX con la función
+     * @param variable variable independiente, usualmente 'x'
+     * @return la derivada paso a paso, los puntos con tangente horizontal y su gráfica
+     */
+    default ResultadoSimbolico tangentesHorizontales(String expresion, String variable) {
+        return resuelve(SolicitudSimbolica.tangentesHorizontales(expresion, variable));
+    }
+}
@@ -0,0 +1,75 @@
+package com.uam.auxiliar;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Solucionador en proceso que no calcula nada: regresa una solución enlatada por tipo
+ * o, si no la hay, una sintetizada con la forma del HTML de print_html_steps.
+ * Tarda la latencia configurada en cada solución, para medir o probar los generadores
+ * y el ejecutor sin Python.<p>
+ * En las soluciones enlatadas se sustituyen $EXPRESION$ y $VARIABLEIND$.
+ */
+public class SolucionadorSimulado implements SolucionadorSimbolico {
+
+    private final long latenciaMilis;
+    private final Map<SolicitudSimbolica.Tipo, String> enlatadas;
+
+    /**
+     * @param latenciaMilis tiempo que tarda cada solución, en milisegundos
+     */
+    public SolucionadorSimulado(long latenciaMilis) {
+        this(latenciaMilis, Collections.emptyMap());
+    }
+
+    /**
+     * @param latenciaMilis tiempo que tarda cada solución, en milisegundos
+     * @param enlatadas solución fija por tipo; los tipos que falten se sintetizan
+     */
+    public SolucionadorSimulado(long latenciaMilis, Map<SolicitudSimbolica.Tipo, String> enlatadas) {
+        if (latenciaMilis < 0) {
+            throw new RuntimeException("La latencia no puede ser negativa. Encontrado: " + latenciaMilis);
+        }
+        this.latenciaMilis = latenciaMilis;
+        this.enlatadas = enlatadas.isEmpty()
+                ? Collections.emptyMap() : new EnumMap<>(enlatadas);
+    }
+
+    @Override
+    public ResultadoSimbolico resuelve(SolicitudSimbolica solicitud) {
+        if (latenciaMilis > 0) {
+            try {
+                Thread.sleep(latenciaMilis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ResultadoSimbolico.falla(ResultadoSimbolico.Estado.FALLA_PROCESO, e.toString());
+            }
+        }
+        String enlatada = enlatadas.get(solicitud.getTipo());
+        if (enlatada == null) {
+            return ResultadoSimbolico.exito(sintetiza(solicitud));
+        }
+        return ResultadoSimbolico.exito(enlatada.replace("$EXPRESION$", solicitud.getExpresion())
+                .replace("$VARIABLEIND$", solicitud.getVariable()));
+    }
+
+    private static String sintetiza(SolicitudSimbolica solicitud) {
+        String variable = solicitud.getVariable();
+        StringBuilder solucion = new StringBuilder();
+        solucion.append("Obtener: $$\\frac{d}{d ").append(variable).append("} \\left(")
+                .append(solicitud.getExpresion()).append("\\right)$$<br><br>");
+        solucion.append("<ol>\n    <li>\n        <p>Solución simulada: ").append(solicitud).append("</p>\n    </li><br>\n");
+        solucion.append("</ol><br/>\n<hr/>\n<p>La respuesta es:</p>\n");
+        return solucion.toString();
+    }
+
+    public long getLatenciaMilis() {
+        return latenciaMilis;
+    }
+
+    @Override
+    public String toString() {
+        return "simulado (" + latenciaMilis + " ms)";
+    }
+}
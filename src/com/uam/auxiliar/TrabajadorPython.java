@@ -0,0 +1,439 @@
+package com.uam.auxiliar;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Proceso de Python3 de larga vida que carga una sola vez el preludio
+ * (DERIVADOR) y después ejecuta trabajos enviados por su entrada estándar.<p>
+ * Protocolo de marcos (framing):<p>
+ * Java a Python: una línea con la longitud en bytes del código, seguida del código en UTF-8.<p>
+ * Python a Java: una línea "OK n" o "ERR n", seguida de n bytes en UTF-8 con la salida
+ * del trabajo o el traceback del error. Antes de ese marco final, un trabajo que resuelve
+ * varias cosas (el scriptlet LOTE) puede escribir en _respuesta marcos "PARCIAL n" con cada
+ * resultado en cuanto lo tiene.<p>
+ * La salida de error de Python se drena en un hilo aparte para que nunca bloquee la tubería.
+ */
+public class TrabajadorPython implements Closeable {
+
+    /**
+     * Ciclo principal del trabajador. Cada trabajo se ejecuta en una copia del espacio de nombres
+     * del preludio y escribe en "salida", que aquí es un StringIO en lugar de un archivo.
+     * Cualquier print del trabajo se desvía a stderr para no corromper los marcos.
+     */
+    static final String BUCLE_TRABAJADOR = "##TRABAJADOR##\n" +
+            "import io as _io\n" +
+            "import sys as _sys\n" +
+            "import traceback as _traceback\n" +
+            "_entrada = _sys.stdin.buffer\n" +
+            "_respuesta = _sys.stdout.buffer\n" +
+            "_sys.stdout = _sys.stderr\n" +
+            "_base = dict(globals())\n" +
+            "while True:\n" +
+            "    _cabecera = _entrada.readline()\n" +
+            "    if not _cabecera:\n" +
+            "        break\n" +
+            "    _codigo = _entrada.read(int(_cabecera)).decode('utf-8')\n" +
+            "    _ambito = dict(_base)\n" +
+            "    _ambito['salida'] = _io.StringIO()\n" +
+            "    try:\n" +
+            "        exec(_codigo, _ambito)\n" +
+            "        _estado, _datos = b'OK', _ambito['salida'].getvalue().encode('utf-8')\n" +
+            "    except Exception:\n" +
+            "        _estado, _datos = b'ERR', _traceback.format_exc().encode('utf-8')\n" +
+            "    _respuesta.write(b'%s %d\\n' % (_estado, len(_datos)))\n" +
+            "    _respuesta.write(_datos)\n" +
+            "    _respuesta.flush()\n";
+
+    /**
+     * Ciclo del servidor de fork ("zygote"). El padre lee cada trabajo y crea un hijo con
+     * os.fork(); el hijo hereda el intérprete con sympy ya cargado (páginas copy-on-write),
+     * ejecuta el trabajo, escribe su marco en un os.pipe y termina con os._exit.
+     * El padre reenvía el marco; si el hijo muere sin escribirlo completo (segfault, kill),
+     * responde ERR. Nada de lo que haga un trabajo sobrevive al siguiente.
+     */
+    static final String BUCLE_ZIGOTO = "##ZIGOTO##\n" +
+            "import io as _io\n" +
+            "import os as _os\n" +
+            "import sys as _sys\n" +
+            "import traceback as _traceback\n" +
+            "_entrada = _sys.stdin.buffer\n" +
+            "_respuesta = _sys.stdout.buffer\n" +
+            "_sys.stdout = _sys.stderr\n" +
+            "_base = dict(globals())\n" +
+            "while True:\n" +
+            "    _cabecera = _entrada.readline()\n" +
+            "    if not _cabecera:\n" +
+            "        break\n" +
+            "    _codigo = _entrada.read(int(_cabecera)).decode('utf-8')\n" +
+            "    _lectura, _escritura = _os.pipe()\n" +
+            "    _pid = _os.fork()\n" +
+            "    if _pid == 0:\n" +
+            "        try:\n" +
+            "            _os.close(_lectura)\n" +
+            "            _ambito = dict(_base)\n" +
+            "            _ambito['salida'] = _io.StringIO()\n" +
+            "            try:\n" +
+            "                exec(_codigo, _ambito)\n" +
+            "                _estado, _datos = b'OK', _ambito['salida'].getvalue().encode('utf-8')\n" +
+            "            except Exception:\n" +
+            "                _estado, _datos = b'ERR', _traceback.format_exc().encode('utf-8')\n" +
+            "            _vista = memoryview(b'%s %d\\n' % (_estado, len(_datos)) + _datos)\n" +
+            "            while _vista:\n" +
+            "                _vista = _vista[_os.write(_escritura, _vista):]\n" +
+            "        finally:\n" +
+            "            _os._exit(0)\n" +
+            "    _os.close(_escritura)\n" +
+            "    _partes = []\n" +
+            "    while True:\n" +
+            "        _bloque = _os.read(_lectura, 65536)\n" +
+            "        if not _bloque:\n" +
+            "            break\n" +
+            "        _partes.append(_bloque)\n" +
+            "    _os.close(_lectura)\n" +
+            "    _estado_hijo = _os.waitpid(_pid, 0)[1]\n" +
+            "    _marco = b''.join(_partes)\n" +
+            "    try:\n" +
+            "        _fin = _marco.index(b'\\n')\n" +
+            "        _completo = len(_marco) - _fin - 1 == int(_marco[:_fin].split()[1])\n" +
+            "    except (ValueError, IndexError):\n" +
+            "        _completo = False\n" +
+            "    if not _completo:\n" +
+            "        _datos = ('El proceso hijo terminó sin responder (estado %d)' % _estado_hijo).encode('utf-8')\n" +
+            "        _marco = b'ERR %d\\n' % len(_datos) + _datos\n" +
+            "    _respuesta.write(_marco)\n" +
+            "    _respuesta.flush()\n";
+
+    private final Process proceso;
+    private final OutputStream entrada;
+    private final InputStream salida;
+    private final boolean zigoto;
+    private int trabajos;
+
+    /**
+     * Lanza el intérprete con el preludio y el ciclo del trabajador.
+     *
+     * @param preludio código Python que se carga una sola vez (imports y funciones)
+     * @throws IOException si no se puede lanzar python3
+     */
+    public TrabajadorPython(String preludio) throws IOException {
+        this(preludio, false);
+    }
+
+    /**
+     * Lanza el intérprete con el preludio y el ciclo del trabajador o del servidor de fork.
+     *
+     * @param preludio código Python que se carga una sola vez (imports y funciones)
+     * @param zigoto true para atender cada trabajo en un proceso hijo (véase BUCLE_ZIGOTO)
+     * @throws IOException si no se puede lanzar python3
+     */
+    public TrabajadorPython(String preludio, boolean zigoto) throws IOException {
+        this.zigoto = zigoto;
+        List<String> comando = Arrays.asList("python3", "-c", preludio + (zigoto ? BUCLE_ZIGOTO : BUCLE_TRABAJADOR));
+        proceso = new ProcessBuilder(comando).start();
+        entrada = new BufferedOutputStream(proceso.getOutputStream());
+        salida = new BufferedInputStream(proceso.getInputStream());
+        drenaErrores(proceso.getErrorStream());
+    }
+
+    /**
+     * Lee la salida de error de Python en un hilo demonio, reenviándola a la consola.
+     * @param errores flujo de error del proceso
+     */
+    static void drenaErrores(InputStream errores) {
+        Thread drenador = new Thread(() -> {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(errores, StandardCharsets.UTF_8));
+            String line;
+            try {
+                while ((line = reader.readLine()) != null) {
+                    System.out.println("Python: " + line);
+                }
+            } catch (IOException e) {
+                System.out.println("Exception in reading output" + e);
+            }
+        }, "python-stderr");
+        drenador.setDaemon(true);
+        drenador.start();
+    }
+
+    /**
+     * Envía un trabajo al intérprete y espera su respuesta a lo más limiteMilis milisegundos.
+     * Si se agota el tiempo se destruye el árbol de procesos del trabajador, que queda inservible;
+     * en un servidor de fork sólo se destruye el hijo del trabajo y el padre sigue atendiendo.
+     *
+     * @param codigo scriptlet de Python que escribe su resultado en "salida"
+     * @param limiteMilis límite de tiempo del trabajo en milisegundos
+     * @return la salida del trabajo o el tipo de falla
+     * @throws IOException si el proceso murió o el protocolo se corrompió
+     */
+    public ResultadoSimbolico ejecuta(String codigo, long limiteMilis) throws IOException {
+        return ejecuta(codigo, limiteMilis, null);
+    }
+
+    /**
+     * Como {@link #ejecuta(String, long)}, entregando los marcos "PARCIAL" que escriba el
+     * trabajo. Cada uno vuelve a contar limiteMilis, de modo que el límite es por resultado.
+     *
+     * @param parciales recibe el texto de cada marco parcial; null si el trabajo no los escribe
+     */
+    public ResultadoSimbolico ejecuta(String codigo, long limiteMilis, Consumer<String> parciales) throws IOException {
+        trabajos++;
+        LimiteTiempo limite = LimiteTiempo.programa(proceso, limiteMilis, zigoto);
+        try {
+            byte[] datos = codigo.getBytes(StandardCharsets.UTF_8);
+            entrada.write((datos.length + "\n").getBytes(StandardCharsets.US_ASCII));
+            entrada.write(datos);
+            entrada.flush();
+
+            String[] respuesta = leeRespuesta(salida, limite, parciales, "OK", "ERR");
+            if (respuesta == null) {
+                throw new EOFException("El trabajador de Python terminó inesperadamente");
+            }
+            String texto = respuesta[1];
+            if ("OK".equals(respuesta[0])) {
+                return ResultadoSimbolico.exito(texto);
+            }
+            if (limite.expiro()) {
+                return ResultadoSimbolico.falla(ResultadoSimbolico.Estado.TIEMPO_AGOTADO,
+                        "Se agotaron " + limiteMilis + " ms; se destruyó el proceso hijo");
+            }
+            for (String linea : texto.split("\n")) {
+                System.out.println("Python: " + linea);
+            }
+            return ResultadoSimbolico.falla(ResultadoSimbolico.Estado.ERROR_PYTHON, texto);
+        } catch (IOException e) {
+            if (limite.expiro()) {
+                return ResultadoSimbolico.falla(ResultadoSimbolico.Estado.TIEMPO_AGOTADO,
+                        "Se agotaron " + limiteMilis + " ms; se destruyó el trabajador");
+            }
+            throw e;
+        } finally {
+            limite.cancela();
+        }
+    }
+
+    /**
+     * @return true si el proceso de Python sigue vivo
+     */
+    public boolean estaVivo() {
+        return proceso.isAlive();
+    }
+
+    /**
+     * @return número de trabajos que ha recibido este intérprete
+     */
+    public int getTrabajos() {
+        return trabajos;
+    }
+
+    /**
+     * Lee la memoria residente del intérprete de la línea VmRSS de /proc/&lt;pid&gt;/status.
+     * @return memoria residente en kB, o -1 si no se puede leer (por ejemplo, fuera de Linux)
+     */
+    public long memoriaResidenteKB() {
+        Path estado = Paths.get("/proc", Long.toString(proceso.pid()), "status");
+        try {
+            for (String linea : Files.readAllLines(estado, StandardCharsets.ISO_8859_1)) {
+                if (linea.startsWith("VmRSS:")) {
+                    return Long.parseLong(linea.substring("VmRSS:".length()).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Sin /proc no se recicla por memoria, sólo por número de trabajos
+        }
+        return -1;
+    }
+
+    /**
+     * Lee la respuesta de un trabajo: los marcos "PARCIAL n", que se entregan a parciales y
+     * reinician el límite, y después el marco final.
+     *
+     * @param in salida del intérprete
+     * @param limite límite del trabajo
+     * @param parciales recibe el texto de cada marco parcial; null si no se esperan
+     * @param estados estados aceptados en el marco final
+     * @return el estado y el texto del marco final, o null si el flujo terminó antes
+     * @throws IOException error de lectura o cabecera inválida; el flujo queda desfasado y el
+     * intérprete ya no se puede usar
+     */
+    static String[] leeRespuesta(InputStream in, LimiteTiempo limite, Consumer<String> parciales,
+                                 String... estados) throws IOException {
+        while (true) {
+            String cabecera = leeLinea(in);
+            if (cabecera == null) {
+                return null;
+            }
+            int longitud = longitudMarco(cabecera, estados);
+            boolean parcial = parciales != null && longitud < 0;
+            if (parcial) {
+                longitud = longitudMarco(cabecera, "PARCIAL");
+            }
+            if (longitud < 0) {
+                throw new IOException("Cabecera inválida en la salida de Python: " + cabecera);
+            }
+            String texto = new String(leeBytes(in, longitud), StandardCharsets.UTF_8);
+            if (!parcial) {
+                return new String[]{cabecera.substring(0, cabecera.indexOf(' ')), texto};
+            }
+            limite.reinicia();
+            parciales.accept(texto);
+        }
+    }
+
+    /**
+     * @param cabecera línea que precede a un marco, "OK n" o "ERR n"
+     * @param estados estados aceptados en la cabecera
+     * @return n, o -1 si la línea no es una cabecera válida (por ejemplo, si el scriptlet
+     * imprimió algo en la salida estándar antes del marco)
+     */
+    static int longitudMarco(String cabecera, String... estados) {
+        String[] partes = cabecera.split(" ");
+        if (partes.length != 2 || !Arrays.asList(estados).contains(partes[0])) {
+            return -1;
+        }
+        try {
+            return Math.max(-1, Integer.parseInt(partes[1]));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Lee una línea ASCII terminada en '\n' sin usar un Reader, para no consumir bytes del marco.
+     * @param in flujo de entrada
+     * @return la línea sin el terminador o null si se alcanzó el fin del flujo
+     * @throws IOException error de lectura
+     */
+    static String leeLinea(InputStream in) throws IOException {
+        StringBuilder linea = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c == -1) {
+                return linea.length() == 0 ? null : linea.toString();
+            }
+            linea.append((char) c);
+        }
+        return linea.toString();
+    }
+
+    /**
+     * Lee exactamente n bytes del flujo.
+     * @param in flujo de entrada
+     * @param n número de bytes
+     * @return los bytes leídos
+     * @throws IOException si el flujo termina antes
+     */
+    static byte[] leeBytes(InputStream in, int n) throws IOException {
+        byte[] datos = new byte[n];
+        int leidos = 0;
+        while (leidos < n) {
+            int r = in.read(datos, leidos, n - leidos);
+            if (r == -1) {
+                throw new EOFException("Marco incompleto: se esperaban " + n + " bytes, se leyeron " + leidos);
+            }
+            leidos += r;
+        }
+        return datos;
+    }
+
+    /**
+     * Cierra la entrada del intérprete, lo que termina su ciclo, y destruye el proceso.
+     */
+    @Override
+    public void close() {
+        try {
+            entrada.close();
+        } catch (IOException e) {
+            System.err.format("Cerrando trabajador IOException: %s%n", e);
+        }
+        proceso.destroy();
+    }
+
+    /**
+     * Destruye un proceso junto con todos sus descendientes.
+     * @param proceso proceso a destruir
+     */
+    static void destruyeArbol(Process proceso) {
+        proceso.descendants().forEach(ProcessHandle::destroyForcibly);
+        proceso.destroyForcibly();
+    }
+
+    /**
+     * Límite de tiempo de un trabajo: al expirar destruye el árbol de procesos,
+     * lo que desbloquea a quien esté leyendo su salida.
+     */
+    static class LimiteTiempo {
+        private static final ScheduledExecutorService VIGILANTE = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "limite-python");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        private final Process proceso;
+        private final long limiteMilis;
+        private final boolean soloDescendientes;
+        private final AtomicBoolean expirado = new AtomicBoolean();
+        private volatile ScheduledFuture<?> tarea;
+
+        private LimiteTiempo(Process proceso, long limiteMilis, boolean soloDescendientes) {
+            this.proceso = proceso;
+            this.limiteMilis = limiteMilis;
+            this.soloDescendientes = soloDescendientes;
+        }
+
+        static LimiteTiempo programa(Process proceso, long limiteMilis) {
+            return programa(proceso, limiteMilis, false);
+        }
+
+        /**
+         * @param soloDescendientes true para destruir sólo los hijos y dejar vivo al proceso
+         */
+        static LimiteTiempo programa(Process proceso, long limiteMilis, boolean soloDescendientes) {
+            LimiteTiempo limite = new LimiteTiempo(proceso, limiteMilis, soloDescendientes);
+            limite.tarea = limite.agenda();
+            return limite;
+        }
+
+        private ScheduledFuture<?> agenda() {
+            return VIGILANTE.schedule(() -> {
+                expirado.set(true);
+                if (soloDescendientes) {
+                    proceso.descendants().forEach(ProcessHandle::destroyForcibly);
+                } else {
+                    destruyeArbol(proceso);
+                }
+            }, limiteMilis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Vuelve a contar el límite desde ahora, para el siguiente resultado de un lote.
+         * @return false si ya había expirado
+         */
+        boolean reinicia() {
+            if (!tarea.cancel(false)) {
+                return false;
+            }
+            tarea = agenda();
+            return true;
+        }
+
+        boolean expiro() {
+            return expirado.get();
+        }
+
+        void cancela() {
+            tarea.cancel(false);
+        }
+    }
+}
@@ -93,12 +93,14 @@ public class Constantes {
             + "    <penalty>0.3333333</penalty>\n"
             + "    <hidden>0</hidden>\n"
             + "  </question>";
+    /** Categoría de Moodle a la que se importan los reactivos, en GLOBAL_XML_PREFIJO. */
+    public static String GLOBAL_XML_CATEGORIA = "$module$/Sevilla_step_by_step_derivative";
     public static String GLOBAL_XML_PREFIJO = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
             + "<quiz>\n"
             + "<!-- question: 0  -->\n"
             + "  <question type=\"category\">\n"
             + "    <category>\n"
-            + "        <text>$module$/Sevilla_step_by_step_derivative</text>\n"
+            + "        <text>" + GLOBAL_XML_CATEGORIA + "</text>\n"
             + "    </category>\n"
             + "  </question>\n"
             + "";
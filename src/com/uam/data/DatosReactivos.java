@@ -2,6 +2,8 @@ package com.uam.data;
 
 import com.uam.utilidades.Utilidades;
 
+import java.util.SplittableRandom;
+
 /**
  * Contiene el banco de datos a utilizar por los generadores de reactivos.
  *
@@ -16,7 +18,7 @@ public class DatosReactivos {
             //,"\u03b8\u03a9","\u03b3\u03c9"
     };
     
-    public static String obtenerParesVariables(){
-        return Utilidades.obtenerAleatorioDeArreglo(PARES_VARIABLES);
+    public static String obtenerParesVariables(SplittableRandom aleatorio){
+        return Utilidades.obtenerAleatorioDeArreglo(aleatorio, PARES_VARIABLES);
     }
 }
@@ -0,0 +1,169 @@
+package com.uam.executor;
+
+import com.uam.utilidades.SalidaUtf8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bitácora de una corrida reanudable, en un archivo de texto junto al de salida. Empieza con
+ * el generador y la semilla, y tiene una línea por reactivo terminado:
+ * <pre>
+ * # generador=com.uam.generators.Gen3_TangentPointGraph semilla=42
+ * 0	20731	A=1 B=-2 C=3 D=0 X0=1
+ * 1	41466	A=-3 B=5 C=1 D=7 X0=-2
+ * # fin 2
+ * </pre>
+ * El segundo campo es la longitud del archivo de salida con ese reactivo ya escrito. Una
+ * línea sólo cuenta si terminó de escribirse; al abrir la bitácora se descartan la última
+ * línea a medias y la marca de fin, para seguir registrando desde el último reactivo.<p>
+ * Las líneas se escriben sólo después de forzar al disco el archivo de salida (FileChannel.force),
+ * y después se fuerza la bitácora, de modo que tras una caída del sistema nunca registra bytes
+ * que no llegaron al disco. Como forzar cuesta una escritura síncrona, se hace cada
+ * "sevilla.bitacora.sincronizaCada" reactivos (por omisión 1); los registrados entre una y
+ * otra se vuelven a generar si la corrida se cae.
+ */
+final class BitacoraGeneracion implements Closeable {
+
+    /** Reactivos que se registran entre una sincronización con el disco y la siguiente. */
+    private static final int SINCRONIZA_CADA = Math.max(1, Integer.getInteger("sevilla.bitacora.sincronizaCada", 1));
+
+    private final FileChannel canal;
+    private final Writer escritor;
+    private final int siguienteReactivo;
+    private final long longitudArchivo;
+    /** Líneas de reactivos ya escritos que esperan la siguiente sincronización. */
+    private final StringBuilder pendientes = new StringBuilder();
+    private int sinSincronizar;
+
+    private BitacoraGeneracion(FileChannel canal, Writer escritor, int siguienteReactivo, long longitudArchivo) {
+        this.canal = canal;
+        this.escritor = escritor;
+        this.siguienteReactivo = siguienteReactivo;
+        this.longitudArchivo = longitudArchivo;
+    }
+
+    /**
+     * Abre la bitácora o la crea si no existe.
+     *
+     * @param ruta archivo de la bitácora
+     * @param generador nombre de la clase del generador
+     * @param semilla semilla de la corrida
+     * @return la bitácora, lista para registrar el siguiente reactivo
+     * @throws IOException si no se pudo leer o escribir
+     * @throws RuntimeException si la bitácora es de otro generador u otra semilla, o está dañada
+     */
+    static BitacoraGeneracion abre(Path ruta, String generador, long semilla) throws IOException {
+        String encabezado = "# generador=" + generador + " semilla=" + semilla + "\n";
+        String texto = Files.exists(ruta) ? new String(Files.readAllBytes(ruta), StandardCharsets.UTF_8) : "";
+        int siguiente = 0;
+        long longitud = 0;
+        int conservar = 0;
+        if (!texto.isEmpty()) {
+            if (!texto.startsWith(encabezado)) {
+                String primera = texto.split("\n", 2)[0];
+                throw new RuntimeException("La bitácora " + ruta + " es de otra corrida (" + primera + "); se esperaba "
+                        + encabezado.trim() + ". Reanúdese con la misma semilla (-Dsevilla.semilla) o bórrese la bitácora");
+            }
+            conservar = encabezado.length();
+            int inicio = conservar;
+            int fin;
+            while ((fin = texto.indexOf('\n', inicio)) >= 0) {
+                String linea = texto.substring(inicio, fin);
+                inicio = fin + 1;
+                if (linea.startsWith("#")) {
+                    continue;
+                }
+                String[] campos = linea.split("\t", 3);
+                if (campos.length < 3 || Integer.parseInt(campos[0]) != siguiente) {
+                    throw new RuntimeException("Bitácora dañada en " + ruta + ": se esperaba el reactivo " + siguiente
+                            + ". Encontrado: " + linea);
+                }
+                siguiente++;
+                longitud = Long.parseLong(campos[1]);
+                conservar = inicio;
+            }
+        }
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Se descartan la marca de fin y una posible línea a medias; la longitud se mide en bytes
+        canal.truncate(texto.substring(0, conservar).getBytes(StandardCharsets.UTF_8).length);
+        canal.position(canal.size());
+        Writer escritor = Channels.newWriter(canal, StandardCharsets.UTF_8.newEncoder(), -1);
+        if (texto.isEmpty()) {
+            escritor.write(encabezado);
+            escritor.flush();
+        }
+        canal.force(false);
+        return new BitacoraGeneracion(canal, escritor, siguiente, longitud);
+    }
+
+    /**
+     * @return número del primer reactivo que falta
+     */
+    int getSiguienteReactivo() {
+        return siguienteReactivo;
+    }
+
+    /**
+     * @return longitud del archivo de salida hasta el último reactivo registrado; 0 si no hay ninguno
+     */
+    long getLongitudArchivo() {
+        return longitudArchivo;
+    }
+
+    /**
+     * Registra un reactivo que ya está escrito en la salida. La línea llega a la bitácora en
+     * la siguiente sincronización.
+     *
+     * @param numeroReactivo número del reactivo
+     * @param parametros constantes con las que se generó
+     * @param salida archivo de salida con el reactivo escrito
+     */
+    void registra(int numeroReactivo, Object parametros, SalidaUtf8 salida) throws IOException {
+        salida.vacia();
+        pendientes.append(numeroReactivo).append('\t').append(salida.posicion()).append('\t')
+                .append(parametros).append('\n');
+        if (++sinSincronizar >= SINCRONIZA_CADA) {
+            sincroniza(salida);
+        }
+    }
+
+    /**
+     * Fuerza al disco el archivo de salida y después escribe y fuerza las líneas pendientes.
+     *
+     * @param salida archivo de salida
+     */
+    void sincroniza(SalidaUtf8 salida) throws IOException {
+        salida.sincroniza();
+        if (pendientes.length() > 0) {
+            escritor.write(pendientes.toString());
+            escritor.flush();
+            canal.force(false);
+            pendientes.setLength(0);
+        }
+        sinSincronizar = 0;
+    }
+
+    /**
+     * Marca la corrida como completa, con el archivo de salida ya sincronizado y cerrado.
+     *
+     * @param numeroReactivos número de reactivos del archivo
+     */
+    void termina(int numeroReactivos) throws IOException {
+        escritor.write("# fin " + numeroReactivos + "\n");
+        escritor.flush();
+        canal.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        escritor.close();
+    }
+}
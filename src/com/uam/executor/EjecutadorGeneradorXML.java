@@ -1,10 +1,34 @@
 package com.uam.executor;
 
 import com.uam.auxiliar.GeneradorReactivoCloze;
+import com.uam.auxiliar.PoliticaReintentos;
+import com.uam.auxiliar.ReactivoPendiente;
+import com.uam.auxiliar.ResultadoSimbolico;
+import com.uam.auxiliar.SolicitudSimbolica;
+import com.uam.auxiliar.SolucionaSimbolico;
 import static com.uam.constantes.Constantes.GLOBAL_XML_PREFIJO;
 import static com.uam.constantes.Constantes.GLOBAL_XML_SUFIJO;
+import com.uam.utilidades.FlujosAleatorios;
+import com.uam.utilidades.SalidaUtf8;
+
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 
@@ -14,19 +38,630 @@ import java.io.PrintWriter;
  * @author Iván Gutiérrez Rodríguez
  */
 public class EjecutadorGeneradorXML {
-    
+
+    /**
+     * Número de hilos con los que generarReactivos arma los reactivos, de la propiedad
+     * "sevilla.hilosGeneracion" (por omisión 1, en serie).
+     */
+    private static final int HILOS_GENERACION = Integer.getInteger("sevilla.hilosGeneracion", 1);
+
+    /**
+     * Con la propiedad "sevilla.reanudable" en true, generarReactivos lleva una bitácora y
+     * reanuda una corrida interrumpida; véase {@link #generarReactivosReanudable}.
+     */
+    private static final boolean REANUDABLE = Boolean.getBoolean("sevilla.reanudable");
+
+    /**
+     * Con la propiedad "sevilla.reactivosPorArchivo" mayor que 0, generarReactivos reparte los
+     * reactivos en varios archivos de a lo más ese número; véase {@link #generarReactivosPorPartes}.
+     * Con "sevilla.unirPartes" en true, además los une en el archivo pedido. No se combina con
+     * "sevilla.reanudable", que tiene precedencia.
+     */
+    private static final int REACTIVOS_POR_ARCHIVO = Integer.getInteger("sevilla.reactivosPorArchivo", 0);
+    private static final boolean UNIR_PARTES = Boolean.getBoolean("sevilla.unirPartes");
+
+    /**
+     * Inicio y fin del archivo, codificados una sola vez en UTF-8.
+     */
+    private static final ByteBuffer PREFIJO_UTF8 = SalidaUtf8.codifica(GLOBAL_XML_PREFIJO);
+    private static final ByteBuffer SUFIJO_UTF8 = SalidaUtf8.codifica(GLOBAL_XML_SUFIJO);
+
+    /**
+     * Genera los reactivos en orden. Con "sevilla.hilosGeneracion" mayor que 1 usa
+     * {@link #generarReactivosParalelo(String, int, GeneradorReactivoCloze, int)}; con
+     * "sevilla.reanudable" usa {@link #generarReactivosReanudable}, y con
+     * "sevilla.reactivosPorArchivo", {@link #generarReactivosPorPartes}.
+     *
+     * @param nombreArchivo nombre o ruta del archivo de salida
+     * @param numeroReactivos número total de reactivos
+     * @param generador generador de reactivos
+     */
     public static void generarReactivos(String nombreArchivo, int numeroReactivos, GeneradorReactivoCloze generador) {
+        if (REANUDABLE) {
+            generarReactivosReanudable(nombreArchivo, numeroReactivos, generador, HILOS_GENERACION);
+            return;
+        }
+        if (REACTIVOS_POR_ARCHIVO > 0) {
+            generarReactivosPorPartes(nombreArchivo, numeroReactivos, generador, REACTIVOS_POR_ARCHIVO,
+                    HILOS_GENERACION, UNIR_PARTES);
+            return;
+        }
+        verificaEspacio(numeroReactivos, generador);
+        if (HILOS_GENERACION > 1) {
+            generarReactivosParalelo(nombreArchivo, numeroReactivos, generador, HILOS_GENERACION);
+            return;
+        }
+        generador.getSolucionador().calienta();
         try {
-            try (PrintWriter writer = new PrintWriter(nombreArchivo, "UTF-8")) {
-                writer.print(GLOBAL_XML_PREFIJO);
+            try (SalidaUtf8 salida = SalidaUtf8.crea(Paths.get(nombreArchivo))) {
+                salida.escribe(PREFIJO_UTF8);
                 for(int i = 0; i<numeroReactivos; i++){
-                    writer.print(generador.generarReactivoCloze(i));
+                    generador.generarReactivoCloze(i, salida);
+                }
+                salida.escribe(SUFIJO_UTF8);
+            }
+        }catch (IOException | UncheckedIOException e){
+            System.out.print("Error al generar el archivo de salida: "+e.getMessage());
+        }
+        System.out.println(SolucionaSimbolico.getCache());
+
+    }
+
+    /**
+     * Falla antes de arrancar Python si se piden más reactivos que combinaciones distintas
+     * de constantes tiene el generador.
+     */
+    static void verificaEspacio(int numeroReactivos, GeneradorReactivoCloze generador) {
+        long tamano = generador.tamanoEspacio();
+        if (tamano >= 0 && numeroReactivos > tamano) {
+            throw new RuntimeException("Se pidieron " + numeroReactivos + " reactivos, pero "
+                    + generador.getClass().getSimpleName() + " sólo tiene " + tamano
+                    + " combinaciones distintas de constantes");
+        }
+    }
+
+    /**
+     * Genera los reactivos por bloques: primero muestrea los parámetros de todo el bloque,
+     * después resuelve todas sus solicitudes en una sola ejecución de Python y al final
+     * arma y escribe cada reactivo en orden.
+     *
+     * @param nombreArchivo nombre o ruta del archivo de salida
+     * @param numeroReactivos número total de reactivos
+     * @param generador generador de reactivos
+     * @param tamanoLote número de reactivos que se resuelven en cada ejecución de Python
+     */
+    public static void generarReactivos(String nombreArchivo, int numeroReactivos, GeneradorReactivoCloze generador,
+                                        int tamanoLote) {
+        verificaEspacio(numeroReactivos, generador);
+        generador.getSolucionador().calienta();
+        try {
+            try (SalidaUtf8 salida = SalidaUtf8.crea(Paths.get(nombreArchivo))) {
+                salida.escribe(PREFIJO_UTF8);
+                for (int inicio = 0; inicio < numeroReactivos; inicio += tamanoLote) {
+                    int fin = Math.min(inicio + tamanoLote, numeroReactivos);
+                    List<ReactivoPendiente> pendientes = new ArrayList<>(fin - inicio);
+                    List<SolicitudSimbolica> solicitudes = new ArrayList<>(fin - inicio);
+                    for (int i = inicio; i < fin; i++) {
+                        ReactivoPendiente pendiente = generador.prepararReactivo(i);
+                        pendientes.add(pendiente);
+                        solicitudes.add(pendiente.getSolicitud());
+                    }
+                    List<ResultadoSimbolico> resultados = generador.getSolucionador().resuelveLote(solicitudes);
+                    for (int i = 0; i < pendientes.size(); i++) {
+                        ResultadoSimbolico resultado = resultados.get(i);
+                        if (resultado.esExitoso()) {
+                            pendientes.get(i).completar(resultado, salida);
+                        } else {
+                            // Se vuelve a generar con constantes nuevas, con la política de reintentos
+                            PoliticaReintentos.verifica(pendientes.get(i), resultado, 1);
+                            generador.generarReactivoCloze(pendientes.get(i).getNumeroReactivo(), 2, salida);
+                        }
+                    }
+                }
+                salida.escribe(SUFIJO_UTF8);
+            }
+        }catch (IOException | UncheckedIOException e){
+            System.out.print("Error al generar el archivo de salida: "+e.getMessage());
+        }
+        System.out.println(SolucionaSimbolico.getCache());
+
+    }
+
+    /**
+     * Genera los reactivos manteniendo hasta enVuelo soluciones en curso: mientras SymPy
+     * resuelve unos reactivos se muestrean los siguientes y se escriben los ya resueltos,
+     * siempre en el orden de su número de reactivo.
+     *
+     * @param nombreArchivo nombre o ruta del archivo de salida
+     * @param numeroReactivos número total de reactivos
+     * @param generador generador de reactivos
+     * @param enVuelo número máximo de reactivos esperando su solución
+     */
+    public static void generarReactivosAsincrono(String nombreArchivo, int numeroReactivos,
+                                                 GeneradorReactivoCloze generador, int enVuelo) {
+        verificaEspacio(numeroReactivos, generador);
+        generador.getSolucionador().calienta();
+        try {
+            try (SalidaUtf8 salida = SalidaUtf8.crea(Paths.get(nombreArchivo))) {
+                salida.escribe(PREFIJO_UTF8);
+                Deque<CompletableFuture<String>> pendientes = new ArrayDeque<>(enVuelo);
+                for (int i = 0; i < numeroReactivos; i++) {
+                    if (pendientes.size() >= enVuelo) {
+                        salida.append(pendientes.poll().join());
+                    }
+                    pendientes.add(generador.generarReactivoClozeAsync(i));
+                }
+                while (!pendientes.isEmpty()) {
+                    salida.append(pendientes.poll().join());
+                }
+                salida.escribe(SUFIJO_UTF8);
+            }
+        }catch (IOException | UncheckedIOException e){
+            System.out.print("Error al generar el archivo de salida: "+e.getMessage());
+        }
+        System.out.println(SolucionaSimbolico.getCache());
+    }
+
+    /**
+     * Genera los reactivos en paralelo con una ventana de reordenamiento de cuatro reactivos por hilo.
+     *
+     * @param nombreArchivo nombre o ruta del archivo de salida
+     * @param numeroReactivos número total de reactivos
+     * @param generador generador de reactivos
+     * @param hilos número de hilos que arman reactivos a la vez
+     */
+    public static void generarReactivosParalelo(String nombreArchivo, int numeroReactivos,
+                                                GeneradorReactivoCloze generador, int hilos) {
+        generarReactivosParalelo(nombreArchivo, numeroReactivos, generador, hilos, 4 * hilos);
+    }
+
+    /**
+     * Reparte los números de reactivo entre varios hilos, cada uno arma su reactivo completo
+     * (parámetros, solución y reintentos), y los escribe en el orden de su número.<p>
+     * Los reactivos terminados esperan su turno en una ventana de a lo más ventana reactivos;
+     * cuando se llena, no se reparte el siguiente hasta escribir el más antiguo, de modo que
+     * la memoria no depende de numeroReactivos.
+     *
+     * @param nombreArchivo nombre o ruta del archivo de salida
+     * @param numeroReactivos número total de reactivos
+     * @param generador generador de reactivos; debe poder usarse desde varios hilos
+     * @param hilos número de hilos que arman reactivos a la vez
+     * @param ventana número máximo de reactivos repartidos y aún sin escribir, al menos hilos
+     */
+    public static void generarReactivosParalelo(String nombreArchivo, int numeroReactivos,
+                                                GeneradorReactivoCloze generador, int hilos, int ventana) {
+        if (hilos < 1 || ventana < hilos) {
+            throw new RuntimeException("Se requiere al menos un hilo y una ventana de al menos un reactivo por hilo."
+                    + " Hilos: " + hilos + ", ventana: " + ventana);
+        }
+        verificaEspacio(numeroReactivos, generador);
+        generador.getSolucionador().calienta();
+        ExecutorService ejecutor = creaEjecutor(hilos);
+        try {
+            try (SalidaUtf8 salida = SalidaUtf8.crea(Paths.get(nombreArchivo))) {
+                salida.escribe(PREFIJO_UTF8);
+                Deque<CompletableFuture<String>> pendientes = new ArrayDeque<>(ventana);
+                for (int i = 0; i < numeroReactivos; i++) {
+                    if (pendientes.size() >= ventana) {
+                        salida.append(pendientes.poll().join());
+                    }
+                    int numeroReactivo = i;
+                    pendientes.add(CompletableFuture.supplyAsync(
+                            () -> generador.generarReactivoCloze(numeroReactivo), ejecutor));
+                }
+                while (!pendientes.isEmpty()) {
+                    salida.append(pendientes.poll().join());
+                }
+                salida.escribe(SUFIJO_UTF8);
+            }
+        }catch (IOException | UncheckedIOException e){
+            System.out.print("Error al generar el archivo de salida: "+e.getMessage());
+        } finally {
+            ejecutor.shutdownNow();
+        }
+        System.out.println(SolucionaSimbolico.getCache());
+    }
+
+    /**
+     * Genera los reactivos llevando una bitácora junto al archivo ("archivo.bitacora", véase
+     * {@link BitacoraGeneracion}). En ella se registra cada reactivo en cuanto está escrito,
+     * con su número, sus parámetros y la longitud del archivo hasta él.<p>
+     * Si la corrida se interrumpe, volver a llamar este método con el mismo archivo y la misma
+     * semilla conserva los reactivos registrados. Descarta lo escrito después de ellos y sigue
+     * con el siguiente número. El cierre del cuestionario sólo se escribe cuando están todos,
+     * así que un archivo a medias nunca parece completo.
+     *
+     * @param nombreArchivo nombre o ruta del archivo de salida
+     * @param numeroReactivos número total de reactivos
+     * @param generador generador de reactivos; con más de un hilo debe poder usarse desde varios
+     * @param hilos número de hilos que arman reactivos a la vez; con 1 se generan en serie
+     */
+    public static void generarReactivosReanudable(String nombreArchivo, int numeroReactivos,
+                                                  GeneradorReactivoCloze generador, int hilos) {
+        verificaEspacio(numeroReactivos, generador);
+        Path archivo = Paths.get(nombreArchivo);
+        ExecutorService ejecutor = hilos > 1 ? creaEjecutor(hilos) : null;
+        try (BitacoraGeneracion bitacora = BitacoraGeneracion.abre(Paths.get(nombreArchivo + ".bitacora"),
+                generador.getClass().getName(), FlujosAleatorios.getSemilla())) {
+            int inicio = bitacora.getSiguienteReactivo();
+            if (inicio > numeroReactivos) {
+                throw new RuntimeException("La bitácora de " + nombreArchivo + " ya tiene " + inicio
+                        + " reactivos, más de los " + numeroReactivos + " pedidos");
+            }
+            if (inicio > 0) {
+                System.out.format("Reanudando %s en el reactivo %d de %d%n", nombreArchivo, inicio, numeroReactivos);
+            }
+            if (inicio < numeroReactivos) {
+                generador.getSolucionador().calienta();
+            }
+            try (SalidaUtf8 salida = inicio == 0 ? SalidaUtf8.crea(archivo)
+                    : SalidaUtf8.reanuda(archivo, bitacora.getLongitudArchivo())) {
+                if (inicio == 0) {
+                    salida.escribe(PREFIJO_UTF8);
                 }
-                writer.print(GLOBAL_XML_SUFIJO);                
+                escribeReactivos(salida, inicio, numeroReactivos, generador, ejecutor, 4 * hilos, bitacora);
+                salida.escribe(SUFIJO_UTF8);
+                bitacora.sincroniza(salida);
             }
-        }catch (IOException e){
+            bitacora.termina(numeroReactivos);
+        } catch (IOException | UncheckedIOException e) {
             System.out.print("Error al generar el archivo de salida: "+e.getMessage());
+        } finally {
+            if (ejecutor != null) {
+                ejecutor.shutdownNow();
+            }
+        }
+        System.out.println(SolucionaSimbolico.getCache());
+    }
+
+    /**
+     * Reparte los reactivos en archivos de a lo más reactivosPorParte, cada uno con su propio
+     * inicio y cierre del cuestionario para importarse por separado. Cada parte la escribe en
+     * serie un solo hilo, con su propia salida, y las partes se reparten entre los hilos. Los
+     * números de reactivo son los mismos que en un solo archivo: la parte k tiene los reactivos
+     * desde k * reactivosPorParte.<p>
+     * Las partes se llaman como el archivo con el número de parte antes de la extensión
+     * (banco.xml da banco-1.xml, banco-2.xml...; véase {@link #nombreParte}). Con unir, al
+     * final se escribe además el archivo completo con {@link #unirPartes}.
+     *
+     * @param nombreArchivo nombre o ruta del archivo completo, del que se derivan los de las partes
+     * @param numeroReactivos número total de reactivos
+     * @param generador generador de reactivos; con más de un hilo debe poder usarse desde varios
+     * @param reactivosPorParte número máximo de reactivos en cada archivo
+     * @param hilos número de partes que se escriben a la vez
+     * @param unir si también se escribe el archivo completo con todas las partes
+     */
+    public static void generarReactivosPorPartes(String nombreArchivo, int numeroReactivos,
+                                                 GeneradorReactivoCloze generador, int reactivosPorParte,
+                                                 int hilos, boolean unir) {
+        if (reactivosPorParte < 1 || hilos < 1) {
+            throw new RuntimeException("Se requiere al menos un reactivo por parte y un hilo. Reactivos por parte: "
+                    + reactivosPorParte + ", hilos: " + hilos);
+        }
+        verificaEspacio(numeroReactivos, generador);
+        int numeroPartes = (int) ((numeroReactivos + (long) reactivosPorParte - 1) / reactivosPorParte);
+        generador.getSolucionador().calienta();
+        ExecutorService ejecutor = creaEjecutor(Math.min(hilos, Math.max(numeroPartes, 1)));
+        try {
+            List<CompletableFuture<Void>> partes = new ArrayList<>(numeroPartes);
+            for (int k = 0; k < numeroPartes; k++) {
+                Path parte = Paths.get(nombreParte(nombreArchivo, k, numeroPartes));
+                int inicio = k * reactivosPorParte;
+                int fin = Math.min(inicio + reactivosPorParte, numeroReactivos);
+                partes.add(CompletableFuture.runAsync(() -> {
+                    try (SalidaUtf8 salida = SalidaUtf8.crea(parte)) {
+                        salida.escribe(PREFIJO_UTF8);
+                        escribeReactivos(salida, inicio, fin, generador, null, 0, null);
+                        salida.escribe(SUFIJO_UTF8);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, ejecutor));
+            }
+            for (CompletableFuture<Void> parte : partes) {
+                parte.join();
+            }
+            if (unir) {
+                unirPartes(nombreArchivo, numeroPartes);
+            }
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof UncheckedIOException)) {
+                throw e;
+            }
+            System.out.print("Error al generar el archivo de salida: " + e.getCause().getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            System.out.print("Error al generar el archivo de salida: " + e.getMessage());
+        } finally {
+            ejecutor.shutdownNow();
+        }
+        System.out.println(SolucionaSimbolico.getCache());
+    }
+
+    /**
+     * Une en un solo archivo las partes escritas por {@link #generarReactivosPorPartes}: escribe
+     * el inicio del cuestionario, el cuerpo de cada parte sin su inicio ni su cierre, y el
+     * cierre. Los cuerpos se copian de archivo a archivo con FileChannel.transferTo, sin
+     * decodificarse ni pasar por el heap. Las partes se conservan.
+     *
+     * @param nombreArchivo nombre o ruta del archivo completo; los de las partes se derivan de él
+     * @param numeroPartes número de partes
+     * @throws IOException si no se pudo leer una parte o escribir el archivo completo
+     * @throws RuntimeException si una parte no empieza con el inicio o no termina con el cierre del cuestionario
+     */
+    public static void unirPartes(String nombreArchivo, int numeroPartes) throws IOException {
+        try (FileChannel destino = FileChannel.open(Paths.get(nombreArchivo), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            escribeCompleto(destino, PREFIJO_UTF8);
+            for (int k = 0; k < numeroPartes; k++) {
+                String nombreParte = nombreParte(nombreArchivo, k, numeroPartes);
+                try (FileChannel parte = FileChannel.open(Paths.get(nombreParte), StandardOpenOption.READ)) {
+                    long inicio = PREFIJO_UTF8.remaining();
+                    long fin = parte.size() - SUFIJO_UTF8.remaining();
+                    if (fin < inicio || !empiezaCon(parte, 0, PREFIJO_UTF8) || !empiezaCon(parte, fin, SUFIJO_UTF8)) {
+                        throw new RuntimeException("La parte " + nombreParte + " no es un cuestionario completo");
+                    }
+                    while (inicio < fin) {
+                        inicio += parte.transferTo(inicio, fin - inicio, destino);
+                    }
+                }
+            }
+            escribeCompleto(destino, SUFIJO_UTF8);
+        }
+    }
+
+    /**
+     * Nombre del archivo de una parte: el número de parte, desde 1 y con ceros a la izquierda
+     * para que se ordenen, antes de la extensión.
+     *
+     * @param nombreArchivo nombre del archivo completo, por ejemplo banco.xml
+     * @param parte número de parte, desde 0
+     * @param numeroPartes número total de partes
+     * @return por ejemplo banco-07.xml para la parte 6 de 12
+     */
+    public static String nombreParte(String nombreArchivo, int parte, int numeroPartes) {
+        int punto = nombreArchivo.lastIndexOf('.');
+        if (punto <= Math.max(nombreArchivo.lastIndexOf('/'), nombreArchivo.lastIndexOf('\\')) + 1) {
+            punto = nombreArchivo.length();
+        }
+        String numero = String.format("%0" + String.valueOf(numeroPartes).length() + "d", parte + 1);
+        return nombreArchivo.substring(0, punto) + "-" + numero + nombreArchivo.substring(punto);
+    }
+
+    private static void escribeCompleto(FileChannel canal, ByteBuffer bytes) throws IOException {
+        ByteBuffer copia = bytes.duplicate();
+        while (copia.hasRemaining()) {
+            canal.write(copia);
+        }
+    }
+
+    /**
+     * Si en la posición dada del archivo están exactamente los bytes esperados.
+     */
+    private static boolean empiezaCon(FileChannel canal, long posicion, ByteBuffer esperado) throws IOException {
+        ByteBuffer leido = ByteBuffer.allocate(esperado.remaining());
+        while (leido.hasRemaining() && canal.read(leido, posicion + leido.position()) >= 0) {
+            // se leen todos los bytes esperados
+        }
+        leido.flip();
+        return leido.equals(esperado);
+    }
+
+    /**
+     * Agrega reactivos al final de un archivo ya generado sin reescribir lo que tiene. Busca
+     * el cierre del cuestionario leyendo desde el final del archivo, trunca ahí, escribe los
+     * reactivos nuevos y vuelve a cerrar, así que nunca se reescribe lo que ya tiene.<p>
+     * La numeración sigue después del mayor número de reactivo del generador en el archivo
+     * (los comentarios con su prefijo, que en un archivo combinado o reordenado no tienen
+     * por qué ir en orden); para hallarlo se lee el archivo una vez, en secuencia. Para que
+     * los reactivos nuevos tampoco repitan constantes de
+     * los anteriores, úsese la semilla con la que se generó el archivo. Si el archivo tiene
+     * bitácora, se amplía su corrida reanudable.
+     *
+     * @param nombreArchivo nombre o ruta de un archivo completo, que termina con el cierre del cuestionario
+     * @param numeroReactivos número de reactivos que se agregan
+     * @param generador generador de reactivos, el mismo con el que se generó el archivo
+     */
+    public static void agregarReactivos(String nombreArchivo, int numeroReactivos, GeneradorReactivoCloze generador) {
+        Path archivo = Paths.get(nombreArchivo);
+        long finReactivos;
+        int inicio;
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            finReactivos = buscaHaciaAtras(canal, GLOBAL_XML_SUFIJO, canal.size());
+            if (finReactivos < 0 || !soloEspacios(canal, finReactivos + SUFIJO_UTF8.remaining(), canal.size())) {
+                throw new RuntimeException("El archivo " + nombreArchivo + " no termina con " + GLOBAL_XML_SUFIJO
+                        + "; si su corrida se interrumpió, reanúdese con generarReactivosReanudable");
+            }
+            String marca = "<!-- question: " + generador.getPrefijoComentario();
+            inicio = mayorNumeroTras(canal, marca, finReactivos) + 1;
+        } catch (IOException e) {
+            System.out.print("Error al leer el archivo de salida: " + e.getMessage());
+            return;
+        }
+        if (Files.exists(Paths.get(nombreArchivo + ".bitacora"))) {
+            generarReactivosReanudable(nombreArchivo, inicio + numeroReactivos, generador, HILOS_GENERACION);
+            return;
+        }
+        verificaEspacio(inicio + numeroReactivos, generador);
+        System.out.format("Agregando %d reactivos a %s a partir del %d%n", numeroReactivos, nombreArchivo, inicio);
+        generador.getSolucionador().calienta();
+        ExecutorService ejecutor = HILOS_GENERACION > 1 ? creaEjecutor(HILOS_GENERACION) : null;
+        try (SalidaUtf8 salida = SalidaUtf8.reanuda(archivo, finReactivos)) {
+            escribeReactivos(salida, inicio, inicio + numeroReactivos, generador, ejecutor, 4 * HILOS_GENERACION, null);
+            salida.escribe(SUFIJO_UTF8);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.print("Error al generar el archivo de salida: " + e.getMessage());
+        } finally {
+            if (ejecutor != null) {
+                ejecutor.shutdownNow();
+            }
+        }
+        System.out.println(SolucionaSimbolico.getCache());
+    }
+
+    /**
+     * Escribe en orden los reactivos de inicio a fin (sin incluirlo): en serie directamente a
+     * la salida, o con el ejecutor y una ventana de reordenamiento. Con bitácora, cada reactivo
+     * se registra en cuanto llega al archivo.
+     */
+    static void escribeReactivos(SalidaUtf8 salida, int inicio, int fin, GeneradorReactivoCloze generador,
+                                         ExecutorService ejecutor, int ventana, BitacoraGeneracion bitacora)
+            throws IOException {
+        if (ejecutor == null) {
+            for (int i = inicio; i < fin; i++) {
+                ReactivoPendiente reactivo = generador.generarReactivoCloze(i, salida);
+                if (bitacora != null) {
+                    bitacora.registra(i, reactivo.getParametros(), salida);
+                }
+            }
+            return;
+        }
+        Deque<CompletableFuture<ReactivoTerminado>> pendientes = new ArrayDeque<>(ventana);
+        for (int i = inicio; i < fin; i++) {
+            if (pendientes.size() >= ventana) {
+                pendientes.poll().join().escribe(salida, bitacora);
+            }
+            int numeroReactivo = i;
+            pendientes.add(CompletableFuture.supplyAsync(() -> {
+                StringBuilder texto = new StringBuilder();
+                return new ReactivoTerminado(texto, generador.generarReactivoCloze(numeroReactivo, texto));
+            }, ejecutor));
+        }
+        while (!pendientes.isEmpty()) {
+            pendientes.poll().join().escribe(salida, bitacora);
+        }
+    }
+
+    /**
+     * Última aparición del texto que termina antes de la posición hasta, leyendo el archivo
+     * hacia atrás por bloques; -1 si no aparece.
+     */
+    private static long buscaHaciaAtras(FileChannel canal, String texto, long hasta) throws IOException {
+        byte[] patron = texto.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer bloque = ByteBuffer.allocate(Math.max(1 << 16, 2 * patron.length));
+        long fin = hasta;
+        while (fin >= patron.length) {
+            long inicio = Math.max(0, fin - bloque.capacity());
+            bloque.clear();
+            bloque.limit((int) (fin - inicio));
+            while (bloque.hasRemaining() && canal.read(bloque, inicio + bloque.position()) >= 0) {
+                // se lee el bloque completo
+            }
+            byte[] bytes = bloque.array();
+            for (int i = bloque.position() - patron.length; i >= 0; i--) {
+                int j = 0;
+                while (j < patron.length && bytes[i + j] == patron[j]) {
+                    j++;
+                }
+                if (j == patron.length) {
+                    return inicio + i;
+                }
+            }
+            if (inicio == 0) {
+                return -1;
+            }
+            // Los bloques se traslapan para no perder una aparición partida entre dos
+            fin = inicio + patron.length - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Mayor número decimal que sigue a alguna aparición del texto antes de la posición hasta,
+     * leyendo el archivo hacia adelante por bloques; -1 si el texto no aparece.
+     */
+    private static int mayorNumeroTras(FileChannel canal, String texto, long hasta) throws IOException {
+        byte[] patron = texto.getBytes(StandardCharsets.UTF_8);
+        // El patrón y los dígitos de un int; los bloques se traslapan en esa longitud
+        int traslape = patron.length + 10;
+        ByteBuffer bloque = ByteBuffer.allocate(Math.max(1 << 20, 2 * traslape));
+        byte[] bytes = bloque.array();
+        int mayor = -1;
+        long inicio = 0;
+        while (inicio < hasta) {
+            bloque.clear();
+            bloque.limit((int) Math.min(bloque.capacity(), hasta - inicio));
+            while (bloque.hasRemaining() && canal.read(bloque, inicio + bloque.position()) >= 0) {
+                // se lee el bloque completo
+            }
+            int leidos = bloque.position();
+            boolean ultimo = bloque.hasRemaining() || inicio + leidos >= hasta;
+            // Las apariciones cuyo número podría seguir en el bloque siguiente se buscan ahí
+            int limite = ultimo ? leidos - patron.length : leidos - traslape;
+            for (int i = 0; i <= limite; i++) {
+                int j = 0;
+                while (j < patron.length && bytes[i + j] == patron[j]) {
+                    j++;
+                }
+                if (j < patron.length) {
+                    continue;
+                }
+                long numero = 0;
+                int k = i + patron.length;
+                while (k < leidos && k < i + traslape && Character.isDigit(bytes[k])) {
+                    numero = 10 * numero + (bytes[k++] - '0');
+                }
+                if (k > i + patron.length && numero <= Integer.MAX_VALUE) {
+                    mayor = Math.max(mayor, (int) numero);
+                }
+            }
+            if (ultimo) {
+                break;
+            }
+            inicio += limite + 1;
+        }
+        return mayor;
+    }
+
+    private static boolean soloEspacios(FileChannel canal, long inicio, long fin) throws IOException {
+        ByteBuffer resto = ByteBuffer.allocate((int) Math.min(fin - inicio, 1 << 16));
+        canal.read(resto, inicio);
+        for (int i = 0; i < resto.position(); i++) {
+            if (!Character.isWhitespace(resto.get(i))) {
+                return false;
+            }
         }
+        return fin - inicio <= resto.capacity();
+    }
+
+    /**
+     * Hilos demonio con los que se arman reactivos en paralelo.
+     */
+    static ExecutorService creaEjecutor(int hilos) {
+        return creaEjecutor("generador", hilos);
+    }
 
+    /**
+     * Hilos demonio, numerados desde 1 con el nombre dado.
+     */
+    static ExecutorService creaEjecutor(String nombre, int hilos) {
+        AtomicInteger contador = new AtomicInteger();
+        return Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, nombre + "-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Texto de un reactivo armado en otro hilo, con el reactivo del que salió.
+     */
+    private static final class ReactivoTerminado {
+        private final CharSequence texto;
+        private final ReactivoPendiente reactivo;
+
+        private ReactivoTerminado(CharSequence texto, ReactivoPendiente reactivo) {
+            this.texto = texto;
+            this.reactivo = reactivo;
+        }
+
+        /**
+         * Escribe el reactivo al archivo y, ya escrito, lo registra en la bitácora si la hay.
+         */
+        private void escribe(SalidaUtf8 salida, BitacoraGeneracion bitacora) throws IOException {
+            salida.append(texto);
+            if (bitacora != null) {
+                bitacora.registra(reactivo.getNumeroReactivo(), reactivo.getParametros(), salida);
+            }
+        }
     }
 }
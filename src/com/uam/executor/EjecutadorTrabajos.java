@@ -0,0 +1,207 @@
+package com.uam.executor;
+
+import com.uam.auxiliar.GeneradorReactivoCloze;
+import com.uam.auxiliar.SolucionaSimbolico;
+import com.uam.auxiliar.SolucionadorSimbolico;
+import static com.uam.constantes.Constantes.GLOBAL_XML_CATEGORIA;
+import static com.uam.constantes.Constantes.GLOBAL_XML_PREFIJO;
+import static com.uam.constantes.Constantes.GLOBAL_XML_SUFIJO;
+import com.uam.utilidades.SalidaUtf8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Genera varios bancos de reactivos en una sola corrida, todos a la vez. Los reactivos de
+ * todos los trabajos se arman en un mismo grupo de hilos, así que mientras las soluciones de
+ * un generador tardan, los hilos siguen armando reactivos de los demás. Los generadores
+ * construidos sin solucionador explícito comparten el solucionador activo (y su pool de
+ * trabajadores de Python).<p>
+ * Cada archivo se escribe en orden, como con
+ * {@link EjecutadorGeneradorXML#generarReactivosParalelo(String, int, GeneradorReactivoCloze, int)},
+ * con su propia ventana de reordenamiento y la categoría de Moodle de su trabajo.<p>
+ * Desde la línea de comandos recibe un archivo con un trabajo por línea:
+ * <pre>
+ * # generador             reactivos  archivo        categoría (opcional)
+ * Gen1_Quotient             1000       cociente.xml   $module$/Sevilla_quotient
+ * Gen3_TangentPointGraph    500        tangente.xml
+ * </pre>
+ * El generador es el nombre de una clase de com.uam.generators o un nombre completo. Los
+ * hilos se toman de "sevilla.hilosGeneracion" (por omisión, uno por procesador).
+ */
+public final class EjecutadorTrabajos {
+
+    private static final String PAQUETE_GENERADORES = "com.uam.generators.";
+
+    private EjecutadorTrabajos() {
+    }
+
+    /**
+     * Un banco de reactivos por generar.
+     */
+    public static final class Trabajo {
+        private final GeneradorReactivoCloze generador;
+        private final int numeroReactivos;
+        private final String nombreArchivo;
+        private final String categoria;
+
+        /**
+         * @param generador generador de reactivos; debe poder usarse desde varios hilos
+         * @param numeroReactivos número de reactivos del archivo
+         * @param nombreArchivo nombre o ruta del archivo de salida
+         * @param categoria categoría de Moodle de los reactivos; null para la de GLOBAL_XML_PREFIJO
+         */
+        public Trabajo(GeneradorReactivoCloze generador, int numeroReactivos, String nombreArchivo, String categoria) {
+            this.generador = generador;
+            this.numeroReactivos = numeroReactivos;
+            this.nombreArchivo = nombreArchivo;
+            this.categoria = categoria;
+        }
+
+        public GeneradorReactivoCloze getGenerador() {
+            return generador;
+        }
+
+        public int getNumeroReactivos() {
+            return numeroReactivos;
+        }
+
+        public String getNombreArchivo() {
+            return nombreArchivo;
+        }
+
+        public String getCategoria() {
+            return categoria;
+        }
+
+        /**
+         * @return el inicio del archivo con la categoría del trabajo, en UTF-8
+         */
+        private ByteBuffer prefijo() {
+            if (categoria == null) {
+                return SalidaUtf8.codifica(GLOBAL_XML_PREFIJO);
+            }
+            String etiqueta = "<text>" + GLOBAL_XML_CATEGORIA + "</text>";
+            if (!GLOBAL_XML_PREFIJO.contains(etiqueta)) {
+                throw new RuntimeException("GLOBAL_XML_PREFIJO no contiene la categoría " + GLOBAL_XML_CATEGORIA);
+            }
+            return SalidaUtf8.codifica(GLOBAL_XML_PREFIJO.replace(etiqueta, "<text>" + categoria + "</text>"));
+        }
+    }
+
+    /**
+     * Genera todos los trabajos a la vez. Un error de escritura detiene sólo su trabajo.
+     *
+     * @param trabajos bancos por generar, cada uno en un archivo distinto
+     * @param hilos número de hilos que arman reactivos, compartidos por todos los trabajos
+     */
+    public static void ejecuta(List<Trabajo> trabajos, int hilos) {
+        if (hilos < 1) {
+            throw new RuntimeException("Se requiere al menos un hilo. Hilos: " + hilos);
+        }
+        Set<SolucionadorSimbolico> solucionadores = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Trabajo trabajo : trabajos) {
+            EjecutadorGeneradorXML.verificaEspacio(trabajo.numeroReactivos, trabajo.generador);
+            solucionadores.add(trabajo.generador.getSolucionador());
+        }
+        if (trabajos.isEmpty()) {
+            return;
+        }
+        for (SolucionadorSimbolico solucionador : solucionadores) {
+            solucionador.calienta();
+        }
+        ExecutorService ejecutor = EjecutadorGeneradorXML.creaEjecutor(hilos);
+        // Cada trabajo tiene un hilo que reparte sus reactivos y los escribe en orden; casi
+        // siempre está esperando, el trabajo lo hacen los hilos del ejecutor
+        ExecutorService escritores = EjecutadorGeneradorXML.creaEjecutor("escritor", trabajos.size());
+        try {
+            List<CompletableFuture<Void>> corridas = new ArrayList<>(trabajos.size());
+            for (Trabajo trabajo : trabajos) {
+                corridas.add(CompletableFuture.runAsync(() -> escribe(trabajo, ejecutor, 4 * hilos), escritores));
+            }
+            for (CompletableFuture<Void> corrida : corridas) {
+                corrida.join();
+            }
+        } finally {
+            ejecutor.shutdownNow();
+            escritores.shutdownNow();
+        }
+        System.out.println(SolucionaSimbolico.getCache());
+    }
+
+    private static void escribe(Trabajo trabajo, ExecutorService ejecutor, int ventana) {
+        try (SalidaUtf8 salida = SalidaUtf8.crea(Paths.get(trabajo.nombreArchivo))) {
+            salida.escribe(trabajo.prefijo());
+            EjecutadorGeneradorXML.escribeReactivos(salida, 0, trabajo.numeroReactivos, trabajo.generador,
+                    ejecutor, ventana, null);
+            salida.escribe(SalidaUtf8.codifica(GLOBAL_XML_SUFIJO));
+            System.out.format("%s: %d reactivos en %s%n", trabajo.generador.getClass().getSimpleName(),
+                    trabajo.numeroReactivos, trabajo.nombreArchivo);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error al generar el archivo " + trabajo.nombreArchivo + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lee una lista de trabajos: una línea por trabajo con el generador, el número de
+     * reactivos, el archivo de salida y, opcionalmente, la categoría, separados por espacios.
+     * Las líneas vacías y las que empiezan con # se ignoran.
+     *
+     * @param lineas líneas de la lista
+     * @return los trabajos, con generadores construidos con el solucionador activo
+     * @throws RuntimeException si una línea está incompleta, el generador no existe o dos trabajos escriben el mismo archivo
+     */
+    public static List<Trabajo> lee(List<String> lineas) {
+        List<Trabajo> trabajos = new ArrayList<>();
+        List<String> archivos = new ArrayList<>();
+        for (String linea : lineas) {
+            String texto = linea.trim();
+            if (texto.isEmpty() || texto.startsWith("#")) {
+                continue;
+            }
+            String[] campos = texto.split("\\s+", 4);
+            if (campos.length < 3) {
+                throw new RuntimeException("Trabajo incompleto, se esperaba generador, reactivos y archivo: " + linea);
+            }
+            if (archivos.contains(campos[2])) {
+                throw new RuntimeException("Dos trabajos escriben el archivo " + campos[2]);
+            }
+            archivos.add(campos[2]);
+            trabajos.add(new Trabajo(creaGenerador(campos[0]), Integer.parseInt(campos[1]), campos[2],
+                    campos.length > 3 ? campos[3] : null));
+        }
+        return trabajos;
+    }
+
+    private static GeneradorReactivoCloze creaGenerador(String nombre) {
+        String clase = nombre.contains(".") ? nombre : PAQUETE_GENERADORES + nombre;
+        try {
+            return (GeneradorReactivoCloze) Class.forName(clase).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new RuntimeException("No se pudo crear el generador " + nombre + ": " + e, e);
+        }
+    }
+
+    /**
+     * @param args archivo con la lista de trabajos
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Uso: EjecutadorTrabajos <archivo de trabajos>");
+            System.exit(2);
+        }
+        List<Trabajo> trabajos = lee(Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8));
+        ejecuta(trabajos, Integer.getInteger("sevilla.hilosGeneracion", Runtime.getRuntime().availableProcessors()));
+    }
+}
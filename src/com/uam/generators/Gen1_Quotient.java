@@ -6,11 +6,18 @@ package com.uam.generators;
  * */
 
 import com.uam.auxiliar.GeneradorReactivoCloze;
-import com.uam.auxiliar.SolucionaSimbolico;
+import com.uam.auxiliar.ReactivoPendiente;
+import com.uam.auxiliar.RegistroSolucionadores;
+import com.uam.auxiliar.SolicitudSimbolica;
+import com.uam.auxiliar.SolucionadorSimbolico;
 import com.uam.data.DatosReactivos;
 import com.uam.executor.EjecutadorGeneradorXML;
+import com.uam.utilidades.MuestreadorParametros;
+import com.uam.utilidades.PlantillaCompilada;
 import com.uam.utilidades.Utilidades;
 
+import java.util.SplittableRandom;
+
 import static com.uam.constantes.Constantes.XML_PREFIJO;
 import static com.uam.constantes.Constantes.XML_SUFIJO;
 import static com.uam.utilidades.Utilidades.maximoComunDivisor;
@@ -65,14 +72,20 @@ public class Gen1_Quotient implements GeneradorReactivoCloze {
     private static final int[] COTA_CONSTANTE_B = {2, 9};
     private static final int[] COTA_CONSTANTE_C = {2, 9};
     private static final int[] COTA_CONSTANTE_D = {3, 9};
-    private static final int[] COTA_CONSTANTE_E = {2, 9};
-    private static final int[] COTA_CONSTANTE_F = {2, 9};
-    private static final int[] COTA_CONSTANTE_G = {3, 5};
-    private static final int[] COTA_CONSTANTE_H = {2, 5};
+
+    /**
+     * Dominios y restricciones de las constantes. Se calculan y verifican al cargar la clase.
+     */
+    private static final MuestreadorParametros MUESTREADOR = MuestreadorParametros.nuevo()
+            .impar("A", COTA_CONSTANTE_A[0], COTA_CONSTANTE_A[1])
+            .impar("B", COTA_CONSTANTE_B[0], COTA_CONSTANTE_B[1])
+            .entero("C", COTA_CONSTANTE_C[0], COTA_CONSTANTE_C[1])
+            .entero("D", COTA_CONSTANTE_D[0], COTA_CONSTANTE_D[1])
+            .construye();
 
     private static final String EXPRESION = "\\frac{$CONSTANTEA$x+$CONSTANTEB$}{$CONSTANTEC$x-$CONSTANTED$}";
-    private String RESPUESTA= "$$\\displaystyle y'(x)=\\frac{A}{(Bx+C)^D}$$ <br/>";
-    private String CAJAS_RESPUESTA = "$$A=$${1:SHORTANSWER:=$RESPUESTA_A$} <br/> $$B=$${1:SHORTANSWER:=$RESPUESTA_B$} <br/> "
+    private static final String RESPUESTA = "$$\\displaystyle y'(x)=\\frac{A}{(Bx+C)^D}$$ <br/>";
+    private static final String CAJAS_RESPUESTA = "$$A=$${1:SHORTANSWER:=$RESPUESTA_A$} <br/> $$B=$${1:SHORTANSWER:=$RESPUESTA_B$} <br/> "
             + "$$C=$${1:SHORTANSWER:=$RESPUESTA_C$} <br/> $$D=$${1:SHORTANSWER:=$RESPUESTA_D$} <br/>"
             + "<span style=\"color: #ff0000; font-size: x-large;\"><strong>"
             + "<script type=\"math/tex\">\\bullet</script> &nbsp;&nbsp;&nbsp; Los números $$A,B,C,D$$ en este orden "
@@ -92,18 +105,58 @@ public class Gen1_Quotient implements GeneradorReactivoCloze {
     private static final String COMENTARIO_REACTIVO_PREFIJO = "Sevilla_step_by_step_quotient_differientiation_";
     private static final String SEPARADOR_REACTIVOS = "\r\n";
 
+    /**
+     * Texto completo del reactivo, con las sustituciones fijas ya aplicadas y compilado una vez.
+     * La solución se llena al completar el reactivo.
+     */
+    private static final PlantillaCompilada PLANTILLA
+            = PlantillaCompilada.de(XML_PREFIJO + PLANTILLA_REACTIVO + XML_SUFIJO + SEPARADOR_REACTIVOS)
+            .reescribe("$RESPUESTAS$", CAJAS_RESPUESTA)
+            .reescribe("$RESPUESTA$", RESPUESTA)
+            .compila("COMENTARIO", "EXPRESION", "VARIABLE_INDEPENDIENTE",
+                    "RESPUESTA_A", "RESPUESTA_B", "RESPUESTA_C", "RESPUESTA_D", "SOLUCION");
+    private static final PlantillaCompilada PLANTILLA_EXPRESION
+            = PlantillaCompilada.de(EXPRESION).compila("CONSTANTEA", "CONSTANTEB", "CONSTANTEC", "CONSTANTED");
+
+    private final SolucionadorSimbolico solucionador;
+
+    /**
+     * Usa el solucionador activo de {@link RegistroSolucionadores}.
+     */
+    public Gen1_Quotient() {
+        this(RegistroSolucionadores.activo());
+    }
+
+    /**
+     * @param solucionador resuelve la solución paso a paso de cada reactivo
+     */
+    public Gen1_Quotient(SolucionadorSimbolico solucionador) {
+        this.solucionador = solucionador;
+    }
+
     @Override
-    public String generarReactivoCloze(int numeroReactivo) {
-        String solucion = "";
-        //Generación de variables aleatorias con parámetros de ejecución
-        Integer constanteA = Utilidades.obtenerImparAleatorio(COTA_CONSTANTE_A[0], COTA_CONSTANTE_A[1]);
-        Integer constanteB = Utilidades.obtenerImparAleatorio(COTA_CONSTANTE_B[0], COTA_CONSTANTE_B[1]);
-        Integer constanteC = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_C[0], COTA_CONSTANTE_C[1]);
-        Integer constanteD = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_D[0], COTA_CONSTANTE_D[1]);;
-        Integer constanteE = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_E[0], COTA_CONSTANTE_E[1]);
-        Integer constanteF = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_F[0], COTA_CONSTANTE_F[1]);
-        Integer constanteG = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_G[0], COTA_CONSTANTE_G[1]);
-        Integer constanteH = Utilidades.obtenerImparAleatorioDistintoDe(COTA_CONSTANTE_H[0], COTA_CONSTANTE_H[1], constanteF);
+    public SolucionadorSimbolico getSolucionador() {
+        return solucionador;
+    }
+
+    @Override
+    public MuestreadorParametros getMuestreador() {
+        return MUESTREADOR;
+    }
+
+    @Override
+    public String getPrefijoComentario() {
+        return COMENTARIO_REACTIVO_PREFIJO;
+    }
+
+    @Override
+    public ReactivoPendiente prepararReactivo(int numeroReactivo, MuestreadorParametros.Parametros parametros,
+                                              SplittableRandom aleatorio) {
+        //Constantes del reactivo, elegidas por el muestreador
+        Integer constanteA = parametros.get("A");
+        Integer constanteB = parametros.get("B");
+        Integer constanteC = parametros.get("C");
+        Integer constanteD = parametros.get("D");
 
         String comentarioReactivo
                 = Utilidades.generaComentario(COMENTARIO_REACTIVO_PREFIJO, numeroReactivo, POSICIONES_CONTADOR_REACTIVO);
@@ -111,66 +164,19 @@ public class Gen1_Quotient implements GeneradorReactivoCloze {
         Integer respuestaB = constanteC;
         Integer respuestaC = -constanteD;
         Integer respuestaD = 2;
-        Integer respuestaE = constanteA;
-        Integer respuestaF = constanteA;
-        Integer respuestaG = constanteB;
-        Integer respuestaH = constanteC+1;
-
-        Integer respuestaJ = constanteA;
-        Integer respuestaK = constanteA-1;
-        Integer respuestaL = -constanteC;
-        Integer respuestaM = 2;
-        Integer respuestaN = constanteC;
-        Integer respuestaP = constanteC;
+
         //Checar fracción reductible respuestaE y respuestaJ
         Integer divisor = maximoComunDivisor(respuestaA, respuestaC);
 
-        String parVariables = DatosReactivos.obtenerParesVariables();
+        String parVariables = DatosReactivos.obtenerParesVariables(aleatorio);
         String variableIndependiente = parVariables.substring(0, 1);
-        String variableDependiente = parVariables.substring(1, 2);
 
         //Sustitución de las variables por sus valores en el texto del reactivo
-        String reactivo = XML_PREFIJO + PLANTILLA_REACTIVO + XML_SUFIJO;
-        String expresion = EXPRESION;
-
-        expresion = expresion.replace("$CONSTANTEA$", constanteA.toString());
-        expresion = expresion.replace("$CONSTANTEB$", constanteB.toString());
-        expresion = expresion.replace("$CONSTANTEC$", constanteC.toString());
-        expresion = expresion.replace("$CONSTANTED$", constanteD.toString());
-        expresion = expresion.replace("$CONSTANTEE$", constanteE.toString());
-        expresion = expresion.replace("$CONSTANTEF$", constanteF.toString());
-        expresion = expresion.replace("$CONSTANTEG$", constanteG.toString());
-        expresion = expresion.replace("$CONSTANTEH$", constanteH.toString());
-
-        reactivo = reactivo.replace("$RESPUESTAS$", CAJAS_RESPUESTA);
-        reactivo = reactivo.replace("$RESPUESTA$", RESPUESTA);
-        reactivo = reactivo.replace("$EXPRESION$", expresion);
-        reactivo = reactivo.replace("$COMENTARIO$", comentarioReactivo);
-        reactivo = reactivo.replace("$VARIABLE_INDEPENDIENTE$", variableIndependiente);
-        reactivo = reactivo.replace("$VARIABLE_DEPENDIENTE$", variableDependiente);
-        reactivo = reactivo.replace("$RESPUESTA_A$", respuestaA.toString());
-        reactivo = reactivo.replace("$RESPUESTA_B$", respuestaB.toString());
-        reactivo = reactivo.replace("$RESPUESTA_C$", respuestaC.toString());
-        reactivo = reactivo.replace("$RESPUESTA_D$", respuestaD.toString());
-        reactivo = reactivo.replace("$RESPUESTA_E$", respuestaE.toString());
-        reactivo = reactivo.replace("$RESPUESTA_F$", respuestaF.toString());
-        reactivo = reactivo.replace("$RESPUESTA_G$", respuestaG.toString());
-        reactivo = reactivo.replace("$RESPUESTA_H$", respuestaH.toString());
-        reactivo = reactivo.replace("$RESPUESTA_J$", respuestaJ.toString());
-        reactivo = reactivo.replace("$RESPUESTA_K$", respuestaK.toString());
-        reactivo = reactivo.replace("$RESPUESTA_L$", respuestaL.toString());
-        reactivo = reactivo.replace("$RESPUESTA_M$", respuestaM.toString());
-        reactivo = reactivo.replace("$RESPUESTA_N$", respuestaN.toString());
-        reactivo = reactivo.replace("$RESPUESTA_P$", respuestaP.toString());
-
-        /* Aquí se llama al codigo que arma la solución en Python */
-        solucion = solucion+ SolucionaSimbolico.derivaSimbolico(expresion,"x");
-
-        reactivo = reactivo.replace("$SOLUCION$", solucion);
-
-        //Concatenando el separador de reactivos
-        reactivo = reactivo.concat(SEPARADOR_REACTIVOS);
-        return reactivo;
+        String expresion = PLANTILLA_EXPRESION.llena(constanteA, constanteB, constanteC, constanteD);
+        Object[] valores = {comentarioReactivo, expresion, variableIndependiente,
+                respuestaA, respuestaB, respuestaC, respuestaD, null};
+        /* La solución la arma el código en Python a partir de esta solicitud */
+        return new ReactivoPendiente(numeroReactivo, PLANTILLA, valores, SolicitudSimbolica.derivada(expresion, "x"));
     }
 
     public static void main(String[] args) {
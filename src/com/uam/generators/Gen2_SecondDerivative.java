@@ -6,11 +6,18 @@ package com.uam.generators;
  * */
 
 import com.uam.auxiliar.GeneradorReactivoCloze;
-import com.uam.auxiliar.SolucionaSimbolico;
+import com.uam.auxiliar.ReactivoPendiente;
+import com.uam.auxiliar.RegistroSolucionadores;
+import com.uam.auxiliar.SolicitudSimbolica;
+import com.uam.auxiliar.SolucionadorSimbolico;
 import com.uam.data.DatosReactivos;
 import com.uam.executor.EjecutadorGeneradorXML;
+import com.uam.utilidades.MuestreadorParametros;
+import com.uam.utilidades.PlantillaCompilada;
 import com.uam.utilidades.Utilidades;
 
+import java.util.SplittableRandom;
+
 import static com.uam.constantes.Constantes.XML_PREFIJO;
 import static com.uam.constantes.Constantes.XML_SUFIJO;
 import static com.uam.utilidades.Utilidades.maximoComunDivisor;
@@ -63,17 +70,19 @@ public class Gen2_SecondDerivative implements GeneradorReactivoCloze {
 
     private static final int[] COTA_CONSTANTE_A = {2, 9};
     private static final int[] COTA_CONSTANTE_B = {2, 8};
-    private static final int[] COTA_CONSTANTE_C = {2, 9};
-    private static final int[] COTA_CONSTANTE_D = {2, 9};
-    private static final int[] COTA_CONSTANTE_E = {2, 9};
-    private static final int[] COTA_CONSTANTE_F = {2, 9};
-    private static final int[] COTA_CONSTANTE_G = {3, 5};
-    private static final int[] COTA_CONSTANTE_H = {2, 5};
+
+    /**
+     * Dominios y restricciones de las constantes. Se calculan y verifican al cargar la clase.
+     */
+    private static final MuestreadorParametros MUESTREADOR = MuestreadorParametros.nuevo()
+            .entero("A", COTA_CONSTANTE_A[0], COTA_CONSTANTE_A[1])
+            .impar("B", COTA_CONSTANTE_B[0], COTA_CONSTANTE_B[1]).distintoDe("A")
+            .construye();
 
     private static final String EXPRESION = "\\frac{$CONSTANTEA$x^3+$CONSTANTEB$}{x}";
-    private String RESPUESTA= "$$\\displaystyle y'(x)=\\frac{Ax^B+C}{x^D}$$ <br/><br/>" +
+    private static final String RESPUESTA = "$$\\displaystyle y'(x)=\\frac{Ax^B+C}{x^D}$$ <br/><br/>" +
             "$$\\displaystyle y''(x)=\\frac{E(Fx^G+H)}{x^J}$$ <br/>";
-    private String CAJAS_RESPUESTA = "$$A=$${1:SHORTANSWER:=$RESPUESTA_A$} <br/> $$B=$${1:SHORTANSWER:=$RESPUESTA_B$} <br/> "
+    private static final String CAJAS_RESPUESTA = "$$A=$${1:SHORTANSWER:=$RESPUESTA_A$} <br/> $$B=$${1:SHORTANSWER:=$RESPUESTA_B$} <br/> "
             + "$$C=$${1:SHORTANSWER:=$RESPUESTA_C$} <br/> $$D=$${1:SHORTANSWER:=$RESPUESTA_D$} <br/>"
             + "$$E=$${1:SHORTANSWER:=$RESPUESTA_E$} <br/> $$F=$${1:SHORTANSWER:=$RESPUESTA_F$} <br/>"
             + "$$G=$${1:SHORTANSWER:=$RESPUESTA_G$} <br/> $$H=$${1:SHORTANSWER:=$RESPUESTA_H$} <br/>"
@@ -96,19 +105,61 @@ public class Gen2_SecondDerivative implements GeneradorReactivoCloze {
     private static final String COMENTARIO_REACTIVO_PREFIJO = "Sevilla_step_by_step_second_derivative_";
     private static final String SEPARADOR_REACTIVOS = "\r\n";
 
+    /**
+     * Texto completo del reactivo, con las sustituciones fijas ya aplicadas y compilado una vez.
+     * La solución se llena al completar el reactivo.
+     */
+    private static final PlantillaCompilada PLANTILLA
+            = PlantillaCompilada.de(XML_PREFIJO + PLANTILLA_REACTIVO + XML_SUFIJO + SEPARADOR_REACTIVOS)
+            // Incluir segunda derivada
+            .reescribe("\\frac{d}{dx}\\left(", "\\frac{d}{dx}\\left(\\frac{d}{dx}\\left(")
+            .reescribe("\\right)", "\\right)\\right)")
+            .reescribe("La derivada de la función $$f(", "La segunda derivada de la función $$y(")
+            .reescribe("$RESPUESTAS$", CAJAS_RESPUESTA)
+            .reescribe("$RESPUESTA$", RESPUESTA)
+            .compila("COMENTARIO", "EXPRESION", "VARIABLE_INDEPENDIENTE",
+                    "RESPUESTA_A", "RESPUESTA_B", "RESPUESTA_C", "RESPUESTA_D", "RESPUESTA_E",
+                    "RESPUESTA_F", "RESPUESTA_G", "RESPUESTA_H", "RESPUESTA_J", "SOLUCION");
+    private static final PlantillaCompilada PLANTILLA_EXPRESION
+            = PlantillaCompilada.de(EXPRESION).compila("CONSTANTEA", "CONSTANTEB");
+
+    private final SolucionadorSimbolico solucionador;
+
+    /**
+     * Usa el solucionador activo de {@link RegistroSolucionadores}.
+     */
+    public Gen2_SecondDerivative() {
+        this(RegistroSolucionadores.activo());
+    }
+
+    /**
+     * @param solucionador resuelve la solución paso a paso de cada reactivo
+     */
+    public Gen2_SecondDerivative(SolucionadorSimbolico solucionador) {
+        this.solucionador = solucionador;
+    }
+
     @Override
-    public String generarReactivoCloze(int numeroReactivo) {
-        String solucion = "";
-        //Generación de variables aleatorias con parámetros de ejecución
-
-        Integer constanteA = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_A[0], COTA_CONSTANTE_A[1]);
-        Integer constanteB = Utilidades.obtenerImparAleatorioDistintoDe(COTA_CONSTANTE_B[0], COTA_CONSTANTE_B[1],constanteA);
-        Integer constanteC = Utilidades.obtenerImparAleatorioDistintoDe(COTA_CONSTANTE_B[0], COTA_CONSTANTE_B[1],constanteB);
-        Integer constanteD = Utilidades.obtenerEnteroAleatorioDistintoDe(COTA_CONSTANTE_D[0], COTA_CONSTANTE_D[1],constanteC);
-        Integer constanteE = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_E[0], COTA_CONSTANTE_E[1]);
-        Integer constanteF = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_F[0], COTA_CONSTANTE_F[1]);
-        Integer constanteG = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_G[0], COTA_CONSTANTE_G[1]);
-        Integer constanteH = Utilidades.obtenerImparAleatorioDistintoDe(COTA_CONSTANTE_H[0], COTA_CONSTANTE_H[1], constanteF);
+    public SolucionadorSimbolico getSolucionador() {
+        return solucionador;
+    }
+
+    @Override
+    public MuestreadorParametros getMuestreador() {
+        return MUESTREADOR;
+    }
+
+    @Override
+    public String getPrefijoComentario() {
+        return COMENTARIO_REACTIVO_PREFIJO;
+    }
+
+    @Override
+    public ReactivoPendiente prepararReactivo(int numeroReactivo, MuestreadorParametros.Parametros parametros,
+                                              SplittableRandom aleatorio) {
+        //Constantes del reactivo, elegidas por el muestreador
+        Integer constanteA = parametros.get("A");
+        Integer constanteB = parametros.get("B");
 
         String comentarioReactivo
                 = Utilidades.generaComentario(COMENTARIO_REACTIVO_PREFIJO, numeroReactivo, POSICIONES_CONTADOR_REACTIVO);
@@ -128,64 +179,15 @@ public class Gen2_SecondDerivative implements GeneradorReactivoCloze {
         respuestaF /= divisor;
         respuestaH /= divisor;
 
-
-        Integer respuestaK = constanteA-1;
-        Integer respuestaL = -constanteC;
-        Integer respuestaM = 2;
-        Integer respuestaN = constanteC;
-        Integer respuestaP = constanteC;
-
-
-        String parVariables = DatosReactivos.obtenerParesVariables();
+        String parVariables = DatosReactivos.obtenerParesVariables(aleatorio);
         String variableIndependiente = parVariables.substring(0, 1);
-        String variableDependiente = parVariables.substring(1, 2);
 
         //Sustitución de las variables por sus valores en el texto del reactivo
-        String reactivo = XML_PREFIJO + PLANTILLA_REACTIVO + XML_SUFIJO;
-        String expresion = EXPRESION;
-// Incliur segunda derivada
-        reactivo = reactivo.replace("\\frac{d}{dx}\\left(","\\frac{d}{dx}\\left(\\frac{d}{dx}\\left(");
-        reactivo = reactivo.replace("\\right)","\\right)\\right)");
-        reactivo = reactivo.replace("La derivada de la función $$f(","La segunda derivada de la función $$y(");
-
-//
-        expresion = expresion.replace("$CONSTANTEA$", constanteA.toString());
-        expresion = expresion.replace("$CONSTANTEB$", constanteB.toString());
-        expresion = expresion.replace("$CONSTANTEC$", constanteC.toString());
-        expresion = expresion.replace("$CONSTANTED$", constanteD.toString());
-        expresion = expresion.replace("$CONSTANTEE$", constanteE.toString());
-        expresion = expresion.replace("$CONSTANTEF$", constanteF.toString());
-        expresion = expresion.replace("$CONSTANTEG$", constanteG.toString());
-        expresion = expresion.replace("$CONSTANTEH$", constanteH.toString());
-
-        reactivo = reactivo.replace("$RESPUESTAS$", CAJAS_RESPUESTA);
-        reactivo = reactivo.replace("$RESPUESTA$", RESPUESTA);
-        reactivo = reactivo.replace("$EXPRESION$", expresion);
-        reactivo = reactivo.replace("$COMENTARIO$", comentarioReactivo);
-        reactivo = reactivo.replace("$VARIABLE_INDEPENDIENTE$", variableIndependiente);
-        reactivo = reactivo.replace("$VARIABLE_DEPENDIENTE$", variableDependiente);
-        reactivo = reactivo.replace("$RESPUESTA_A$", respuestaA.toString());
-        reactivo = reactivo.replace("$RESPUESTA_B$", respuestaB.toString());
-        reactivo = reactivo.replace("$RESPUESTA_C$", respuestaC.toString());
-        reactivo = reactivo.replace("$RESPUESTA_D$", respuestaD.toString());
-        reactivo = reactivo.replace("$RESPUESTA_E$", respuestaE.toString());
-        reactivo = reactivo.replace("$RESPUESTA_F$", respuestaF.toString());
-        reactivo = reactivo.replace("$RESPUESTA_G$", respuestaG.toString());
-        reactivo = reactivo.replace("$RESPUESTA_H$", respuestaH.toString());
-        reactivo = reactivo.replace("$RESPUESTA_J$", respuestaJ.toString());
-        reactivo = reactivo.replace("$RESPUESTA_K$", respuestaK.toString());
-        reactivo = reactivo.replace("$RESPUESTA_L$", respuestaL.toString());
-        reactivo = reactivo.replace("$RESPUESTA_M$", respuestaM.toString());
-        reactivo = reactivo.replace("$RESPUESTA_N$", respuestaN.toString());
-        reactivo = reactivo.replace("$RESPUESTA_P$", respuestaP.toString());
-
-        solucion = solucion+ SolucionaSimbolico.derivaSimbolicoSegunda(expresion, "x");
-
-        reactivo = reactivo.replace("$SOLUCION$", solucion);
-
-        //Concatenando el separador de reactivos
-        reactivo = reactivo.concat(SEPARADOR_REACTIVOS);
-        return reactivo;
+        String expresion = PLANTILLA_EXPRESION.llena(constanteA, constanteB);
+        Object[] valores = {comentarioReactivo, expresion, variableIndependiente,
+                respuestaA, respuestaB, respuestaC, respuestaD, respuestaE,
+                respuestaF, respuestaG, respuestaH, respuestaJ, null};
+        return new ReactivoPendiente(numeroReactivo, PLANTILLA, valores, SolicitudSimbolica.segundaDerivada(expresion, "x"));
     }
 
     public static void main(String[] args) {
@@ -5,12 +5,20 @@ package com.uam.generators;
  *
  * */
 
+import com.uam.auxiliar.DatosSolucion;
 import com.uam.auxiliar.GeneradorReactivoCloze;
-import com.uam.auxiliar.SolucionaSimbolico;
+import com.uam.auxiliar.ReactivoPendiente;
+import com.uam.auxiliar.RegistroSolucionadores;
+import com.uam.auxiliar.SolicitudSimbolica;
+import com.uam.auxiliar.SolucionadorSimbolico;
 import com.uam.data.DatosReactivos;
 import com.uam.executor.EjecutadorGeneradorXML;
+import com.uam.utilidades.MuestreadorParametros;
+import com.uam.utilidades.PlantillaCompilada;
 import com.uam.utilidades.Utilidades;
 
+import java.util.SplittableRandom;
+
 import static com.uam.constantes.Constantes.XML_PREFIJO;
 import static com.uam.constantes.Constantes.XML_SUFIJO;
 import static com.uam.utilidades.Utilidades.maximoComunDivisor;
@@ -67,12 +75,29 @@ public class Gen3_TangentPointGraph implements GeneradorReactivoCloze {
     private static final int[] COTA_CONSTANTE_B = {-5, 5};
     private static final int[] COTA_CONSTANTE_C = {-5, 5};
     private static final int[] COTA_CONSTANTE_D = {-9, 9};
-    private static final int[] COTA_CONSTANTE_G = {3, 5};
-    private static final int[] COTA_CONSTANTE_H = {2, 5};
     private static final int[] COTA_X_0 = {-2, 2};
 
+    /**
+     * Dominios y restricciones de las constantes. Se calculan y verifican al cargar la clase.
+     */
+    private static final MuestreadorParametros MUESTREADOR = MuestreadorParametros.nuevo()
+            .entero("A", COTA_CONSTANTE_A[0], COTA_CONSTANTE_A[1]).distintoDe(0)
+            .entero("B", COTA_CONSTANTE_B[0], COTA_CONSTANTE_B[1]).distintoDe(0)
+            .entero("C", COTA_CONSTANTE_C[0], COTA_CONSTANTE_C[1]).distintoDe(0)
+            .entero("D", COTA_CONSTANTE_D[0], COTA_CONSTANTE_D[1])
+            .entero("X0", COTA_X_0[0], COTA_X_0[1]).distintoDe(p -> -p.get("B") / p.get("A"))
+            .construye();
+
     private static final String EXPRESION = "$CONSTANTEA$x^3+$CONSTANTEB$x^2+$CONSTANTEC$x+$CONSTANTED$";
-    private String RESPUESTA= "$$\\displaystyle y={A}x+{B}$$ <br/>";
+    private static final String RESPUESTA = "$$\\displaystyle y={A}x+{B}$$ <br/>";
+    private static final String CAJAS_RESPUESTA = "$$A=$${1:SHORTANSWER:=$RESPUESTA_A$} <br/> $$B=$${1:SHORTANSWER:=$RESPUESTA_B$} <br/> "
+            + "<span style=\"color: #ff0000; font-size: x-large;\"><strong>"
+            + "<script type=\"math/tex\">\\bullet</script> &nbsp;&nbsp;&nbsp; Los números $$A,B$$ en este orden "
+            + "y que dan solución correcta al ejercicio son: </strong></span>"
+            + " &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;"
+            + " {20:SHORTANSWER:=$RESPUESTA_A$,$RESPUESTA_B$"
+            + "}</center> <br>"
+            + "</center>";
 
 
     /**
@@ -86,35 +111,68 @@ public class Gen3_TangentPointGraph implements GeneradorReactivoCloze {
     private static final String COMENTARIO_REACTIVO_PREFIJO = "Sevilla_step_by_step_tangent_graph_";
     private static final String SEPARADOR_REACTIVOS = "\r\n";
 
+    /**
+     * Texto completo del reactivo, con las sustituciones fijas ya aplicadas y compilado una vez.
+     * La solución se llena al completar el reactivo.
+     */
+    private static final PlantillaCompilada PLANTILLA
+            = PlantillaCompilada.de(XML_PREFIJO + PLANTILLA_REACTIVO + XML_SUFIJO + SEPARADOR_REACTIVOS)
+            .reescribe("$RESPUESTAS$", CAJAS_RESPUESTA)
+            .reescribe("$RESPUESTA$", RESPUESTA)
+            //cambiar el problema para punto  tangente
+            .reescribe("\\frac{d}{dx}\\left($EXPRESION$ \\right)",
+                    "tangente de f\\left(x\\right)=$EXPRESION$, at($EQUIS0$,$YE0$)")
+            .reescribe("<strong>La derivada de la función $$f(x)$$ es:</strong>",
+                    "<strong>La recta tangente a la función $$f(x)$$ en el punto $$x_0=$EQUIS0$ $$  es:</strong>")
+            .compila("COMENTARIO", "EXPRESION", "VARIABLE_INDEPENDIENTE",
+                    "RESPUESTA_A", "RESPUESTA_B", "EQUIS0", "YE0", "SOLUCION");
+    private static final PlantillaCompilada PLANTILLA_EXPRESION
+            = PlantillaCompilada.de(EXPRESION).compila("CONSTANTEA", "CONSTANTEB", "CONSTANTEC", "CONSTANTED");
+
+    private final SolucionadorSimbolico solucionador;
+
+    /**
+     * Usa el solucionador activo de {@link RegistroSolucionadores}.
+     */
+    public Gen3_TangentPointGraph() {
+        this(RegistroSolucionadores.activo());
+    }
+
+    /**
+     * @param solucionador resuelve la solución paso a paso de cada reactivo
+     */
+    public Gen3_TangentPointGraph(SolucionadorSimbolico solucionador) {
+        this.solucionador = solucionador;
+    }
+
+    @Override
+    public SolucionadorSimbolico getSolucionador() {
+        return solucionador;
+    }
+
+    @Override
+    public MuestreadorParametros getMuestreador() {
+        return MUESTREADOR;
+    }
+
+    @Override
+    public String getPrefijoComentario() {
+        return COMENTARIO_REACTIVO_PREFIJO;
+    }
+
     @Override
-    public String generarReactivoCloze(int numeroReactivo) {
-        String solucion = "";
-        //Generación de variables aleatorias con parámetros de ejecución
-        Integer constanteA = Utilidades.obtenerEnteroAleatorioDistintoDe(COTA_CONSTANTE_A[0], COTA_CONSTANTE_A[1],0);
-        Integer constanteB = Utilidades.obtenerEnteroAleatorioDistintoDe(COTA_CONSTANTE_B[0], COTA_CONSTANTE_B[1],0);
-        Integer constanteC = Utilidades.obtenerEnteroAleatorioDistintoDe(COTA_CONSTANTE_C[0], COTA_CONSTANTE_C[1],0);
-        Integer constanteD =  Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_D[0], COTA_CONSTANTE_D[1]);
-        Integer constanteE = constanteA;
-        Integer constanteF = constanteC;
-        Integer constanteG = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_G[0], COTA_CONSTANTE_G[1]);
-        Integer constanteH = Utilidades.obtenerImparAleatorioDistintoDe(COTA_CONSTANTE_H[0], COTA_CONSTANTE_H[1], constanteF);
-        Integer x_0 = Utilidades.obtenerEnteroAleatorioDistintoDe(COTA_X_0[0], COTA_X_0[1],-constanteB/constanteA);
+    public ReactivoPendiente prepararReactivo(int numeroReactivo, MuestreadorParametros.Parametros parametros,
+                                              SplittableRandom aleatorio) {
+        //Constantes del reactivo, elegidas por el muestreador
+        Integer constanteA = parametros.get("A");
+        Integer constanteB = parametros.get("B");
+        Integer constanteC = parametros.get("C");
+        Integer constanteD = parametros.get("D");
+        Integer x_0 = parametros.get("X0");
         String comentarioReactivo = Utilidades.generaComentario(COMENTARIO_REACTIVO_PREFIJO, numeroReactivo, POSICIONES_CONTADOR_REACTIVO);
         Integer y_0 = constanteA*x_0*x_0*x_0 + constanteB*x_0*x_0 + constanteC*x_0+constanteD;
         Integer respuestaA = 3*constanteA*x_0*x_0+2*constanteB*x_0+constanteC;
         Integer respuestaB = y_0-respuestaA*x_0;
-        Integer respuestaC = 1;
-        Integer respuestaD = 1;
-        Integer respuestaE = constanteA;
-        Integer respuestaF = constanteC;
-        Integer respuestaG = constanteA;
-        Integer respuestaH = 2;
-        Integer respuestaJ = constanteC;
-        Integer respuestaK = constanteA;
-        Integer respuestaL = 3*constanteA-1;
-        Integer respuestaM = constanteA;
-        Integer respuestaN = constanteB;
-        Integer respuestaP = constanteA;
         //Checar fracción reductible respuestaE y respuestaJ
         Integer divisor = maximoComunDivisor(respuestaA, respuestaB);
         //respuestaA /= divisor;
@@ -123,68 +181,18 @@ public class Gen3_TangentPointGraph implements GeneradorReactivoCloze {
         //respuestaC /= divisor;
         //respuestaD /= divisor;
 
-        String parVariables = DatosReactivos.obtenerParesVariables();
+        String parVariables = DatosReactivos.obtenerParesVariables(aleatorio);
         String variableIndependiente = parVariables.substring(0, 1);
-        String variableDependiente = parVariables.substring(1, 2);
 
         //Sustitución de las variables por sus valores en el texto del reactivo
-        String reactivo = XML_PREFIJO + PLANTILLA_REACTIVO + XML_SUFIJO;
-        String expresion = EXPRESION;
-
-        expresion = expresion.replace("$CONSTANTEA$", constanteA.toString());
-        expresion = expresion.replace("$CONSTANTEB$", constanteB.toString());
-        expresion = expresion.replace("$CONSTANTEC$", constanteC.toString());
-        expresion = expresion.replace("$CONSTANTED$", constanteD.toString());
-        expresion = expresion.replace("$CONSTANTEE$", constanteE.toString());
-        expresion = expresion.replace("$CONSTANTEF$", constanteF.toString());
-        expresion = expresion.replace("$CONSTANTEG$", constanteG.toString());
-        expresion = expresion.replace("$CONSTANTEH$", constanteH.toString());
-        expresion = expresion.replace("+-", "-");
-
-        String CAJAS_RESPUESTA = "$$A=$${1:SHORTANSWER:=$RESPUESTA_A$} <br/> $$B=$${1:SHORTANSWER:=$RESPUESTA_B$} <br/> "
-                + "<span style=\"color: #ff0000; font-size: x-large;\"><strong>"
-                + "<script type=\"math/tex\">\\bullet</script> &nbsp;&nbsp;&nbsp; Los números $$A,B$$ en este orden "
-                + "y que dan solución correcta al ejercicio son: </strong></span>"
-                + " &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;"
-                + " {20:SHORTANSWER:=$RESPUESTA_A$,$RESPUESTA_B$"
-                + "}</center> <br>"
-                + "</center>";
-        reactivo = reactivo.replace("$RESPUESTAS$", CAJAS_RESPUESTA);
-        reactivo = reactivo.replace("$RESPUESTA$", RESPUESTA);
-        //cambiar el problema para punto  tangente
-        reactivo = reactivo.replace("\\frac{d}{dx}\\left($EXPRESION$ \\right)",
-                "tangente de f\\left(x\\right)=$EXPRESION$, at($EQUIS0$,$YE0$)");
-        reactivo = reactivo.replace("<strong>La derivada de la función $$f(x)$$ es:</strong>",
-                "<strong>La recta tangente a la función $$f(x)$$ en el punto $$x_0=$EQUIS0$ $$  es:</strong>");
-        reactivo = reactivo.replace("$EXPRESION$", expresion);
-        reactivo = reactivo.replace("$COMENTARIO$", comentarioReactivo);
-        reactivo = reactivo.replace("$VARIABLE_INDEPENDIENTE$", variableIndependiente);
-        reactivo = reactivo.replace("$VARIABLE_DEPENDIENTE$", variableDependiente);
-        reactivo = reactivo.replace("$RESPUESTA_A$", respuestaA.toString());
-        reactivo = reactivo.replace("$RESPUESTA_B$", respuestaB.toString());
-        reactivo = reactivo.replace("$RESPUESTA_C$", respuestaC.toString());
-        reactivo = reactivo.replace("$RESPUESTA_D$", respuestaD.toString());
-        reactivo = reactivo.replace("$RESPUESTA_E$", respuestaE.toString());
-        reactivo = reactivo.replace("$RESPUESTA_F$", respuestaF.toString());
-        reactivo = reactivo.replace("$RESPUESTA_G$", respuestaG.toString());
-        reactivo = reactivo.replace("$RESPUESTA_H$", respuestaH.toString());
-        reactivo = reactivo.replace("$RESPUESTA_J$", respuestaJ.toString());
-        reactivo = reactivo.replace("$RESPUESTA_K$", respuestaK.toString());
-        reactivo = reactivo.replace("$RESPUESTA_L$", respuestaL.toString());
-        reactivo = reactivo.replace("$RESPUESTA_M$", respuestaM.toString());
-        reactivo = reactivo.replace("$RESPUESTA_N$", respuestaN.toString());
-        reactivo = reactivo.replace("$RESPUESTA_P$", respuestaP.toString());
-        reactivo = reactivo.replace("$EQUIS0$", x_0.toString());
-        reactivo = reactivo.replace("$YE0$", y_0.toString());
-        reactivo = reactivo.replace("1x", "x");
-
-        solucion = SolucionaSimbolico.rectaTangenteGrafica(expresion,x_0, "x");
-
-        reactivo = reactivo.replace("$SOLUCION$", solucion);
-
-        //Concatenando el separador de reactivos
-        reactivo = reactivo.concat(SEPARADOR_REACTIVOS);
-        return reactivo;
+        String expresion = PLANTILLA_EXPRESION.llena(constanteA, constanteB, constanteC, constanteD).replace("+-", "-");
+        // En el texto se omite el coeficiente 1
+        Object[] valores = {comentarioReactivo, Utilidades.omiteCoeficienteUno(expresion), variableIndependiente,
+                respuestaA, respuestaB, x_0, y_0, null};
+        // La pendiente y la ordenada también las calcula SymPy; se usan las suyas y se avisa si difieren
+        return new ReactivoPendiente(numeroReactivo, PLANTILLA, valores, SolicitudSimbolica.rectaTangente(expresion, x_0, "x"))
+                .tomaDeSolucion("RESPUESTA_A", DatosSolucion::getDerivadaEnX0)
+                .tomaDeSolucion("RESPUESTA_B", DatosSolucion::getOrdenada);
     }
 
     public static void main(String[] args) {
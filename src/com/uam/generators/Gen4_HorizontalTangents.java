@@ -5,12 +5,21 @@ package com.uam.generators;
  *
  * */
 
+import com.uam.auxiliar.DatosSolucion;
 import com.uam.auxiliar.GeneradorReactivoCloze;
-import com.uam.auxiliar.SolucionaSimbolico;
-import com.uam.data.DatosReactivos;
+import com.uam.auxiliar.ReactivoPendiente;
+import com.uam.auxiliar.RegistroSolucionadores;
+import com.uam.auxiliar.SolicitudSimbolica;
+import com.uam.auxiliar.SolucionadorSimbolico;
 import com.uam.executor.EjecutadorGeneradorXML;
+import com.uam.motor.Fraccion;
+import com.uam.utilidades.MuestreadorParametros;
+import com.uam.utilidades.PlantillaCompilada;
 import com.uam.utilidades.Utilidades;
 
+import java.util.List;
+import java.util.SplittableRandom;
+
 import static com.uam.constantes.Constantes.XML_PREFIJO;
 import static com.uam.constantes.Constantes.XML_SUFIJO;
 import static com.uam.utilidades.Utilidades.maximoComunDivisor;
@@ -60,21 +69,22 @@ public class Gen4_HorizontalTangents implements GeneradorReactivoCloze {
             "</strong></span>";
 
     private static final int[] COTA_CONSTANTE_D = {-5, 5};
-    private static final int[] COTA_CONSTANTE_G = {3, 5};
-    private static final int[] COTA_CONSTANTE_H = {2, 5};
     private static final int[] COTA_R = {-4, 4};
 
+    /**
+     * Dominios y restricciones de las constantes. Se calculan y verifican al cargar la clase.
+     */
+    private static final MuestreadorParametros MUESTREADOR = MuestreadorParametros.nuevo()
+            .entero("R1", COTA_R[0], COTA_R[1]).distintoDe(0)
+            .entero("R2", COTA_R[0], COTA_R[1]).distintoDe(0).distintoDe(p -> -p.get("R1"))
+            .entero("D", COTA_CONSTANTE_D[0], COTA_CONSTANTE_D[1]).distintoDe(0)
+            // Intercambiar las raíces da el mismo reactivo: sólo se conserva r1 > r2
+            .soloSi(p -> p.get("R2") < p.get("R1"))
+            .construye();
+
     private static final String EXPRESION = "$CONSTANTEA$x^3+$CONSTANTEB$x^2+$CONSTANTEC$x+$CONSTANTED$";
-    private String RESPUESTA= "$$\\displaystyle P_1($${1:SHORTANSWER:=$RESPUESTA_A$}$$,$${1:SHORTANSWER:=$RESPUESTA_B$}$$)$$ <br/>"+
+    private static final String RESPUESTA = "$$\\displaystyle P_1($${1:SHORTANSWER:=$RESPUESTA_A$}$$,$${1:SHORTANSWER:=$RESPUESTA_B$}$$)$$ <br/>"+
             "$$\\displaystyle P_2($${1:SHORTANSWER:=$RESPUESTA_C$}$$,$${1:SHORTANSWER:=$RESPUESTA_D$}$$)$$ <br/>";
-    private String CAJAS_RESPUESTA = "$$A=$${1:SHORTANSWER:=$RESPUESTA_A$} <br/> $$B=$${1:SHORTANSWER:=$RESPUESTA_B$}) <br/> "
-            + "<span style=\"color: #ff0000; font-size: x-large;\"><strong>"
-            + "<script type=\"math/tex\">\\bullet</script> &nbsp;&nbsp;&nbsp; Los números $$A,B$$ en este orden "
-            + "y que dan solución correcta al ejercicio son: </strong></span>"
-            + " &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;"
-            +" {20:SHORTANSWER:=$RESPUESTA_A$,$RESPUESTA_B$"
-            + "}</center> <br>"
-            + "</center>";
 
     /**
      * El comentario que se pondrá a cada reactivo para etiquetarlo, el sufijo
@@ -87,102 +97,95 @@ public class Gen4_HorizontalTangents implements GeneradorReactivoCloze {
     private static final String COMENTARIO_REACTIVO_PREFIJO = "Sevilla_step_by_step_horizontal_tangents_graph_";
     private static final String SEPARADOR_REACTIVOS = "\r\n";
 
+    /**
+     * Texto completo del reactivo, con las sustituciones fijas ya aplicadas y compilado una vez.
+     * La solución se llena al completar el reactivo.
+     */
+    private static final PlantillaCompilada PLANTILLA
+            = PlantillaCompilada.de(XML_PREFIJO + PLANTILLA_REACTIVO + XML_SUFIJO + SEPARADOR_REACTIVOS)
+            .reescribe("$RESPUESTA$", RESPUESTA)
+            //cambiar el problema para punto  tangente
+            .reescribe("\\frac{d}{dx}\\left($EXPRESION$ \\right)",
+                    "puntos extremos de f\\left(x\\right)=$EXPRESION$")
+            .reescribe("<strong>La derivada de la función $$f(x)$$ es:</strong>",
+                    "<strong>Los puntos donde la derivada se anula son:</strong>")
+            .compila("COMENTARIO", "EXPRESION",
+                    "RESPUESTA_A", "RESPUESTA_B", "RESPUESTA_C", "RESPUESTA_D", "SOLUCION");
+    private static final PlantillaCompilada PLANTILLA_EXPRESION
+            = PlantillaCompilada.de(EXPRESION).compila("CONSTANTEA", "CONSTANTEB", "CONSTANTEC", "CONSTANTED");
+
+    private final SolucionadorSimbolico solucionador;
+
+    /**
+     * Usa el solucionador activo de {@link RegistroSolucionadores}.
+     */
+    public Gen4_HorizontalTangents() {
+        this(RegistroSolucionadores.activo());
+    }
+
+    /**
+     * @param solucionador resuelve la solución paso a paso de cada reactivo
+     */
+    public Gen4_HorizontalTangents(SolucionadorSimbolico solucionador) {
+        this.solucionador = solucionador;
+    }
+
+    @Override
+    public SolucionadorSimbolico getSolucionador() {
+        return solucionador;
+    }
+
+    @Override
+    public MuestreadorParametros getMuestreador() {
+        return MUESTREADOR;
+    }
+
     @Override
-    public String generarReactivoCloze(int numeroReactivo) {
-        String solucion = "";
-        //Generación de variables aleatorias con parámetros de ejecución
-        Integer r1 = Utilidades.obtenerEnteroAleatorioDistintoDe(COTA_R[0], COTA_R[1],0);
-        Integer r2;
-        do {
-            r2 = Utilidades.obtenerEnteroAleatorioDistintoDe(COTA_R[0], COTA_R[1], 0);
-        }while(r2.equals(r1) || r2.equals(-r1) );
-        if(r2>r1){
-            Integer tmp = r2;
-            r2=r1;
-            r1=tmp;
-        }
+    public String getPrefijoComentario() {
+        return COMENTARIO_REACTIVO_PREFIJO;
+    }
+
+    @Override
+    public ReactivoPendiente prepararReactivo(int numeroReactivo, MuestreadorParametros.Parametros parametros,
+                                              SplittableRandom aleatorio) {
+        //Constantes del reactivo, elegidas por el muestreador
+        Integer r1 = parametros.get("R1");
+        Integer r2 = parametros.get("R2");
         Integer constanteA = 2;
         Integer constanteB = (r1+r2)*3;
         Integer constanteC = 6*r1*r2;
-        Integer constanteD =  Utilidades.obtenerEnteroAleatorioDistintoDe(COTA_CONSTANTE_D[0], COTA_CONSTANTE_D[1],0);
+        Integer constanteD = parametros.get("D");
         Integer divisor = maximoComunDivisor(maximoComunDivisor(maximoComunDivisor(constanteA,constanteB),constanteC),constanteD);
         if(divisor<0) divisor = -divisor;
         constanteA/=divisor;
         constanteB/=divisor;
         constanteC/=divisor;
         constanteD/=divisor;
-        Integer constanteE = constanteA;
-        Integer constanteF = constanteC;
-        Integer constanteG = Utilidades.obtenerEnteroAleatorio(COTA_CONSTANTE_G[0], COTA_CONSTANTE_G[1]);
-        Integer constanteH = Utilidades.obtenerImparAleatorioDistintoDe(COTA_CONSTANTE_H[0], COTA_CONSTANTE_H[1], constanteF);
         String comentarioReactivo = Utilidades.generaComentario(COMENTARIO_REACTIVO_PREFIJO, numeroReactivo, POSICIONES_CONTADOR_REACTIVO);
         Integer respuestaA = -r1;
         Integer respuestaB = -constanteA*r1*r1*r1+constanteB*r1*r1-constanteC*r1+constanteD;
         Integer respuestaC = -r2;
         Integer respuestaD = -constanteA*r2*r2*r2+constanteB*r2*r2-constanteC*r2+constanteD;
-        Integer respuestaE = constanteA;
-        Integer respuestaF = constanteC;
-        Integer respuestaG = constanteA;
-        Integer respuestaH = 2;
-        Integer respuestaJ = constanteC;
-        Integer respuestaK = constanteA;
-        Integer respuestaL = 3*constanteA-1;
-        Integer respuestaM = constanteA;
-        Integer respuestaN = constanteB;
-        Integer respuestaP = constanteA;
-
-        String parVariables = DatosReactivos.obtenerParesVariables();
-        String variableIndependiente = parVariables.substring(0, 1);
-        String variableDependiente = parVariables.substring(1, 2);
 
         //Sustitución de las variables por sus valores en el texto del reactivo
-        String reactivo = XML_PREFIJO + PLANTILLA_REACTIVO + XML_SUFIJO;
-        String expresion = EXPRESION;
-
-        expresion = expresion.replace("$CONSTANTEA$", constanteA.toString());
-        expresion = expresion.replace("$CONSTANTEB$", constanteB.toString());
-        expresion = expresion.replace("$CONSTANTEC$", constanteC.toString());
-        expresion = expresion.replace("$CONSTANTED$", constanteD.toString());
-        expresion = expresion.replace("$CONSTANTEE$", constanteE.toString());
-        expresion = expresion.replace("$CONSTANTEF$", constanteF.toString());
-        expresion = expresion.replace("$CONSTANTEG$", constanteG.toString());
-        expresion = expresion.replace("$CONSTANTEH$", constanteH.toString());
-        expresion = expresion.replace("+-", "-");
-
-        reactivo = reactivo.replace("$RESPUESTAS$", CAJAS_RESPUESTA);
-        reactivo = reactivo.replace("$RESPUESTA$", RESPUESTA);
-        //cambiar el problema para punto  tangente
-        reactivo = reactivo.replace("\\frac{d}{dx}\\left($EXPRESION$ \\right)",
-                "puntos extremos de f\\left(x\\right)=$EXPRESION$");
-        reactivo = reactivo.replace("<strong>La derivada de la función $$f(x)$$ es:</strong>",
-                "<strong>Los puntos donde la derivada se anula son:</strong>");
-        reactivo = reactivo.replace("$EXPRESION$", expresion);
-        reactivo = reactivo.replace("$COMENTARIO$", comentarioReactivo);
-        reactivo = reactivo.replace("$VARIABLE_INDEPENDIENTE$", variableIndependiente);
-        reactivo = reactivo.replace("$VARIABLE_DEPENDIENTE$", variableDependiente);
-        reactivo = reactivo.replace("$RESPUESTA_A$", respuestaA.toString());
-        reactivo = reactivo.replace("$RESPUESTA_B$", respuestaB.toString());
-        reactivo = reactivo.replace("$RESPUESTA_C$", respuestaC.toString());
-        reactivo = reactivo.replace("$RESPUESTA_D$", respuestaD.toString());
-        reactivo = reactivo.replace("$RESPUESTA_E$", respuestaE.toString());
-        reactivo = reactivo.replace("$RESPUESTA_F$", respuestaF.toString());
-        reactivo = reactivo.replace("$RESPUESTA_G$", respuestaG.toString());
-        reactivo = reactivo.replace("$RESPUESTA_H$", respuestaH.toString());
-        reactivo = reactivo.replace("$RESPUESTA_J$", respuestaJ.toString());
-        reactivo = reactivo.replace("$RESPUESTA_K$", respuestaK.toString());
-        reactivo = reactivo.replace("$RESPUESTA_L$", respuestaL.toString());
-        reactivo = reactivo.replace("$RESPUESTA_M$", respuestaM.toString());
-        reactivo = reactivo.replace("$RESPUESTA_N$", respuestaN.toString());
-        reactivo = reactivo.replace("$RESPUESTA_P$", respuestaP.toString());
-        reactivo = reactivo.replace("1x", "x");
-
-        solucion = SolucionaSimbolico.tangentesHorizontalesGraficaJSX(expresion, "x");
-
-        reactivo = reactivo.replace("$SOLUCION$", solucion);
-
-        //Concatenando el separador de reactivos
-        reactivo = reactivo.concat(SEPARADOR_REACTIVOS);
-        return reactivo;
+        String expresion = PLANTILLA_EXPRESION.llena(constanteA, constanteB, constanteC, constanteD).replace("+-", "-");
+        // En el texto se omite el coeficiente 1
+        Object[] valores = {comentarioReactivo, Utilidades.omiteCoeficienteUno(expresion),
+                respuestaA, respuestaB, respuestaC, respuestaD, null};
+        // Los puntos también los calcula SymPy; P1 es el de menor abscisa (-r1 < -r2)
+        return new ReactivoPendiente(numeroReactivo, PLANTILLA, valores, SolicitudSimbolica.tangentesHorizontales(expresion, "x"))
+                .tomaDeSolucion("RESPUESTA_A", datos -> coordenada(datos, 0, 0))
+                .tomaDeSolucion("RESPUESTA_B", datos -> coordenada(datos, 0, 1))
+                .tomaDeSolucion("RESPUESTA_C", datos -> coordenada(datos, 1, 0))
+                .tomaDeSolucion("RESPUESTA_D", datos -> coordenada(datos, 1, 1));
+    }
+
+    /**
+     * @return una coordenada del punto con tangente horizontal, por orden de abscisa; null si SymPy no lo dio
+     */
+    private static Fraccion coordenada(DatosSolucion datos, int punto, int eje) {
+        List<Fraccion[]> puntos = datos.getPuntos();
+        return punto < puntos.size() ? puntos.get(punto)[eje] : null;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,369 @@
+package com.uam.motor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Árbol de una expresión en una variable, con la forma en que SymPy la tiene evaluada.
+ * Cada tipo de nodo corresponde a una regla de derivación de diffsteps:
+ * constante, potencia (o cadena si la base no es la variable), suma, producto,
+ * constante por función y cociente.
+ */
+public abstract class Expresion {
+
+    /**
+     * @return el valor de la expresión como función racional con coeficientes enteros
+     */
+    public abstract FuncionRacional valor();
+
+    /**
+     * @param variable nombre de la variable
+     * @return la expresión como la imprime latex() de SymPy
+     */
+    public abstract String latex(String variable);
+
+    /**
+     * @param variable nombre de la variable
+     * @return la expresión como la imprime str() de SymPy; sólo para polinomios
+     */
+    public String str(String variable) {
+        Polinomio polinomio = valor().polinomio();
+        if (polinomio == null) {
+            throw new ExpresionNoSoportada("str() sólo se implementa para polinomios: " + latex(variable));
+        }
+        return polinomio.str(variable);
+    }
+
+    /**
+     * @param variable nombre de la variable
+     * @return latex(Derivative(expr, variable)), con paréntesis si la expresión es una suma
+     */
+    public String latexDerivada(String variable) {
+        return "\\frac{d}{d " + variable + "} " + (this instanceof Suma ? parentesis(latex(variable)) : latex(variable));
+    }
+
+    static String parentesis(String latex) {
+        return "\\left(" + latex + "\\right)";
+    }
+
+    /**
+     * Arma la expresión que SymPy obtiene al evaluar un polinomio: una suma de monomios
+     * de mayor a menor grado, o un solo monomio.
+     * @param polinomio polinomio con coeficientes enteros
+     * @return la expresión equivalente
+     */
+    public static Expresion dePolinomio(Polinomio polinomio) {
+        List<Expresion> terminos = new ArrayList<>();
+        for (int i = polinomio.grado(); i >= 0; i--) {
+            if (polinomio.coeficiente(i) != 0) {
+                terminos.add(monomio(polinomio.coeficiente(i), i));
+            }
+        }
+        if (terminos.isEmpty()) {
+            return new Constante(Fraccion.CERO);
+        }
+        return terminos.size() == 1 ? terminos.get(0) : new Suma(terminos);
+    }
+
+    private static Expresion monomio(long coeficiente, int grado) {
+        if (grado == 0) {
+            return new Constante(Fraccion.de(coeficiente));
+        }
+        Expresion base = grado == 1 ? new Variable() : new Potencia(new Variable(), grado);
+        return coeficiente == 1 ? base : new ConstantePor(Fraccion.de(coeficiente), base);
+    }
+
+    /**
+     * Un número.
+     */
+    public static final class Constante extends Expresion {
+        private final Fraccion valor;
+
+        public Constante(Fraccion valor) {
+            this.valor = valor;
+        }
+
+        public Fraccion getValor() {
+            return valor;
+        }
+
+        @Override
+        public FuncionRacional valor() {
+            return new FuncionRacional(Polinomio.constante(valor.getNumerador()), Polinomio.constante(valor.getDenominador()));
+        }
+
+        @Override
+        public String latex(String variable) {
+            return valor.latex();
+        }
+    }
+
+    /**
+     * La variable independiente.
+     */
+    public static final class Variable extends Expresion {
+        @Override
+        public FuncionRacional valor() {
+            return FuncionRacional.de(Polinomio.X);
+        }
+
+        @Override
+        public String latex(String variable) {
+            return variable;
+        }
+    }
+
+    /**
+     * Una base elevada a un exponente entero distinto de 0 y 1.
+     */
+    public static final class Potencia extends Expresion {
+        private final Expresion base;
+        private final int exponente;
+
+        public Potencia(Expresion base, int exponente) {
+            this.base = base;
+            this.exponente = exponente;
+        }
+
+        public Expresion getBase() {
+            return base;
+        }
+
+        public int getExponente() {
+            return exponente;
+        }
+
+        @Override
+        public FuncionRacional valor() {
+            return base.valor().potencia(exponente);
+        }
+
+        @Override
+        public String latex(String variable) {
+            return latexPotencia(base.latex(variable), !(base instanceof Variable), exponente);
+        }
+    }
+
+    /**
+     * Un coeficiente numérico distinto de 1 por una función de la variable.
+     */
+    public static final class ConstantePor extends Expresion {
+        private final Fraccion constante;
+        private final Expresion funcion;
+
+        public ConstantePor(Fraccion constante, Expresion funcion) {
+            this.constante = constante;
+            this.funcion = funcion;
+        }
+
+        public Fraccion getConstante() {
+            return constante;
+        }
+
+        public Expresion getFuncion() {
+            return funcion;
+        }
+
+        @Override
+        public FuncionRacional valor() {
+            FuncionRacional f = funcion.valor();
+            return new FuncionRacional(f.getNumerador().escala(constante.getNumerador()),
+                    f.getDenominador().escala(constante.getDenominador()));
+        }
+
+        @Override
+        public String latex(String variable) {
+            String signo = constante.signo() < 0 ? "- " : "";
+            long p = Math.abs(constante.getNumerador());
+            long q = constante.getDenominador();
+            String numerador;
+            String denominador;
+            if (funcion instanceof Cociente) {
+                Cociente cociente = (Cociente) funcion;
+                numerador = factor(p, cociente.getNumerador(), variable);
+                denominador = factor(q, cociente.getDenominador(), variable);
+            } else if (funcion instanceof Potencia && ((Potencia) funcion).getExponente() < 0) {
+                Potencia potencia = (Potencia) funcion;
+                numerador = Long.toString(p);
+                denominador = factor(q, new Potencia(potencia.getBase(), -potencia.getExponente()), variable);
+            } else if (q != 1) {
+                numerador = factor(p, funcion, variable);
+                denominador = Long.toString(q);
+            } else {
+                return signo + factor(p, funcion, variable);
+            }
+            return signo + "\\frac{" + numerador + "}{" + denominador + "}";
+        }
+
+        private static String factor(long coeficiente, Expresion expresion, String variable) {
+            if (coeficiente == 1) {
+                return expresion.latex(variable);
+            }
+            String latex = expresion instanceof Suma ? parentesis(expresion.latex(variable)) : expresion.latex(variable);
+            return coeficiente + " " + latex;
+        }
+    }
+
+    /**
+     * Suma de términos; se imprime de mayor a menor grado como lo ordena SymPy.
+     */
+    public static final class Suma extends Expresion {
+        private final List<Expresion> terminos;
+
+        public Suma(List<Expresion> terminos) {
+            this.terminos = terminos;
+        }
+
+        public List<Expresion> getTerminos() {
+            return terminos;
+        }
+
+        @Override
+        public FuncionRacional valor() {
+            FuncionRacional suma = FuncionRacional.de(Polinomio.CERO);
+            for (Expresion termino : terminos) {
+                suma = suma.suma(termino.valor());
+            }
+            return suma;
+        }
+
+        @Override
+        public String latex(String variable) {
+            Polinomio polinomio = valor().polinomio();
+            if (polinomio != null) {
+                return polinomio.latex(variable);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (Expresion termino : terminos) {
+                String latex = termino.latex(variable);
+                if (sb.length() == 0) {
+                    sb.append(latex);
+                } else if (latex.startsWith("- ")) {
+                    sb.append(" - ").append(latex.substring(2));
+                } else {
+                    sb.append(" + ").append(latex);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Producto de dos o más funciones de la variable, sin coeficiente ni denominador.
+     */
+    public static final class Producto extends Expresion {
+        private final List<Expresion> factores;
+
+        public Producto(Expresion... factores) {
+            this.factores = Arrays.asList(factores);
+        }
+
+        public Producto(List<Expresion> factores) {
+            this.factores = factores;
+        }
+
+        public List<Expresion> getFactores() {
+            return factores;
+        }
+
+        @Override
+        public FuncionRacional valor() {
+            FuncionRacional producto = FuncionRacional.de(Polinomio.UNO);
+            for (Expresion factor : factores) {
+                producto = producto.multiplica(factor.valor());
+            }
+            return producto;
+        }
+
+        @Override
+        public String latex(String variable) {
+            StringBuilder sb = new StringBuilder();
+            for (Expresion factor : factores) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(factor instanceof Suma ? parentesis(factor.latex(variable)) : factor.latex(variable));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Cociente de dos funciones; la regla del cociente de diffsteps.
+     */
+    public static final class Cociente extends Expresion {
+        private final Expresion numerador;
+        private final Expresion denominador;
+
+        public Cociente(Expresion numerador, Expresion denominador) {
+            this.numerador = numerador;
+            this.denominador = denominador;
+        }
+
+        public Expresion getNumerador() {
+            return numerador;
+        }
+
+        public Expresion getDenominador() {
+            return denominador;
+        }
+
+        @Override
+        public FuncionRacional valor() {
+            return numerador.valor().divide(denominador.valor());
+        }
+
+        @Override
+        public String latex(String variable) {
+            return "\\frac{" + numerador.latex(variable) + "}{" + denominador.latex(variable) + "}";
+        }
+    }
+
+    /**
+     * @param base LaTeX de la base
+     * @param compuesta true si la base necesita paréntesis al elevarse
+     * @param exponente exponente entero
+     * @return la potencia como la imprime SymPy; los exponentes negativos van al denominador
+     */
+    static String latexPotencia(String base, boolean compuesta, int exponente) {
+        if (exponente < 0) {
+            return "\\frac{1}{" + latexPotencia(base, compuesta, -exponente) + "}";
+        }
+        if (exponente == 1) {
+            return base;
+        }
+        return (compuesta ? parentesis(base) : base) + "^{" + exponente + "}";
+    }
+
+    /**
+     * @param coeficiente coeficiente del monomio
+     * @param base LaTeX de la base
+     * @param compuesta true si la base necesita paréntesis al multiplicarse o elevarse
+     * @param exponente exponente entero
+     * @return coeficiente por base a la exponente, como lo imprime SymPy
+     */
+    static String latexMonomio(Fraccion coeficiente, String base, boolean compuesta, int exponente) {
+        if (coeficiente.esCero()) {
+            return "0";
+        }
+        if (exponente == 0) {
+            return coeficiente.latex();
+        }
+        String signo = coeficiente.signo() < 0 ? "- " : "";
+        long p = Math.abs(coeficiente.getNumerador());
+        long q = coeficiente.getDenominador();
+        String factor = exponente == 1 && compuesta ? parentesis(base) : latexPotencia(base, compuesta, Math.abs(exponente));
+        if (exponente < 0) {
+            if (q == 1) {
+                return signo + "\\frac{" + p + "}{" + factor + "}";
+            }
+            return signo + "\\frac{" + p + "}{" + q + " " + (exponente == -1 && compuesta ? parentesis(base) : factor) + "}";
+        }
+        if (exponente == 1 && p == 1 && q == 1) {
+            factor = base;
+        }
+        String numerador = (p == 1 ? "" : p + " ") + factor;
+        return q == 1 ? signo + numerador : signo + "\\frac{" + numerador + "}{" + q + "}";
+    }
+}
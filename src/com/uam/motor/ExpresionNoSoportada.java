@@ -0,0 +1,14 @@
+package com.uam.motor;
+
+/**
+ * La expresión o el tipo de problema no los cubre el motor de derivación en Java;
+ * quien llama debe resolverlo con SymPy.
+ */
+public class ExpresionNoSoportada extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ExpresionNoSoportada(String mensaje) {
+        super(mensaje);
+    }
+}
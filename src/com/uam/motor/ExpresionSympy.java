@@ -0,0 +1,356 @@
+package com.uam.motor;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Árbol de una expresión tal como lo arma parse_latex de SymPy: sumas, productos y potencias
+ * binarios sin evaluar (Add, Mul y Pow con evaluate=False), la resta como suma con el
+ * sustraendo por -1, el cociente como producto por el denominador a la -1 y el signo menos
+ * inicial como negación. Se escribe como código Python que construye el mismo objeto de
+ * SymPy, para que el trabajo no tenga que importar antlr ni leer LaTeX.<p>
+ * Lee el mismo subconjunto de LaTeX que producen los generadores: enteros, letras, potencias,
+ * productos implícitos, \cdot, \times, paréntesis, llaves y \frac. Cualquier otra cosa lanza
+ * {@link ExpresionNoSoportada} para que se lea con parse_latex.
+ */
+public abstract class ExpresionSympy {
+
+    /**
+     * @return código Python que construye la expresión, con el módulo sympy importado
+     */
+    public abstract String python();
+
+    /**
+     * @return true si la expresión no tiene símbolos
+     */
+    abstract boolean esNumerica();
+
+    /**
+     * @param latex expresión en LaTeX
+     * @return el árbol que arma parse_latex con esa expresión
+     * @throws ExpresionNoSoportada si la expresión está fuera del subconjunto que se lee
+     */
+    public static ExpresionSympy deLatex(String latex) {
+        Lector lector = new Lector(latex);
+        ExpresionSympy expresion = lector.suma();
+        lector.saltaEspacios();
+        if (lector.posicion < latex.length()) {
+            throw lector.error("Se esperaba el fin de la expresión");
+        }
+        return expresion;
+    }
+
+    /**
+     * Un entero sin signo.
+     */
+    public static final class Numero extends ExpresionSympy {
+        private final BigInteger valor;
+
+        public Numero(BigInteger valor) {
+            this.valor = valor;
+        }
+
+        public BigInteger getValor() {
+            return valor;
+        }
+
+        @Override
+        public String python() {
+            return "sympy.Integer(" + valor + ")";
+        }
+
+        @Override
+        boolean esNumerica() {
+            return true;
+        }
+    }
+
+    /**
+     * Una letra.
+     */
+    public static final class Simbolo extends ExpresionSympy {
+        private final String nombre;
+
+        public Simbolo(String nombre) {
+            this.nombre = nombre;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        @Override
+        public String python() {
+            return "sympy.Symbol('" + nombre + "')";
+        }
+
+        @Override
+        boolean esNumerica() {
+            return false;
+        }
+    }
+
+    /**
+     * Add, Mul o Pow de dos operandos sin evaluar.
+     */
+    public static final class Operacion extends ExpresionSympy {
+        private final String clase;
+        private final ExpresionSympy izquierda;
+        private final ExpresionSympy derecha;
+
+        private Operacion(String clase, ExpresionSympy izquierda, ExpresionSympy derecha) {
+            this.clase = clase;
+            this.izquierda = izquierda;
+            this.derecha = derecha;
+        }
+
+        public static Operacion suma(ExpresionSympy izquierda, ExpresionSympy derecha) {
+            return new Operacion("Add", izquierda, derecha);
+        }
+
+        public static Operacion producto(ExpresionSympy izquierda, ExpresionSympy derecha) {
+            return new Operacion("Mul", izquierda, derecha);
+        }
+
+        public static Operacion potencia(ExpresionSympy base, ExpresionSympy exponente) {
+            return new Operacion("Pow", base, exponente);
+        }
+
+        @Override
+        public String python() {
+            return "sympy." + clase + "(" + izquierda.python() + ", " + derecha.python() + ", evaluate=False)";
+        }
+
+        @Override
+        boolean esNumerica() {
+            return izquierda.esNumerica() && derecha.esNumerica();
+        }
+    }
+
+    /**
+     * El signo menos de un término; en Python es la negación, que sí evalúa.
+     */
+    public static final class Negacion extends ExpresionSympy {
+        private final ExpresionSympy operando;
+
+        public Negacion(ExpresionSympy operando) {
+            this.operando = operando;
+        }
+
+        @Override
+        public String python() {
+            return "(-" + operando.python() + ")";
+        }
+
+        @Override
+        boolean esNumerica() {
+            return operando.esNumerica();
+        }
+    }
+
+    private static final Numero MENOS_UNO = new Numero(BigInteger.ONE.negate());
+
+    /**
+     * Lector recursivo con las reglas de la gramática de parse_latex (convert_add, convert_mp,
+     * convert_unary, convert_postfix_list, convert_exp, convert_frac).
+     */
+    private static final class Lector {
+        private final String texto;
+        private int posicion;
+
+        private Lector(String texto) {
+            this.texto = texto;
+        }
+
+        /**
+         * additive: asociativa a la izquierda; a - b es Add(a, Mul(-1, b)).
+         */
+        private ExpresionSympy suma() {
+            ExpresionSympy suma = producto();
+            while (true) {
+                saltaEspacios();
+                if (consume("+")) {
+                    suma = Operacion.suma(suma, producto());
+                } else if (consume("-")) {
+                    suma = Operacion.suma(suma, Operacion.producto(MENOS_UNO, producto()));
+                } else {
+                    return suma;
+                }
+            }
+        }
+
+        /**
+         * mp: productos y cocientes explícitos, asociativos a la izquierda; a / b es Mul(a, Pow(b, -1)).
+         */
+        private ExpresionSympy producto() {
+            ExpresionSympy producto = unario();
+            while (true) {
+                saltaEspacios();
+                if (consume("*") || consume("\\cdot") || consume("\\times")) {
+                    producto = Operacion.producto(producto, unario());
+                } else if (consume("/") || consume("\\div")) {
+                    producto = Operacion.producto(producto, Operacion.potencia(unario(), MENOS_UNO));
+                } else {
+                    return producto;
+                }
+            }
+        }
+
+        /**
+         * unary: signos al inicio, o una lista de factores implícitos.
+         */
+        private ExpresionSympy unario() {
+            saltaEspacios();
+            if (consume("+")) {
+                return unario();
+            }
+            if (consume("-")) {
+                return new Negacion(unario());
+            }
+            List<ExpresionSympy> factores = new ArrayList<>();
+            do {
+                factores.add(potencia());
+                saltaEspacios();
+            } while (empiezaFactor());
+            return listaFactores(factores, 0);
+        }
+
+        /**
+         * convert_postfix_list: producto anidado a la derecha; una x entre dos factores sin
+         * símbolos se toma como signo de multiplicación.
+         */
+        private static ExpresionSympy listaFactores(List<ExpresionSympy> factores, int i) {
+            ExpresionSympy factor = factores.get(i);
+            if (i == factores.size() - 1) {
+                return factor;
+            }
+            if (i > 0 && factor instanceof Simbolo && "x".equals(((Simbolo) factor).getNombre())
+                    && factores.get(i - 1).esNumerica() && factores.get(i + 1).esNumerica()) {
+                return listaFactores(factores, i + 1);
+            }
+            return Operacion.producto(factor, listaFactores(factores, i + 1));
+        }
+
+        /**
+         * exp: base y exponentes, asociativos a la izquierda.
+         */
+        private ExpresionSympy potencia() {
+            ExpresionSympy base = primario();
+            while (true) {
+                saltaEspacios();
+                if (!consume("^")) {
+                    return base;
+                }
+                saltaEspacios();
+                ExpresionSympy exponente;
+                if (consume("{")) {
+                    exponente = suma();
+                    espera("}");
+                } else {
+                    exponente = atomo();
+                }
+                base = Operacion.potencia(base, exponente);
+            }
+        }
+
+        private ExpresionSympy primario() {
+            saltaEspacios();
+            if (empiezaGrupoLeft()) {
+                // parse_latex descarta \left y \right
+                posicion += "\\left".length();
+            }
+            if (consume("\\frac")) {
+                espera("{");
+                ExpresionSympy numerador = suma();
+                espera("}");
+                espera("{");
+                ExpresionSympy denominador = suma();
+                espera("}");
+                ExpresionSympy inverso = Operacion.potencia(denominador, MENOS_UNO);
+                boolean esUno = numerador instanceof Numero && BigInteger.ONE.equals(((Numero) numerador).getValor());
+                return esUno ? inverso : Operacion.producto(numerador, inverso);
+            }
+            for (String[] grupo : new String[][]{{"(", ")"}, {"[", "]"}, {"{", "}"}}) {
+                if (consume(grupo[0])) {
+                    ExpresionSympy interior = suma();
+                    saltaEspacios();
+                    consume("\\right");
+                    espera(grupo[1]);
+                    return interior;
+                }
+            }
+            return atomo();
+        }
+
+        /**
+         * Un entero o una letra. Una d seguida de una letra es un diferencial para parse_latex.
+         */
+        private ExpresionSympy atomo() {
+            saltaEspacios();
+            int inicio = posicion;
+            while (posicion < texto.length() && Character.isDigit(texto.charAt(posicion))) {
+                posicion++;
+            }
+            if (posicion > inicio) {
+                if (posicion < texto.length() && (texto.charAt(posicion) == '.' || texto.charAt(posicion) == ',')) {
+                    throw error("Sólo se leen enteros");
+                }
+                return new Numero(new BigInteger(texto.substring(inicio, posicion)));
+            }
+            if (posicion < texto.length() && esLetra(texto.charAt(posicion))) {
+                char letra = texto.charAt(posicion++);
+                if (letra == 'd') {
+                    saltaEspacios();
+                    if (posicion < texto.length() && (esLetra(texto.charAt(posicion)) || texto.charAt(posicion) == '\\')) {
+                        throw error("Diferencial no soportado");
+                    }
+                }
+                return new Simbolo(String.valueOf(letra));
+            }
+            throw error("Símbolo no soportado");
+        }
+
+        private boolean empiezaFactor() {
+            if (posicion >= texto.length()) {
+                return false;
+            }
+            char c = texto.charAt(posicion);
+            return Character.isDigit(c) || esLetra(c) || c == '(' || c == '[' || c == '{'
+                    || texto.startsWith("\\frac", posicion) || empiezaGrupoLeft();
+        }
+
+        private boolean empiezaGrupoLeft() {
+            return texto.startsWith("\\left(", posicion) || texto.startsWith("\\left[", posicion);
+        }
+
+        private static boolean esLetra(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private void saltaEspacios() {
+            while (posicion < texto.length() && Character.isWhitespace(texto.charAt(posicion))) {
+                posicion++;
+            }
+        }
+
+        private boolean consume(String simbolo) {
+            if (texto.startsWith(simbolo, posicion)) {
+                posicion += simbolo.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void espera(String simbolo) {
+            saltaEspacios();
+            if (!consume(simbolo)) {
+                throw error("Se esperaba '" + simbolo + "'");
+            }
+        }
+
+        private ExpresionNoSoportada error(String mensaje) {
+            return new ExpresionNoSoportada(mensaje + " en la posición " + posicion + " de " + texto);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.uam.motor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Forma factorizada de una función racional: coeficiente racional por factores primitivos
+ * con exponente, ya cancelados entre numerador y denominador. Es lo que regresa factor()
+ * de SymPy para los polinomios de los reactivos, cuyos factores irreducibles son lineales
+ * con raíz racional o de grado a lo más 3 sin raíces racionales.
+ */
+public final class FormaFactorizada {
+
+    /**
+     * Polinomio primitivo con coeficiente principal positivo, elevado a un exponente positivo.
+     */
+    public static final class Factor {
+        private final Polinomio base;
+        private final int exponente;
+
+        Factor(Polinomio base, int exponente) {
+            this.base = base;
+            this.exponente = exponente;
+        }
+
+        public Polinomio getBase() {
+            return base;
+        }
+
+        public int getExponente() {
+            return exponente;
+        }
+
+        boolean esMonomio() {
+            return base.esMonomio();
+        }
+
+        String latex(String variable) {
+            return Expresion.latexPotencia(base.latex(variable), !esMonomio(), exponente);
+        }
+
+        String latexFactor(String variable) {
+            return esMonomio() || exponente > 1 ? latex(variable) : Expresion.parentesis(base.latex(variable));
+        }
+
+        Expresion expresion() {
+            Expresion b = Expresion.dePolinomio(base);
+            return exponente == 1 ? b : new Expresion.Potencia(b, exponente);
+        }
+    }
+
+    private static final Comparator<Polinomio> ORDEN = Comparator.<Polinomio>comparingInt(p -> p.esMonomio() ? 0 : 1)
+            .thenComparingInt(Polinomio::grado)
+            .thenComparingLong(p -> p.coeficiente(0))
+            .thenComparingLong(Polinomio::principal)
+            .thenComparing(Polinomio::toString);
+
+    private final Fraccion coeficiente;
+    private final List<Factor> numerador;
+    private final List<Factor> denominador;
+
+    private FormaFactorizada(Fraccion coeficiente, List<Factor> numerador, List<Factor> denominador) {
+        this.coeficiente = coeficiente;
+        this.numerador = numerador;
+        this.denominador = denominador;
+    }
+
+    /**
+     * @param funcion función racional
+     * @return su factorización, con los factores comunes cancelados
+     * @throws ExpresionNoSoportada si algún polinomio tiene un factor sin raíces racionales de grado mayor que 3
+     */
+    public static FormaFactorizada de(FuncionRacional funcion) {
+        Map<Polinomio, Integer> numerador = new TreeMap<>(ORDEN);
+        Map<Polinomio, Integer> denominador = new TreeMap<>(ORDEN);
+        long contenidoNumerador = factoriza(funcion.getNumerador(), numerador);
+        long contenidoDenominador = factoriza(funcion.getDenominador(), denominador);
+        for (Map.Entry<Polinomio, Integer> factor : new ArrayList<>(denominador.entrySet())) {
+            Integer arriba = numerador.get(factor.getKey());
+            if (arriba == null) {
+                continue;
+            }
+            int comun = Math.min(arriba, factor.getValue());
+            quita(numerador, factor.getKey(), comun);
+            quita(denominador, factor.getKey(), comun);
+        }
+        return new FormaFactorizada(Fraccion.de(contenidoNumerador, contenidoDenominador),
+                lista(numerador), lista(denominador));
+    }
+
+    private static void quita(Map<Polinomio, Integer> factores, Polinomio base, int veces) {
+        int restante = factores.get(base) - veces;
+        if (restante == 0) {
+            factores.remove(base);
+        } else {
+            factores.put(base, restante);
+        }
+    }
+
+    private static List<Factor> lista(Map<Polinomio, Integer> factores) {
+        List<Factor> lista = new ArrayList<>();
+        for (Map.Entry<Polinomio, Integer> factor : factores.entrySet()) {
+            lista.add(new Factor(factor.getKey(), factor.getValue()));
+        }
+        return lista;
+    }
+
+    private static long factoriza(Polinomio polinomio, Map<Polinomio, Integer> factores) {
+        if (polinomio.esCero()) {
+            return 0;
+        }
+        long contenido = polinomio.contenido();
+        Polinomio resto = polinomio.primitiva();
+        for (Fraccion raiz : resto.raicesRacionales()) {
+            Polinomio lineal = Polinomio.factorLineal(raiz);
+            factores.merge(lineal, 1, Integer::sum);
+            resto = resto.divideExacto(lineal);
+        }
+        if (resto.grado() > 3) {
+            throw new ExpresionNoSoportada("No se puede certificar la factorización de " + resto);
+        }
+        if (resto.grado() > 0) {
+            factores.merge(resto, 1, Integer::sum);
+        }
+        return contenido;
+    }
+
+    public Fraccion getCoeficiente() {
+        return coeficiente;
+    }
+
+    public List<Factor> getNumerador() {
+        return numerador;
+    }
+
+    public List<Factor> getDenominador() {
+        return denominador;
+    }
+
+    /**
+     * @param variable nombre de la variable
+     * @return la forma como la imprime latex() de SymPy
+     */
+    public String latex(String variable) {
+        if (coeficiente.esCero()) {
+            return "0";
+        }
+        String signo = coeficiente.signo() < 0 ? "- " : "";
+        long p = Math.abs(coeficiente.getNumerador());
+        long q = coeficiente.getDenominador();
+        String arriba = producto(p, numerador, variable);
+        if (q == 1 && denominador.isEmpty()) {
+            boolean sumaSola = p == 1 && numerador.size() == 1 && !numerador.get(0).esMonomio()
+                    && numerador.get(0).getExponente() == 1;
+            return signo + (sumaSola && !signo.isEmpty() ? Expresion.parentesis(arriba) : arriba);
+        }
+        return signo + "\\frac{" + arriba + "}{" + producto(q, denominador, variable) + "}";
+    }
+
+    private static String producto(long coeficiente, List<Factor> factores, String variable) {
+        if (factores.isEmpty()) {
+            return Long.toString(coeficiente);
+        }
+        if (coeficiente == 1 && factores.size() == 1) {
+            return factores.get(0).latex(variable);
+        }
+        StringBuilder sb = new StringBuilder();
+        if (coeficiente != 1) {
+            sb.append(coeficiente);
+        }
+        for (Factor factor : factores) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(factor.latexFactor(variable));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Arma la expresión con la estructura que SymPy da a factor(): coeficiente por
+     * el producto de los factores del numerador entre el de los del denominador.
+     * @return la expresión equivalente
+     */
+    public Expresion expresion() {
+        Expresion resto;
+        if (denominador.isEmpty()) {
+            resto = producto(numerador);
+        } else if (numerador.isEmpty() && denominador.size() == 1) {
+            Factor factor = denominador.get(0);
+            Expresion base = factor.esMonomio() ? new Expresion.Variable() : Expresion.dePolinomio(factor.getBase());
+            resto = new Expresion.Potencia(base, -factor.getExponente());
+        } else {
+            Expresion arriba = numerador.isEmpty() ? new Expresion.Constante(Fraccion.UNO) : producto(numerador);
+            resto = new Expresion.Cociente(arriba, producto(denominador));
+        }
+        if (resto == null) {
+            return new Expresion.Constante(coeficiente);
+        }
+        return coeficiente.equals(Fraccion.UNO) ? resto : new Expresion.ConstantePor(coeficiente, resto);
+    }
+
+    private static Expresion producto(List<Factor> factores) {
+        if (factores.isEmpty()) {
+            return null;
+        }
+        if (factores.size() == 1) {
+            return factores.get(0).expresion();
+        }
+        List<Expresion> expresiones = new ArrayList<>();
+        for (Factor factor : factores) {
+            expresiones.add(factor.expresion());
+        }
+        return new Expresion.Producto(expresiones);
+    }
+}
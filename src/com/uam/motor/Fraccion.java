@@ -0,0 +1,139 @@
+package com.uam.motor;
+
+import static com.uam.utilidades.Utilidades.maximoComunDivisor;
+
+/**
+ * Número racional exacto p/q, siempre reducido y con denominador positivo.
+ */
+public final class Fraccion implements Comparable<Fraccion> {
+
+    public static final Fraccion CERO = new Fraccion(0, 1);
+    public static final Fraccion UNO = new Fraccion(1, 1);
+
+    private final long numerador;
+    private final long denominador;
+
+    private Fraccion(long numerador, long denominador) {
+        this.numerador = numerador;
+        this.denominador = denominador;
+    }
+
+    public static Fraccion de(long entero) {
+        return new Fraccion(entero, 1);
+    }
+
+    public static Fraccion de(long numerador, long denominador) {
+        if (denominador == 0) {
+            throw new ArithmeticException("División entre cero");
+        }
+        if (denominador < 0) {
+            numerador = -numerador;
+            denominador = -denominador;
+        }
+        long divisor = Math.abs(mcd(numerador, denominador));
+        if (divisor > 1) {
+            numerador /= divisor;
+            denominador /= divisor;
+        }
+        return new Fraccion(numerador, denominador);
+    }
+
+    static long mcd(long a, long b) {
+        if (Math.abs(a) <= Integer.MAX_VALUE && Math.abs(b) <= Integer.MAX_VALUE) {
+            return maximoComunDivisor((int) a, (int) b);
+        }
+        return b == 0 ? a : mcd(b, a % b);
+    }
+
+    public Fraccion suma(Fraccion otra) {
+        return de(Math.addExact(Math.multiplyExact(numerador, otra.denominador),
+                Math.multiplyExact(otra.numerador, denominador)), Math.multiplyExact(denominador, otra.denominador));
+    }
+
+    public Fraccion resta(Fraccion otra) {
+        return suma(otra.negativo());
+    }
+
+    public Fraccion multiplica(Fraccion otra) {
+        return de(Math.multiplyExact(numerador, otra.numerador), Math.multiplyExact(denominador, otra.denominador));
+    }
+
+    public Fraccion divide(Fraccion otra) {
+        return de(Math.multiplyExact(numerador, otra.denominador), Math.multiplyExact(denominador, otra.numerador));
+    }
+
+    public Fraccion negativo() {
+        return new Fraccion(-numerador, denominador);
+    }
+
+    public boolean esEntero() {
+        return denominador == 1;
+    }
+
+    public boolean esCero() {
+        return numerador == 0;
+    }
+
+    public int signo() {
+        return Long.signum(numerador);
+    }
+
+    public long getNumerador() {
+        return numerador;
+    }
+
+    public long getDenominador() {
+        return denominador;
+    }
+
+    /**
+     * Redondea al entero más cercano; los empates van al par, como round() de Python 3.
+     * @return entero más cercano
+     */
+    public long redondea() {
+        long piso = Math.floorDiv(numerador, denominador);
+        Fraccion resto = resta(de(piso));
+        int comparacion = resto.compareTo(de(1, 2));
+        if (comparacion > 0 || (comparacion == 0 && piso % 2 != 0)) {
+            return piso + 1;
+        }
+        return piso;
+    }
+
+    /**
+     * @return representación como la imprime str() de SymPy: "p" o "p/q"
+     */
+    @Override
+    public String toString() {
+        return denominador == 1 ? Long.toString(numerador) : numerador + "/" + denominador;
+    }
+
+    /**
+     * @return representación LaTeX como la imprime latex() de SymPy
+     */
+    public String latex() {
+        if (denominador == 1) {
+            return Long.toString(numerador);
+        }
+        return (numerador < 0 ? "- " : "") + "\\frac{" + Math.abs(numerador) + "}{" + denominador + "}";
+    }
+
+    @Override
+    public int compareTo(Fraccion otra) {
+        return Long.compare(Math.multiplyExact(numerador, otra.denominador), Math.multiplyExact(otra.numerador, denominador));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Fraccion)) {
+            return false;
+        }
+        Fraccion otra = (Fraccion) o;
+        return numerador == otra.numerador && denominador == otra.denominador;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(numerador) * 31 + Long.hashCode(denominador);
+    }
+}
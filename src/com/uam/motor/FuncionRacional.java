@@ -0,0 +1,93 @@
+package com.uam.motor;
+
+/**
+ * Cociente de dos polinomios con coeficientes enteros. No se reduce automáticamente;
+ * la simplificación que se muestra al alumno la hace {@link FormaFactorizada}.
+ */
+public final class FuncionRacional {
+
+    private final Polinomio numerador;
+    private final Polinomio denominador;
+
+    public FuncionRacional(Polinomio numerador, Polinomio denominador) {
+        if (denominador.esCero()) {
+            throw new ArithmeticException("Denominador cero");
+        }
+        this.numerador = numerador;
+        this.denominador = denominador;
+    }
+
+    public static FuncionRacional de(Polinomio polinomio) {
+        return new FuncionRacional(polinomio, Polinomio.UNO);
+    }
+
+    public Polinomio getNumerador() {
+        return numerador;
+    }
+
+    public Polinomio getDenominador() {
+        return denominador;
+    }
+
+    public FuncionRacional suma(FuncionRacional otra) {
+        if (denominador.equals(otra.denominador)) {
+            return new FuncionRacional(numerador.suma(otra.numerador), denominador);
+        }
+        return new FuncionRacional(numerador.multiplica(otra.denominador).suma(otra.numerador.multiplica(denominador)),
+                denominador.multiplica(otra.denominador));
+    }
+
+    public FuncionRacional resta(FuncionRacional otra) {
+        return suma(otra.escala(-1));
+    }
+
+    public FuncionRacional multiplica(FuncionRacional otra) {
+        return new FuncionRacional(numerador.multiplica(otra.numerador), denominador.multiplica(otra.denominador));
+    }
+
+    public FuncionRacional divide(FuncionRacional otra) {
+        return new FuncionRacional(numerador.multiplica(otra.denominador), denominador.multiplica(otra.numerador));
+    }
+
+    public FuncionRacional escala(long c) {
+        return new FuncionRacional(numerador.escala(c), denominador);
+    }
+
+    public FuncionRacional potencia(int n) {
+        if (n < 0) {
+            return new FuncionRacional(denominador.potencia(-n), numerador.potencia(-n));
+        }
+        return new FuncionRacional(numerador.potencia(n), denominador.potencia(n));
+    }
+
+    /**
+     * Regla del cociente sobre los polinomios.
+     * @return la derivada, con denominador al cuadrado
+     */
+    public FuncionRacional derivada() {
+        return new FuncionRacional(denominador.multiplica(numerador.derivada())
+                .resta(numerador.multiplica(denominador.derivada())), denominador.multiplica(denominador));
+    }
+
+    public Fraccion evalua(Fraccion x) {
+        return numerador.evalua(x).divide(denominador.evalua(x));
+    }
+
+    /**
+     * @return el polinomio equivalente, o null si no es un polinomio con coeficientes enteros
+     */
+    public Polinomio polinomio() {
+        return denominador.esConstante() ? numerador.divideExacto(denominador) : null;
+    }
+
+    public boolean esPolinomio() {
+        return polinomio() != null;
+    }
+
+    /**
+     * @return true si ambas funciones son iguales como funciones racionales
+     */
+    public boolean equivalente(FuncionRacional otra) {
+        return numerador.multiplica(otra.denominador).equals(otra.numerador.multiplica(denominador));
+    }
+}
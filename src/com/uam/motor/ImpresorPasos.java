@@ -0,0 +1,454 @@
+package com.uam.motor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Traducción a Java de DiffPrinter y HTMLPrinter del preludio DERIVADOR (diffsteps de SymPy Gamma)
+ * para las reglas que usan los reactivos: constante, potencia, suma, constante por función,
+ * producto, cociente y cadena. Produce el mismo HTML: listas &lt;ol&gt;/&lt;li&gt; con la misma
+ * sangría, los mismos textos en español y MathJax en &lt;script type="math/tex"&gt;, ya pasado
+ * por acomodaNotacion.
+ */
+public final class ImpresorPasos {
+
+    /**
+     * Derivada ya impresa de un paso: su valor y su LaTeX. Si es un cociente, se guardan sus
+     * partes para que una constante que la multiplique se pueda plegar como lo hace SymPy.
+     */
+    private static final class Resultado {
+        final FuncionRacional valor;
+        final String latex;
+        final Fraccionaria forma;
+
+        Resultado(FuncionRacional valor, String latex) {
+            this(valor, latex, null);
+        }
+
+        Resultado(FuncionRacional valor, String latex, Fraccionaria forma) {
+            this.valor = valor;
+            this.latex = latex;
+            this.forma = forma;
+        }
+    }
+
+    /**
+     * Coeficiente por un numerador (polinomio expandido o producto sin expandir) entre un denominador.
+     */
+    private static final class Fraccionaria {
+        final Fraccion coeficiente;
+        final Polinomio numerador;
+        final String numeradorLatex;
+        final String denominador;
+        final String denominadorFactor;
+
+        Fraccionaria(Fraccion coeficiente, Polinomio numerador, String numeradorLatex,
+                     String denominador, String denominadorFactor) {
+            this.coeficiente = coeficiente;
+            this.numerador = numerador;
+            this.numeradorLatex = numeradorLatex;
+            this.denominador = denominador;
+            this.denominadorFactor = denominadorFactor;
+        }
+
+        Fraccionaria escala(Fraccion c) {
+            return new Fraccionaria(coeficiente.multiplica(c), numerador, numeradorLatex, denominador, denominadorFactor);
+        }
+
+        String latex(String variable) {
+            Fraccion c = coeficiente;
+            String arriba;
+            if (numerador != null && (numerador.esMonomio() || numerador.esCero())) {
+                c = c.multiplica(Fraccion.de(numerador.principal()));
+                if (c.esCero()) {
+                    return "0";
+                }
+                long p = Math.abs(c.getNumerador());
+                arriba = Polinomio.monomio(p, Math.max(numerador.grado(), 0)).latex(variable);
+            } else {
+                String n = numerador != null ? numerador.latex(variable) : numeradorLatex;
+                long p = Math.abs(c.getNumerador());
+                arriba = p == 1 ? n : p + " " + Expresion.parentesis(n);
+            }
+            long q = c.getDenominador();
+            String abajo = q == 1 ? denominador : q + " " + denominadorFactor;
+            return (c.signo() < 0 ? "- " : "") + "\\frac{" + arriba + "}{" + abajo + "}";
+        }
+    }
+
+    private final String variable;
+    private final List<String> lineas = new ArrayList<>();
+    private int nivel;
+
+    private ImpresorPasos(String variable) {
+        this.variable = variable;
+        lineas.add("<ol>");
+    }
+
+    /**
+     * Equivalente de acomodaNotacion(print_html_steps(expresion, variable)).
+     *
+     * @param expresion función a derivar
+     * @param variable variable independiente
+     * @return derivada paso a paso en HTML
+     * @throws ExpresionNoSoportada si algún paso requiere una regla que no se traduce
+     */
+    public static String pasos(Expresion expresion, String variable) {
+        ImpresorPasos impresor = new ImpresorPasos(variable);
+        return acomodaNotacion(impresor.finaliza(impresor.imprime(expresion)));
+    }
+
+    /**
+     * Mismos reemplazos que la función acomodaNotacion de Python.
+     * @param expresion HTML con la solución
+     * @return HTML con paréntesis explícitos en la notación de las derivadas
+     */
+    static String acomodaNotacion(String expresion) {
+        expresion = expresion.replace("\\frac{d}{d x} f{\\left(x \\right)} g{\\left(x \\right)}",
+                "\\frac{d}{d x}( f{\\left(x \\right)} g{\\left(x \\right)})");
+        expresion = expresion.replace("\\frac{d}{d x} \\frac{f{\\left(x \\right)}}{g{\\left(x \\right)}}",
+                "\\frac{d}{d x}( \\frac{f{\\left(x \\right)}}{g{\\left(x \\right)}})");
+        expresion = expresion.replace(
+                "\\frac{- f{\\left(x \\right)} \\frac{d}{d x} g{\\left(x \\right)} + g{\\left(x \\right)} \\frac{d}{d x} f{\\left(x \\right)}}{g^{2}{\\left(x \\right)}}",
+                "\\frac{- f{\\left(x \\right)} \\frac{d}{d x}( g{\\left(x \\right)}) + g{\\left(x \\right)} \\frac{d}{d x}( f{\\left(x \\right))}}{g^{2}{\\left(x \\right)}}");
+        expresion = expresion.replace("\\frac{d}{d x} f{\\left(x \\right)}",
+                "\\frac{d}{d x}( f{\\left(x \\right)})");
+        expresion = expresion.replace("\\frac{d}{d x} g{\\left(x \\right)}",
+                "\\frac{d}{d x}( g{\\left(x \\right)})");
+        return expresion;
+    }
+
+    private Resultado imprime(Expresion expresion) {
+        if (expresion instanceof Expresion.Constante) {
+            return imprimeConstante((Expresion.Constante) expresion);
+        }
+        if (expresion instanceof Expresion.Variable) {
+            return imprimePotencia(1);
+        }
+        if (expresion instanceof Expresion.Potencia) {
+            Expresion.Potencia potencia = (Expresion.Potencia) expresion;
+            if (potencia.getBase() instanceof Expresion.Variable) {
+                return imprimePotencia(potencia.getExponente());
+            }
+            return imprimeCadena(potencia);
+        }
+        if (expresion instanceof Expresion.Suma) {
+            return imprimeSuma((Expresion.Suma) expresion);
+        }
+        if (expresion instanceof Expresion.ConstantePor) {
+            return imprimeConstantePor((Expresion.ConstantePor) expresion);
+        }
+        if (expresion instanceof Expresion.Cociente) {
+            return imprimeCociente((Expresion.Cociente) expresion);
+        }
+        if (expresion instanceof Expresion.Producto) {
+            return imprimeProducto((Expresion.Producto) expresion);
+        }
+        throw new ExpresionNoSoportada("Regla no soportada para " + expresion.latex(variable));
+    }
+
+    private Resultado imprimeConstante(Expresion.Constante constante) {
+        abrePaso();
+        agrega("La derivada de la constante " + enLinea(constante.latex(variable)) + " es cero.");
+        cierraPaso();
+        return new Resultado(FuncionRacional.de(Polinomio.CERO), "0");
+    }
+
+    private Resultado imprimePotencia(int exponente) {
+        Resultado resultado = new Resultado(potenciaX(exponente - 1).escala(exponente),
+                Expresion.latexMonomio(Fraccion.de(exponente), variable, false, exponente - 1));
+        imprimeReglaPotencia(variable, exponente);
+        return resultado;
+    }
+
+    private void imprimeReglaPotencia(String base, int exponente) {
+        abrePaso();
+        agrega("Aplicando la regla de potencia a: " + enLinea(Expresion.latexPotencia(base, false, exponente))
+                + " se obtiene " + enLinea(Expresion.latexMonomio(Fraccion.de(exponente), base, false, exponente - 1)));
+        cierraPaso();
+    }
+
+    private static FuncionRacional potenciaX(int exponente) {
+        return exponente >= 0 ? FuncionRacional.de(Polinomio.monomio(1, exponente))
+                : new FuncionRacional(Polinomio.UNO, Polinomio.monomio(1, -exponente));
+    }
+
+    private Resultado imprimeSuma(Expresion.Suma suma) {
+        abrePaso();
+        agrega("Diferenciando " + enLinea(suma.latex(variable)) + " término por término:");
+        abreNivel();
+        FuncionRacional total = FuncionRacional.de(Polinomio.CERO);
+        for (Expresion termino : suma.getTerminos()) {
+            total = total.suma(imprime(termino).valor);
+        }
+        cierraNivel();
+        Resultado resultado = new Resultado(total, latex(total));
+        agrega("El resultado es: " + enLinea(resultado.latex));
+        cierraPaso();
+        return resultado;
+    }
+
+    private Resultado imprimeConstantePor(Expresion.ConstantePor producto) {
+        Fraccion c = producto.getConstante();
+        abrePaso();
+        agrega("La derivada de N veces una función es N veces la derivada de la función");
+        abreNivel();
+        Resultado derivada = imprime(producto.getFuncion());
+        cierraNivel();
+        FuncionRacional valor = new FuncionRacional(derivada.valor.getNumerador().escala(c.getNumerador()),
+                derivada.valor.getDenominador().escala(c.getDenominador()));
+        Resultado resultado;
+        if (derivada.forma != null) {
+            Fraccionaria forma = derivada.forma.escala(c);
+            resultado = new Resultado(valor, forma.latex(variable), forma);
+        } else {
+            resultado = new Resultado(valor, latex(valor));
+        }
+        agrega("Así, el resultado es: " + enLinea(resultado.latex));
+        cierraPaso();
+        return resultado;
+    }
+
+    private Resultado imprimeCociente(Expresion.Cociente cociente) {
+        Polinomio f = polinomio(cociente.getNumerador());
+        Polinomio g = polinomio(cociente.getDenominador());
+        String d = "\\frac{d}{d " + variable + "}";
+        String ff = "f{\\left(" + variable + " \\right)}";
+        String gg = "g{\\left(" + variable + " \\right)}";
+        abrePaso();
+        agrega("Aplicando la regla del cociente que es:");
+        agrega(desplegado(d + " \\frac{" + ff + "}{" + gg + "} = \\frac{- " + ff + " " + d + " " + gg + " + "
+                + gg + " " + d + " " + ff + "}{g^{2}{\\left(" + variable + " \\right)}}"));
+        agrega(enLinea(ff + " = " + cociente.getNumerador().latex(variable)) + " y "
+                + enLinea(gg + " = " + cociente.getDenominador().latex(variable)) + ".");
+        agrega("Para hallar " + enLinea(d + " " + ff) + ":");
+        abreNivel();
+        Polinomio fp = imprime(cociente.getNumerador()).valor.polinomio();
+        cierraNivel();
+        agrega("Para hallar " + enLinea(d + " " + gg) + ":");
+        abreNivel();
+        Polinomio gp = imprime(cociente.getDenominador()).valor.polinomio();
+        cierraNivel();
+
+        // (g f' - f g') / g^2, con los productos que SymPy deja sin expandir
+        Polinomio expandido = Polinomio.CERO;
+        List<String> productos = new ArrayList<>();
+        String primero = productoSinExpandir(g, fp);
+        if (primero == null) {
+            expandido = expandido.suma(g.multiplica(fp));
+        } else {
+            productos.add(primero);
+        }
+        String segundo = productoSinExpandir(f, gp);
+        if (segundo == null) {
+            expandido = expandido.resta(f.multiplica(gp));
+        } else {
+            productos.add(segundo.startsWith("- ") ? segundo.substring(2) : "- " + segundo);
+        }
+        String numerador = null;
+        if (!productos.isEmpty()) {
+            StringBuilder sb = new StringBuilder(expandido.esCero() ? "" : expandido.latex(variable));
+            for (String termino : productos) {
+                if (sb.length() == 0) {
+                    sb.append(termino);
+                } else {
+                    sb.append(termino.startsWith("- ") ? " " + termino : " + " + termino);
+                }
+            }
+            numerador = sb.toString();
+        }
+        String cuadrado = cuadrado(cociente.getDenominador(), g);
+        Fraccionaria forma = new Fraccionaria(Fraccion.UNO, numerador == null ? expandido : null, numerador,
+                cuadrado, cuadrado);
+        FuncionRacional valor = new FuncionRacional(g.multiplica(fp).resta(f.multiplica(gp)), g.multiplica(g));
+        Resultado resultado = new Resultado(valor, forma.latex(variable), forma);
+        agrega("Sutituyendo en la regla del cociente:");
+        agrega(enLinea(resultado.latex));
+        cierraPaso();
+        return resultado;
+    }
+
+    /**
+     * Producto como lo deja SymPy: se expande si un factor es constante o ambos son monomios;
+     * si no, queda como coeficiente por factores.
+     * @return el LaTeX del producto, con "- " si es negativo, o null si SymPy lo expande
+     */
+    private String productoSinExpandir(Polinomio a, Polinomio b) {
+        if (a.esConstante() || b.esConstante() || (a.esMonomio() && b.esMonomio())) {
+            return null;
+        }
+        if (b.esMonomio()) {
+            Polinomio t = a;
+            a = b;
+            b = t;
+        }
+        StringBuilder sb = new StringBuilder();
+        if (a.esMonomio()) {
+            long c = a.principal();
+            sb.append(c < 0 ? "- " : "");
+            if (Math.abs(c) != 1) {
+                sb.append(Math.abs(c)).append(' ');
+            }
+            sb.append(Polinomio.monomio(1, a.grado()).latex(variable));
+        } else {
+            sb.append(Expresion.parentesis(a.latex(variable)));
+        }
+        return sb.append(' ').append(Expresion.parentesis(b.latex(variable))).toString();
+    }
+
+    private String cuadrado(Expresion denominador, Polinomio g) {
+        if (g.esMonomio()) {
+            return g.multiplica(g).latex(variable);
+        }
+        if (denominador instanceof Expresion.Potencia) {
+            Expresion.Potencia potencia = (Expresion.Potencia) denominador;
+            return Expresion.latexPotencia(potencia.getBase().latex(variable), true, 2 * potencia.getExponente());
+        }
+        return Expresion.latexPotencia(denominador.latex(variable), true, 2);
+    }
+
+    private Resultado imprimeCadena(Expresion.Potencia potencia) {
+        Expresion interior = potencia.getBase();
+        Polinomio b = polinomio(interior);
+        int n = potencia.getExponente();
+        abrePaso();
+        agrega("Sea " + enLinea("u = " + interior.latex(variable)) + ".");
+        imprimeReglaPotencia("u", n);
+        cierraPaso();
+        abrePaso();
+        agrega("Entonces, aplicando la regla de la cadena. Multipicamos por "
+                + enLinea(interior.latexDerivada(variable)) + ":");
+        abreNivel();
+        Polinomio bp = imprime(interior).valor.polinomio();
+        cierraNivel();
+        if (bp == null || !bp.esConstante()) {
+            throw new ExpresionNoSoportada("Regla de la cadena con interior no lineal: " + interior.latex(variable));
+        }
+        long k = Math.multiplyExact(n, bp.coeficiente(0));
+        FuncionRacional valor = FuncionRacional.de(b).potencia(n - 1).escala(k);
+        String base = interior.latex(variable);
+        Resultado resultado;
+        if (n - 1 == 1) {
+            resultado = new Resultado(valor, b.escala(k).latex(variable));
+        } else if (n - 1 < 0) {
+            String denominador = Expresion.latexPotencia(base, true, 1 - n);
+            Fraccionaria forma = new Fraccionaria(Fraccion.de(k), Polinomio.UNO, null, denominador, denominador);
+            resultado = new Resultado(valor, forma.latex(variable), forma);
+        } else {
+            resultado = new Resultado(valor, Expresion.latexMonomio(Fraccion.de(k), base, true, n - 1));
+        }
+        agrega("El resultado de aplicar la regla de la cadena:");
+        agrega(desplegado(resultado.latex));
+        cierraPaso();
+        return resultado;
+    }
+
+    private Resultado imprimeProducto(Expresion.Producto producto) {
+        List<Expresion> factores = producto.getFactores();
+        String d = "\\frac{d}{d " + variable + "}";
+        List<String> nombres = new ArrayList<>();
+        for (int i = 0; i < factores.size(); i++) {
+            String nombre = factores.size() == 2 ? "fg".substring(i, i + 1)
+                    : factores.size() == 3 ? "fgh".substring(i, i + 1) : "f_{" + i + "}";
+            nombres.add(nombre + "{\\left(" + variable + " \\right)}");
+        }
+        List<String> forma = new ArrayList<>();
+        for (int indice = factores.size() - 1; indice >= 0; indice--) {
+            StringBuilder termino = new StringBuilder();
+            for (int i = 0; i < factores.size(); i++) {
+                if (i != indice) {
+                    termino.append(nombres.get(i)).append(' ');
+                }
+            }
+            forma.add(termino.append(d).append(' ').append(nombres.get(indice)).toString());
+        }
+        abrePaso();
+        agrega("Aplicando la regla del producto:");
+        agrega(desplegado(d + " " + String.join(" ", nombres) + " = " + String.join(" + ", forma)));
+        for (int i = 0; i < factores.size(); i++) {
+            agrega(enLinea(nombres.get(i) + " = " + factores.get(i).latex(variable)) + "; para hallar "
+                    + enLinea(d + " " + nombres.get(i)) + ":");
+            abreNivel();
+            imprime(factores.get(i));
+            cierraNivel();
+        }
+        FuncionRacional valor = producto.valor().derivada();
+        Resultado resultado = new Resultado(valor, latex(valor));
+        agrega("El resultado es: " + enLinea(resultado.latex));
+        cierraPaso();
+        return resultado;
+    }
+
+    /**
+     * Igual que HTMLPrinter.finalize: simplifica con factor() y agrega la respuesta.
+     */
+    private String finaliza(Resultado raiz) {
+        String respuesta = raiz.latex;
+        if (!raiz.valor.getNumerador().esCero()) {
+            String simplificada = FormaFactorizada.de(raiz.valor).latex(variable);
+            if (!simplificada.equals(respuesta)) {
+                respuesta = simplificada;
+                abrePaso();
+                agrega("Simplificando:");
+                agrega(desplegado(simplificada));
+                cierraPaso();
+            }
+        }
+        lineas.add("</ol><br/>");
+        lineas.add("<hr/>");
+        nivel = 0;
+        agrega("La respuesta es:");
+        agrega(desplegado(respuesta));
+        return String.join("\n", lineas);
+    }
+
+    private Polinomio polinomio(Expresion expresion) {
+        Polinomio polinomio = expresion.valor().polinomio();
+        if (polinomio == null) {
+            throw new ExpresionNoSoportada("Se esperaba un polinomio: " + expresion.latex(variable));
+        }
+        return polinomio;
+    }
+
+    private String latex(FuncionRacional valor) {
+        Polinomio polinomio = valor.polinomio();
+        if (polinomio != null) {
+            return polinomio.latex(variable);
+        }
+        return "\\frac{" + valor.getNumerador().latex(variable) + "}{" + valor.getDenominador().latex(variable) + "}";
+    }
+
+    private static String enLinea(String latex) {
+        return "<script type=\"math/tex; mode=inline\">" + latex + "</script>";
+    }
+
+    private static String desplegado(String latex) {
+        return "<script type=\"math/tex; mode=display\">" + latex + "</script>";
+    }
+
+    private static String sangria(int nivel) {
+        return new String(new char[4 * nivel]).replace('\0', ' ');
+    }
+
+    private void agrega(String texto) {
+        lineas.add(sangria(nivel + 1) + "<p>" + texto + "</p>");
+    }
+
+    private void abrePaso() {
+        lineas.add(sangria(nivel) + "<li>");
+    }
+
+    private void cierraPaso() {
+        lineas.add(sangria(nivel) + "</li><br>");
+    }
+
+    private void abreNivel() {
+        nivel++;
+        lineas.add(sangria(nivel) + "<ol>");
+    }
+
+    private void cierraNivel() {
+        lineas.add(sangria(nivel) + "</ol><br/>");
+        nivel--;
+    }
+}
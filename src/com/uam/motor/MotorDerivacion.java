@@ -0,0 +1,185 @@
+package com.uam.motor;
+
+import com.uam.auxiliar.SolicitudSimbolica;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Motor de derivación paso a paso en Java para las familias de los reactivos: polinomios
+ * y cocientes de polinomios con coeficientes enteros. Reproduce en proceso la salida de los
+ * scriptlets SOLVER, DIFF_STEP (encadenado para las derivadas sucesivas), SOLVER_RECTA_TANGENTE_GRAFICA y
+ * SOLVER_TANGENTE_HORIZONTAL_GRAFICA_JSX, sin lanzar Python.<p>
+ * Lo que no cubre (otros símbolos, raíces irracionales, factorizaciones que no puede
+ * certificar, coeficientes que desbordan un long) lanza {@link ExpresionNoSoportada}
+ * para que se resuelva con SymPy.
+ */
+public final class MotorDerivacion {
+
+    private MotorDerivacion() {
+    }
+
+    /**
+     * @param solicitud problema a resolver
+     * @return la solución paso a paso en HTML
+     * @throws ExpresionNoSoportada si el problema queda fuera de lo que cubre el motor
+     */
+    public static String resuelve(SolicitudSimbolica solicitud) {
+        try {
+            String variable = solicitud.getVariable();
+            Expresion expresion = ParserLatex.parsea(solicitud.getExpresion(), variable);
+            switch (solicitud.getTipo()) {
+                case SEGUNDA_DERIVADA:
+                case DERIVADA_SUCESIVA:
+                    return derivadas(expresion, solicitud.getOrden(), variable);
+                case RECTA_TANGENTE:
+                    return rectaTangente(expresion, solicitud.getX0(), variable);
+                case TANGENTES_HORIZONTALES:
+                    return tangentesHorizontales(expresion, variable);
+                default:
+                    return derivada(expresion, variable);
+            }
+        } catch (ArithmeticException e) {
+            throw new ExpresionNoSoportada("Desbordamiento resolviendo " + solicitud + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * SOLVER: el problema y la derivada paso a paso.
+     */
+    private static String derivada(Expresion expresion, String variable) {
+        return "Obtener: $$" + expresion.latexDerivada(variable) + "$$<br><br>"
+                + ImpresorPasos.pasos(expresion, variable);
+    }
+
+    /**
+     * SOLVER seguido de un DIFF_STEP por cada orden después del primero: cada paso deriva
+     * la forma factorizada de la derivada anterior.
+     */
+    private static String derivadas(Expresion expresion, int orden, String variable) {
+        StringBuilder salida = new StringBuilder(derivada(expresion, variable));
+        for (int i = 1; i < orden; i++) {
+            expresion = FormaFactorizada.de(expresion.valor().derivada()).expresion();
+            salida.append("<br/>Siguiente derivada<br/>Obtener: $$").append(expresion.latexDerivada(variable))
+                    .append("$$<br><br>").append(ImpresorPasos.pasos(expresion, variable));
+        }
+        return salida.toString();
+    }
+
+    private static Polinomio polinomioEnX(Expresion expresion, String variable) {
+        Polinomio polinomio = expresion.valor().polinomio();
+        if (polinomio == null || !"x".equals(variable)) {
+            throw new ExpresionNoSoportada("Las gráficas sólo se arman para polinomios en x");
+        }
+        return polinomio;
+    }
+
+    /**
+     * SOLVER_RECTA_TANGENTE_GRAFICA.
+     */
+    private static String rectaTangente(Expresion expresion, Integer x0, String variable) {
+        if (x0 == null) {
+            throw new ExpresionNoSoportada("La recta tangente requiere x0");
+        }
+        Polinomio f = polinomioEnX(expresion, variable);
+        Fraccion x = Fraccion.de(x0);
+        Fraccion y0 = f.evalua(x);
+        Fraccion m = f.derivada().evalua(x);
+        Fraccion b = y0.resta(m.multiplica(x));
+        String derivada = expresion.latexDerivada("x");
+        StringBuilder salida = new StringBuilder();
+        salida.append("Obtener: $$").append(derivada).append("$$<br><br>");
+        salida.append(ImpresorPasos.pasos(expresion, variable));
+        salida.append("\n Evaluamos en $$x_{0}=").append(x0).append(" $$\n<br/><br/>");
+        salida.append(" Sustituyendo en $$f(x)$$ el valor de $$x_{0}$$<br/><center>$$f(x_{0})=")
+                .append(y0.latex()).append("$$</center> \n<br/><br/>");
+        salida.append(("Sustituyendo en $$f'(x)$$ el valor de $$x_{0}$$<br/><center>$$f'(x_{0})=\\left. " + derivada
+                + " \\right|_{\\substack{ x=" + x0 + " }}=" + m.latex() + "$$</center> \n<br/><br/>")
+                .replace("+-", "-").replace("--", "+"));
+        salida.append("Sustituyendo en la ecuación de la recta $$y-f(x_{0})=f'(x_{0})(x-x_{0})$$ obtenemos:\n"
+                + "<br/><center>$$y-(").append(y0.latex()).append(")=(").append(m.latex()).append(")(x-(")
+                .append(x0).append("))$$ </center>\n<br/>");
+        salida.append(("Simplificando:\n<br/><center>$$y=" + m.latex() + "x+" + b.latex()
+                + "$$</center><br/><br/>").replace("+-", "-"));
+        salida.append("\n<jsxgraph width=\"600\" height=\"500\">\n");
+        salida.append("function f(x) { return ").append(expresion.str("x")).append("; }\n ");
+        salida.append("function t(x) { return ").append(m).append("*x+(").append(b).append("); }\n");
+        salida.append("var brd = JXG.JSXGraph.initBoard(BOARDID, {boundingbox:[").append(x0 - 5).append(',')
+                .append(y0.suma(Fraccion.de(5))).append(',').append(x0 + 5).append(',')
+                .append(y0.resta(Fraccion.de(5))).append("], axis:true});\n");
+        salida.append("var p = brd.create(\"point\", [").append(x0).append(',').append(y0)
+                .append("],{name:'P0',fixed:true});\n");
+        salida.append("var l = brd.create(\"functiongraph\", t, {strokecolor:'green'});\n");
+        salida.append("var c = brd.create(\"functiongraph\", f, {strokewidth:2});\n");
+        salida.append("</jsxgraph>\n");
+        return salida.toString();
+    }
+
+    /**
+     * SOLVER_TANGENTE_HORIZONTAL_GRAFICA_JSX. Sólo cuando todas las raíces de la derivada son racionales.
+     */
+    private static String tangentesHorizontales(Expresion expresion, String variable) {
+        Polinomio f = polinomioEnX(expresion, variable);
+        Polinomio derivada = f.derivada();
+        List<Fraccion> todas = derivada.raicesRacionales();
+        if (derivada.grado() < 1 || todas.size() != derivada.grado()) {
+            throw new ExpresionNoSoportada("La derivada no tiene todas sus raíces racionales: " + derivada);
+        }
+        List<Fraccion> raices = new ArrayList<>();
+        for (Fraccion raiz : todas) {
+            if (!raices.contains(raiz)) {
+                raices.add(raiz);
+            }
+        }
+        Fraccion xmin = Fraccion.de(100), xmax = Fraccion.de(-100);
+        Fraccion ymin = Fraccion.de(100), ymax = Fraccion.de(-100);
+        StringBuilder solucion = new StringBuilder("Resolviendo $$" + derivada.latex("x") + "=0$$ obtenemos las raices<br/>");
+        for (int n = 1; n <= raices.size(); n++) {
+            solucion.append("$$x_").append(n).append('=').append(raices.get(n - 1).latex()).append("$$ <br/>");
+        }
+        solucion.append("Sustituyendo en $$").append(expresion.latex("x")).append("$$, se obtienen los puntos:<br/>");
+        List<Fraccion> ordenadas = new ArrayList<>();
+        for (int n = 1; n <= raices.size(); n++) {
+            Fraccion x0 = raices.get(n - 1);
+            Fraccion y = f.evalua(x0);
+            ordenadas.add(y);
+            if (x0.compareTo(xmax) > 0) {
+                xmax = x0;
+            }
+            if (x0.compareTo(xmin) < 0) {
+                xmin = x0;
+            }
+            if (y.compareTo(ymax) > 0) {
+                ymax = y;
+            }
+            if (y.compareTo(ymin) < 0) {
+                ymin = y;
+            }
+            solucion.append("$$P_").append(n).append('(').append(x0.latex()).append(',').append(y.latex())
+                    .append(")$$<br/>");
+        }
+        Fraccion intervalo = xmax.resta(xmin).compareTo(ymax.resta(ymin)) < 0 ? ymax.resta(ymin) : xmax.resta(xmin);
+        Fraccion mitad = intervalo.multiplica(Fraccion.de(6, 10));
+        Fraccion radio = Fraccion.de(mitad.redondea() + 1);
+        Fraccion centrox = xmax.suma(xmin).divide(Fraccion.de(2));
+        Fraccion centroy = ymax.suma(ymin).divide(Fraccion.de(2));
+        StringBuilder salida = new StringBuilder();
+        salida.append("Obtener: $$").append(expresion.latexDerivada(variable)).append("$$<br><br>");
+        salida.append(ImpresorPasos.pasos(expresion, variable));
+        salida.append(solucion);
+        salida.append("\n<jsxgraph width=\"600\" height=\"500\">\n");
+        salida.append("function f(x) { return ").append(expresion.str("x")).append("; }\n ");
+        salida.append("var brd = JXG.JSXGraph.initBoard(BOARDID, {boundingbox:[").append(centrox.resta(radio))
+                .append(',').append(centroy.suma(radio)).append(',').append(centrox.suma(radio)).append(',')
+                .append(centroy.resta(radio)).append("], axis:true});\n");
+        for (int i = 0; i < raices.size(); i++) {
+            salida.append("var p = brd.create(\"point\", [").append(raices.get(i)).append(',').append(ordenadas.get(i))
+                    .append("],{name:'P").append(i + 1).append("',fixed:true});\n");
+            salida.append("var l = brd.create(\"functiongraph\",[function(x){ return ").append(ordenadas.get(i))
+                    .append(";}]);\n");
+        }
+        salida.append("var c = brd.create(\"functiongraph\", f, {strokewidth:2});\n");
+        salida.append("</jsxgraph>\n");
+        return salida.toString();
+    }
+}
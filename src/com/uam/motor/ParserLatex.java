@@ -0,0 +1,210 @@
+package com.uam.motor;
+
+/**
+ * Lee el subconjunto de LaTeX que producen los generadores: sumas de monomios con
+ * coeficientes enteros, potencias enteras, productos implícitos, paréntesis y \frac.
+ * Regresa la expresión ya evaluada como la deja SymPy: un polinomio ordenado o un
+ * cociente de dos polinomios. Cualquier otra cosa lanza {@link ExpresionNoSoportada}
+ * para que la resuelva SymPy.
+ */
+public final class ParserLatex {
+
+    /**
+     * Resultado parcial: su valor y, si es un solo \frac, sus dos polinomios.
+     */
+    private static final class Nodo {
+        final FuncionRacional valor;
+        final Polinomio numerador;
+        final Polinomio denominador;
+
+        Nodo(FuncionRacional valor) {
+            this(valor, null, null);
+        }
+
+        Nodo(FuncionRacional valor, Polinomio numerador, Polinomio denominador) {
+            this.valor = valor;
+            this.numerador = numerador;
+            this.denominador = denominador;
+        }
+
+        boolean esFraccion() {
+            return numerador != null;
+        }
+    }
+
+    private final String texto;
+    private final String variable;
+    private int posicion;
+
+    private ParserLatex(String texto, String variable) {
+        this.texto = texto;
+        this.variable = variable;
+    }
+
+    /**
+     * @param latex expresión en LaTeX
+     * @param variable variable independiente
+     * @return la expresión evaluada
+     * @throws ExpresionNoSoportada si la expresión está fuera del subconjunto que se lee
+     */
+    public static Expresion parsea(String latex, String variable) {
+        ParserLatex parser = new ParserLatex(latex, variable);
+        Nodo nodo = parser.expresion();
+        parser.saltaEspacios();
+        if (parser.posicion < latex.length()) {
+            throw parser.error("Se esperaba el fin de la expresión");
+        }
+        if (nodo.esFraccion() && !nodo.denominador.esConstante()) {
+            return new Expresion.Cociente(Expresion.dePolinomio(nodo.numerador), Expresion.dePolinomio(nodo.denominador));
+        }
+        Polinomio polinomio = nodo.valor.polinomio();
+        if (polinomio == null) {
+            throw new ExpresionNoSoportada("Sólo se leen polinomios y cocientes de polinomios: " + latex);
+        }
+        return Expresion.dePolinomio(polinomio);
+    }
+
+    private Nodo expresion() {
+        saltaEspacios();
+        int signo = 1;
+        if (consume("-")) {
+            signo = -1;
+        } else {
+            consume("+");
+        }
+        Nodo primero = termino();
+        FuncionRacional suma = primero.valor.escala(signo);
+        boolean unico = true;
+        while (true) {
+            saltaEspacios();
+            if (consume("+")) {
+                suma = suma.suma(termino().valor);
+            } else if (consume("-")) {
+                suma = suma.resta(termino().valor);
+            } else {
+                break;
+            }
+            unico = false;
+        }
+        return unico && signo == 1 ? primero : new Nodo(suma);
+    }
+
+    private Nodo termino() {
+        Nodo primero = factor();
+        FuncionRacional producto = primero.valor;
+        boolean unico = true;
+        while (true) {
+            saltaEspacios();
+            consume("\\cdot");
+            saltaEspacios();
+            if (posicion >= texto.length() || "+-)}".indexOf(texto.charAt(posicion)) >= 0
+                    || texto.startsWith("\\right", posicion)) {
+                break;
+            }
+            producto = producto.multiplica(factor().valor);
+            unico = false;
+        }
+        return unico ? primero : new Nodo(producto);
+    }
+
+    private Nodo factor() {
+        Nodo base = primario();
+        saltaEspacios();
+        if (!consume("^")) {
+            return base;
+        }
+        saltaEspacios();
+        int exponente;
+        if (consume("{")) {
+            exponente = entero();
+            saltaEspacios();
+            espera("}");
+        } else if (posicion < texto.length() && Character.isDigit(texto.charAt(posicion))) {
+            exponente = texto.charAt(posicion++) - '0';
+        } else {
+            throw error("Exponente no soportado");
+        }
+        return new Nodo(base.valor.potencia(exponente));
+    }
+
+    private Nodo primario() {
+        saltaEspacios();
+        if (consume("\\frac")) {
+            saltaEspacios();
+            espera("{");
+            Nodo numerador = expresion();
+            espera("}");
+            saltaEspacios();
+            espera("{");
+            Nodo denominador = expresion();
+            espera("}");
+            Polinomio arriba = numerador.valor.polinomio();
+            Polinomio abajo = denominador.valor.polinomio();
+            if (arriba == null || abajo == null) {
+                throw error("Sólo se leen cocientes de polinomios");
+            }
+            return new Nodo(numerador.valor.divide(denominador.valor), arriba, abajo);
+        }
+        if (consume("\\left(")) {
+            Nodo interior = expresion();
+            espera("\\right)");
+            return new Nodo(interior.valor);
+        }
+        if (consume("(")) {
+            Nodo interior = expresion();
+            espera(")");
+            return new Nodo(interior.valor);
+        }
+        if (consume("{")) {
+            Nodo interior = expresion();
+            espera("}");
+            return interior;
+        }
+        if (posicion < texto.length() && Character.isDigit(texto.charAt(posicion))) {
+            return new Nodo(FuncionRacional.de(Polinomio.constante(entero())));
+        }
+        if (consume(variable)) {
+            return new Nodo(FuncionRacional.de(Polinomio.X));
+        }
+        throw error("Símbolo no soportado");
+    }
+
+    private int entero() {
+        saltaEspacios();
+        boolean negativo = consume("-");
+        int inicio = posicion;
+        while (posicion < texto.length() && Character.isDigit(texto.charAt(posicion))) {
+            posicion++;
+        }
+        if (inicio == posicion) {
+            throw error("Se esperaba un entero");
+        }
+        int valor = Integer.parseInt(texto.substring(inicio, posicion));
+        return negativo ? -valor : valor;
+    }
+
+    private void saltaEspacios() {
+        while (posicion < texto.length() && Character.isWhitespace(texto.charAt(posicion))) {
+            posicion++;
+        }
+    }
+
+    private boolean consume(String simbolo) {
+        if (texto.startsWith(simbolo, posicion)) {
+            posicion += simbolo.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void espera(String simbolo) {
+        saltaEspacios();
+        if (!consume(simbolo)) {
+            throw error("Se esperaba '" + simbolo + "'");
+        }
+    }
+
+    private ExpresionNoSoportada error(String mensaje) {
+        return new ExpresionNoSoportada(mensaje + " en la posición " + posicion + " de " + texto);
+    }
+}
@@ -0,0 +1,328 @@
+package com.uam.motor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Polinomio en una variable con coeficientes enteros. El coeficiente i es el de x^i.
+ * Es inmutable; todas las operaciones regresan un polinomio nuevo.
+ */
+public final class Polinomio {
+
+    public static final Polinomio CERO = new Polinomio(new long[0]);
+    public static final Polinomio UNO = constante(1);
+    public static final Polinomio X = monomio(1, 1);
+
+    private final long[] coeficientes;
+
+    private Polinomio(long[] coeficientes) {
+        int grado = coeficientes.length - 1;
+        while (grado >= 0 && coeficientes[grado] == 0) {
+            grado--;
+        }
+        this.coeficientes = Arrays.copyOf(coeficientes, grado + 1);
+    }
+
+    public static Polinomio constante(long c) {
+        return new Polinomio(new long[]{c});
+    }
+
+    public static Polinomio monomio(long c, int grado) {
+        long[] coeficientes = new long[grado + 1];
+        coeficientes[grado] = c;
+        return new Polinomio(coeficientes);
+    }
+
+    /**
+     * @return el grado; -1 para el polinomio cero
+     */
+    public int grado() {
+        return coeficientes.length - 1;
+    }
+
+    public long coeficiente(int i) {
+        return i < coeficientes.length ? coeficientes[i] : 0;
+    }
+
+    public long principal() {
+        return esCero() ? 0 : coeficientes[grado()];
+    }
+
+    public boolean esCero() {
+        return coeficientes.length == 0;
+    }
+
+    public boolean esConstante() {
+        return grado() <= 0;
+    }
+
+    /**
+     * @return true si tiene un solo término no nulo
+     */
+    public boolean esMonomio() {
+        int terminos = 0;
+        for (long c : coeficientes) {
+            if (c != 0) {
+                terminos++;
+            }
+        }
+        return terminos == 1;
+    }
+
+    public Polinomio suma(Polinomio otro) {
+        long[] resultado = new long[Math.max(coeficientes.length, otro.coeficientes.length)];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = Math.addExact(coeficiente(i), otro.coeficiente(i));
+        }
+        return new Polinomio(resultado);
+    }
+
+    public Polinomio resta(Polinomio otro) {
+        return suma(otro.escala(-1));
+    }
+
+    public Polinomio multiplica(Polinomio otro) {
+        if (esCero() || otro.esCero()) {
+            return CERO;
+        }
+        long[] resultado = new long[coeficientes.length + otro.coeficientes.length - 1];
+        for (int i = 0; i < coeficientes.length; i++) {
+            for (int j = 0; j < otro.coeficientes.length; j++) {
+                resultado[i + j] = Math.addExact(resultado[i + j], Math.multiplyExact(coeficientes[i], otro.coeficientes[j]));
+            }
+        }
+        return new Polinomio(resultado);
+    }
+
+    public Polinomio escala(long c) {
+        long[] resultado = new long[coeficientes.length];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = Math.multiplyExact(coeficientes[i], c);
+        }
+        return new Polinomio(resultado);
+    }
+
+    public Polinomio potencia(int n) {
+        Polinomio resultado = UNO;
+        for (int i = 0; i < n; i++) {
+            resultado = resultado.multiplica(this);
+        }
+        return resultado;
+    }
+
+    public Polinomio derivada() {
+        if (coeficientes.length <= 1) {
+            return CERO;
+        }
+        long[] resultado = new long[coeficientes.length - 1];
+        for (int i = 1; i < coeficientes.length; i++) {
+            resultado[i - 1] = Math.multiplyExact(coeficientes[i], i);
+        }
+        return new Polinomio(resultado);
+    }
+
+    public Fraccion evalua(Fraccion x) {
+        Fraccion resultado = Fraccion.CERO;
+        for (int i = grado(); i >= 0; i--) {
+            resultado = resultado.multiplica(x).suma(Fraccion.de(coeficientes[i]));
+        }
+        return resultado;
+    }
+
+    /**
+     * División exacta entre enteros.
+     * @param divisor polinomio no nulo
+     * @return el cociente, o null si la división no es exacta con coeficientes enteros
+     */
+    public Polinomio divideExacto(Polinomio divisor) {
+        long[] resto = coeficientes.clone();
+        int gradoDivisor = divisor.grado();
+        if (grado() < gradoDivisor) {
+            return esCero() ? CERO : null;
+        }
+        long[] cociente = new long[grado() - gradoDivisor + 1];
+        for (int i = grado(); i >= gradoDivisor; i--) {
+            if (resto[i] % divisor.principal() != 0) {
+                return null;
+            }
+            long q = resto[i] / divisor.principal();
+            cociente[i - gradoDivisor] = q;
+            for (int j = 0; j <= gradoDivisor; j++) {
+                resto[i - gradoDivisor + j] = Math.subtractExact(resto[i - gradoDivisor + j],
+                        Math.multiplyExact(q, divisor.coeficiente(j)));
+            }
+        }
+        for (long r : resto) {
+            if (r != 0) {
+                return null;
+            }
+        }
+        return new Polinomio(cociente);
+    }
+
+    /**
+     * @return máximo común divisor de los coeficientes, con el signo del coeficiente principal
+     */
+    public long contenido() {
+        long mcd = 0;
+        for (long c : coeficientes) {
+            mcd = Fraccion.mcd(mcd, c);
+        }
+        mcd = Math.abs(mcd);
+        return principal() < 0 ? -mcd : mcd;
+    }
+
+    /**
+     * @return el polinomio dividido entre su contenido: coeficientes primos entre sí y principal positivo
+     */
+    public Polinomio primitiva() {
+        return esCero() ? CERO : divideExacto(constante(contenido()));
+    }
+
+    /**
+     * Raíces racionales por el criterio de las raíces racionales, con multiplicidad y en orden ascendente.
+     * Sólo se usa con los polinomios pequeños de los reactivos.
+     * @return lista de raíces
+     */
+    public List<Fraccion> raicesRacionales() {
+        List<Fraccion> raices = new ArrayList<>();
+        Polinomio resto = this;
+        while (resto.grado() > 0 && resto.coeficiente(0) == 0) {
+            raices.add(Fraccion.CERO);
+            resto = resto.divideExacto(X);
+        }
+        boolean encontrada = true;
+        while (encontrada && resto.grado() > 0) {
+            encontrada = false;
+            for (Fraccion candidata : candidatas(resto)) {
+                if (resto.evalua(candidata).esCero()) {
+                    raices.add(candidata);
+                    resto = resto.divideExacto(factorLineal(candidata));
+                    encontrada = true;
+                    break;
+                }
+            }
+        }
+        raices.sort(null);
+        return raices;
+    }
+
+    private static List<Fraccion> candidatas(Polinomio p) {
+        List<Fraccion> candidatas = new ArrayList<>();
+        for (long q : divisores(p.principal())) {
+            for (long r : divisores(p.coeficiente(0))) {
+                candidatas.add(Fraccion.de(r, q));
+                candidatas.add(Fraccion.de(-r, q));
+            }
+        }
+        return candidatas;
+    }
+
+    private static List<Long> divisores(long n) {
+        n = Math.abs(n);
+        List<Long> divisores = new ArrayList<>();
+        for (long d = 1; d * d <= n; d++) {
+            if (n % d == 0) {
+                divisores.add(d);
+                if (d * d != n) {
+                    divisores.add(n / d);
+                }
+            }
+        }
+        return divisores;
+    }
+
+    /**
+     * @param raiz raíz racional p/q
+     * @return el factor primitivo q x - p
+     */
+    public static Polinomio factorLineal(Fraccion raiz) {
+        return new Polinomio(new long[]{-raiz.getNumerador(), raiz.getDenominador()});
+    }
+
+    /**
+     * @param variable nombre de la variable
+     * @return el polinomio como lo imprime latex() de SymPy, de mayor a menor grado
+     */
+    public String latex(String variable) {
+        if (esConstante()) {
+            return Long.toString(coeficiente(0));
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = grado(); i >= 0; i--) {
+            long c = coeficientes[i];
+            if (c == 0) {
+                continue;
+            }
+            if (sb.length() == 0) {
+                sb.append(c < 0 ? "- " : "");
+            } else {
+                sb.append(c < 0 ? " - " : " + ");
+            }
+            long absoluto = Math.abs(c);
+            if (i == 0) {
+                sb.append(absoluto);
+            } else {
+                if (absoluto != 1) {
+                    sb.append(absoluto).append(' ');
+                }
+                sb.append(variable);
+                if (i > 1) {
+                    sb.append("^{").append(i).append('}');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param variable nombre de la variable
+     * @return el polinomio como lo imprime str() de SymPy, válido también en JavaScript
+     */
+    public String str(String variable) {
+        if (esCero()) {
+            return "0";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = grado(); i >= 0; i--) {
+            long c = coeficientes[i];
+            if (c == 0) {
+                continue;
+            }
+            if (sb.length() == 0) {
+                sb.append(c < 0 ? "-" : "");
+            } else {
+                sb.append(c < 0 ? " - " : " + ");
+            }
+            long absoluto = Math.abs(c);
+            if (i == 0) {
+                sb.append(absoluto);
+            } else {
+                if (absoluto != 1) {
+                    sb.append(absoluto).append('*');
+                }
+                sb.append(variable);
+                if (i > 1) {
+                    sb.append("**").append(i);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Polinomio && Arrays.equals(coeficientes, ((Polinomio) o).coeficientes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(coeficientes);
+    }
+
+    @Override
+    public String toString() {
+        return str("x");
+    }
+}
@@ -0,0 +1,76 @@
+package com.uam.motor;
+
+import com.uam.auxiliar.ResultadoSimbolico;
+import com.uam.auxiliar.SolicitudSimbolica;
+import com.uam.auxiliar.SolucionadorSimbolico;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Solucionador en proceso con {@link MotorDerivacion}. Lo que el motor no cubre se
+ * envía al solucionador de respaldo, normalmente SymPy.
+ */
+public class SolucionadorJava implements SolucionadorSimbolico {
+
+    private final SolucionadorSimbolico respaldo;
+
+    /**
+     * @param respaldo resuelve lo que el motor no cubre
+     */
+    public SolucionadorJava(SolucionadorSimbolico respaldo) {
+        this.respaldo = respaldo;
+    }
+
+    /**
+     * @return la solución del motor, o null si no cubre la solicitud
+     */
+    private static ResultadoSimbolico resuelveEnJava(SolicitudSimbolica solicitud) {
+        try {
+            return ResultadoSimbolico.exito(MotorDerivacion.resuelve(solicitud));
+        } catch (ExpresionNoSoportada e) {
+            System.err.format("Motor Java sin soporte para %s (%s); se envía al respaldo%n", solicitud, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public ResultadoSimbolico resuelve(SolicitudSimbolica solicitud) {
+        ResultadoSimbolico enJava = resuelveEnJava(solicitud);
+        return enJava != null ? enJava : respaldo.resuelve(solicitud);
+    }
+
+    /**
+     * Resuelve en Java lo que puede y envía el resto al respaldo en un solo lote.
+     */
+    @Override
+    public List<ResultadoSimbolico> resuelveLote(List<SolicitudSimbolica> solicitudes) {
+        List<ResultadoSimbolico> resultados = new ArrayList<>(solicitudes.size());
+        List<Integer> pendientes = new ArrayList<>();
+        List<SolicitudSimbolica> restantes = new ArrayList<>();
+        for (SolicitudSimbolica solicitud : solicitudes) {
+            ResultadoSimbolico enJava = resuelveEnJava(solicitud);
+            if (enJava == null) {
+                pendientes.add(resultados.size());
+                restantes.add(solicitud);
+            }
+            resultados.add(enJava);
+        }
+        if (!restantes.isEmpty()) {
+            List<ResultadoSimbolico> resueltos = respaldo.resuelveLote(restantes);
+            for (int i = 0; i < resueltos.size(); i++) {
+                resultados.set(pendientes.get(i), resueltos.get(i));
+            }
+        }
+        return resultados;
+    }
+
+    public SolucionadorSimbolico getRespaldo() {
+        return respaldo;
+    }
+
+    @Override
+    public String toString() {
+        return "java, respaldo " + respaldo;
+    }
+}
@@ -0,0 +1,78 @@
+package com.uam.utilidades;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+
+/**
+ * Flujos de números aleatorios reproducibles, uno por reactivo. Cada flujo se deriva de
+ * la semilla de la corrida, del generador, del número de reactivo y del intento, así que
+ * no se comparte ningún estado entre hilos y una corrida en paralelo produce exactamente
+ * los mismos reactivos que una en serie con la misma semilla.<p>
+ * La semilla se toma de la propiedad "sevilla.semilla"; si no se da, se elige una al azar
+ * y se imprime para poder repetir la corrida.
+ */
+public final class FlujosAleatorios {
+
+    private static final long SEMILLA = leeSemilla();
+
+    private FlujosAleatorios() {
+    }
+
+    private static long leeSemilla() {
+        String semilla = System.getProperty("sevilla.semilla");
+        if (semilla != null) {
+            return Long.parseLong(semilla.trim());
+        }
+        long elegida = new SecureRandom().nextLong();
+        System.out.format("Semilla de generación: %d (repítase con -Dsevilla.semilla=%d)%n", elegida, elegida);
+        return elegida;
+    }
+
+    public static long getSemilla() {
+        return SEMILLA;
+    }
+
+    /**
+     * @param generador identificador estable del generador, por ejemplo el nombre de su clase
+     * @param numeroReactivo número de reactivo
+     * @param intento intento de generación, empezando en 1; cada reintento muestrea constantes nuevas
+     * @return flujo propio de ese reactivo e intento
+     */
+    public static SplittableRandom flujo(String generador, int numeroReactivo, int intento) {
+        long semilla = llave(generador);
+        semilla = mezcla(semilla + numeroReactivo);
+        semilla = mezcla(semilla + intento);
+        return new SplittableRandom(semilla);
+    }
+
+    /**
+     * @param generador identificador estable del generador
+     * @return llave del generador en esta corrida, por ejemplo para permutar su espacio de parámetros
+     */
+    public static long llave(String generador) {
+        return mezcla(SEMILLA ^ huella(generador));
+    }
+
+    /**
+     * FNV-1a de 64 bits sobre el texto en UTF-8; a diferencia de hashCode, no depende de la JVM.
+     */
+    private static long huella(String texto) {
+        long huella = 0xcbf29ce484222325L;
+        for (byte b : texto.getBytes(StandardCharsets.UTF_8)) {
+            huella ^= b & 0xff;
+            huella *= 0x100000001b3L;
+        }
+        return huella;
+    }
+
+    /**
+     * Finalizador de SplitMix64: dispersa cada bit de la entrada en toda la salida.
+     */
+    private static long mezcla(long z) {
+        z += 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
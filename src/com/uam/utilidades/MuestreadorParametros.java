@@ -0,0 +1,427 @@
+package com.uam.utilidades;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Muestreador exacto de las constantes de un generador. Cada constante declara su cota,
+ * su paridad y los valores que excluye; el conjunto factible se calcula una sola vez, al
+ * construir el muestreador, y cada muestra se toma de manera uniforme sin reintentos.<p>
+ * Las restricciones estáticas (paridad, distinto de un número) se aplican al dominio.
+ * Las relaciones con constantes anteriores (por ejemplo, x_0 distinto de -B/A) excluyen
+ * un valor cada una; se muestrea un índice en el dominio sin esos valores y se recorre
+ * saltando las posiciones excluidas, sin volver a tirar.<p>
+ * Si alguna constante podría quedarse sin valores, el muestreador falla al construirse,
+ * es decir, al cargar el generador y no a la mitad de una corrida.<p>
+ * El espacio de parámetros también se enumera: cada combinación factible es un entero en
+ * base mixta sobre los dominios, y las factibles se guardan una vez en un arreglo ordenado.
+ * {@link #enumera} recorre ese arreglo con una permutación pseudoaleatoria (una red de
+ * Feistel con llave, ajustada al tamaño por "cycle walking"), así que los primeros n
+ * reactivos de una corrida nunca repiten constantes y no hace falta recordar las ya usadas.
+ * {@link #tamano} da el número de combinaciones distintas.<p>
+ * Ejemplo:
+ * <pre>
+ * MuestreadorParametros.nuevo()
+ *         .entero("A", -3, 3).distintoDe(0)
+ *         .entero("X0", -2, 2).distintoDe(p -&gt; -p.get("B") / p.get("A"))
+ *         .construye();
+ * </pre>
+ */
+public final class MuestreadorParametros {
+
+    /**
+     * Valores muestreados, consultables por nombre.
+     */
+    public static final class Parametros {
+        private final Map<String, Integer> indices;
+        private final int[] valores;
+
+        private Parametros(Map<String, Integer> indices, int[] valores) {
+            this.indices = indices;
+            this.valores = valores;
+        }
+
+        /**
+         * @param nombre nombre de la constante, ya muestreada
+         * @return su valor
+         */
+        public int get(String nombre) {
+            Integer indice = indices.get(nombre);
+            if (indice == null) {
+                throw new RuntimeException("Constante desconocida: " + nombre + ". Declaradas: " + indices.keySet());
+            }
+            return valores[indice];
+        }
+
+        /**
+         * @return los valores en el orden en que se declararon, por ejemplo "A=3 B=-5"
+         */
+        @Override
+        public String toString() {
+            String[] nombres = new String[valores.length];
+            for (Map.Entry<String, Integer> entrada : indices.entrySet()) {
+                nombres[entrada.getValue()] = entrada.getKey();
+            }
+            StringBuilder texto = new StringBuilder();
+            for (int i = 0; i < valores.length; i++) {
+                texto.append(i == 0 ? "" : " ").append(nombres[i]).append('=').append(valores[i]);
+            }
+            return texto.toString();
+        }
+    }
+
+    private static final class Constante {
+        final String nombre;
+        final int[] dominio;
+        final List<ToIntFunction<Parametros>> relaciones;
+
+        Constante(String nombre, int[] dominio, List<ToIntFunction<Parametros>> relaciones) {
+            this.nombre = nombre;
+            this.dominio = dominio;
+            this.relaciones = relaciones;
+        }
+    }
+
+    /**
+     * Límite de combinaciones (producto de los dominios) que se recorren para enumerar el espacio.
+     */
+    private static final long LIMITE_ENUMERACION = 1L << 24;
+
+    /**
+     * Rondas de la red de Feistel; con cuatro la permutación ya no se distingue de una aleatoria.
+     */
+    private static final int RONDAS_FEISTEL = 4;
+
+    private final Constante[] constantes;
+    private final Map<String, Integer> indices;
+    private final List<Predicate<Parametros>> filtros;
+    /** Combinaciones factibles en base mixta, en orden ascendente; null si el espacio es demasiado grande. */
+    private final int[] factibles;
+
+    private MuestreadorParametros(Constante[] constantes, Map<String, Integer> indices,
+                                  List<Predicate<Parametros>> filtros) {
+        this.constantes = constantes;
+        this.indices = indices;
+        this.filtros = filtros;
+        this.factibles = enumeraFactibles();
+    }
+
+    /**
+     * @return una definición vacía
+     */
+    public static Definicion nuevo() {
+        return new Definicion();
+    }
+
+    /**
+     * Muestrea todas las constantes en el orden en que se declararon.
+     * @param aleatorio flujo del reactivo
+     * @return los valores
+     */
+    public Parametros muestrea(SplittableRandom aleatorio) {
+        if (!filtros.isEmpty()) {
+            // Los filtros no excluyen valores sueltos: se toma una combinación factible al azar
+            return decodifica(factibles[aleatorio.nextInt(factibles.length)]);
+        }
+        Parametros parametros = new Parametros(indices, new int[constantes.length]);
+        for (int i = 0; i < constantes.length; i++) {
+            parametros.valores[i] = muestrea(constantes[i], parametros, aleatorio);
+        }
+        return parametros;
+    }
+
+    private static int muestrea(Constante constante, Parametros anteriores, SplittableRandom aleatorio) {
+        int[] dominio = constante.dominio;
+        if (constante.relaciones.isEmpty()) {
+            return dominio[aleatorio.nextInt(dominio.length)];
+        }
+        // Posiciones excluidas por las relaciones, sin repetir y en orden ascendente
+        int[] excluidas = new int[constante.relaciones.size()];
+        int n = 0;
+        for (ToIntFunction<Parametros> relacion : constante.relaciones) {
+            int posicion = Arrays.binarySearch(dominio, relacion.applyAsInt(anteriores));
+            if (posicion >= 0) {
+                excluidas[n++] = posicion;
+            }
+        }
+        Arrays.sort(excluidas, 0, n);
+        int indice = aleatorio.nextInt(dominio.length - distintas(excluidas, n));
+        for (int i = 0; i < n; i++) {
+            if ((i == 0 || excluidas[i] != excluidas[i - 1]) && excluidas[i] <= indice) {
+                indice++;
+            }
+        }
+        return dominio[indice];
+    }
+
+    /**
+     * @return número de combinaciones factibles distintas, o -1 si el espacio es demasiado
+     * grande para enumerarse
+     */
+    public long tamano() {
+        return factibles == null ? -1 : factibles.length;
+    }
+
+    /**
+     * Combinación en la posición dada de una permutación pseudoaleatoria del espacio. Con la
+     * misma llave, posiciones distintas dan siempre combinaciones distintas.
+     *
+     * @param llave llave de la permutación, por ejemplo la del generador en la corrida
+     * @param posicion posición en la permutación, desde 0 y menor que {@link #tamano}
+     * @return los valores de esa combinación
+     */
+    public Parametros enumera(long llave, long posicion) {
+        if (factibles == null) {
+            throw new RuntimeException("El espacio de parámetros es demasiado grande para enumerarse");
+        }
+        if (posicion < 0 || posicion >= factibles.length) {
+            throw new RuntimeException("Posición " + posicion + " fuera del espacio de parámetros, que tiene "
+                    + factibles.length + " combinaciones distintas");
+        }
+        return decodifica(factibles[(int) permuta(llave, posicion, factibles.length)]);
+    }
+
+    /**
+     * Permutación de [0, n) con una red de Feistel balanceada sobre el menor dominio 4^k que
+     * contiene a n; los valores que caen fuera se vuelven a cifrar hasta entrar ("cycle
+     * walking"). Como el dominio es menor que 4n, se esperan menos de cuatro vueltas.
+     */
+    static long permuta(long llave, long posicion, long n) {
+        int bitsMitad = 1;
+        while ((1L << (2 * bitsMitad)) < n) {
+            bitsMitad++;
+        }
+        long mascara = (1L << bitsMitad) - 1;
+        long valor = posicion;
+        do {
+            long izquierda = valor >>> bitsMitad;
+            long derecha = valor & mascara;
+            for (int ronda = 0; ronda < RONDAS_FEISTEL; ronda++) {
+                long siguiente = izquierda ^ (ronda(llave, ronda, derecha) & mascara);
+                izquierda = derecha;
+                derecha = siguiente;
+            }
+            valor = (izquierda << bitsMitad) | derecha;
+        } while (valor >= n);
+        return valor;
+    }
+
+    /**
+     * Función de ronda: finalizador de SplitMix64 sobre la llave, la ronda y la mitad derecha.
+     */
+    private static long ronda(long llave, int ronda, long mitad) {
+        long z = llave + (ronda + 1) * 0x9e3779b97f4a7c15L + mitad * 0xd1b54a32d192ed03L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Recorre el producto de los dominios como un odómetro en base mixta (la primera constante
+     * es el dígito más significativo) y conserva las combinaciones que cumplen las relaciones
+     * y los filtros.
+     */
+    private int[] enumeraFactibles() {
+        long producto = 1;
+        for (Constante constante : constantes) {
+            producto *= constante.dominio.length;
+            if (producto > LIMITE_ENUMERACION) {
+                return null;
+            }
+        }
+        int[] digitos = new int[constantes.length];
+        Parametros parametros = new Parametros(indices, new int[constantes.length]);
+        int[] factibles = new int[(int) producto];
+        int n = 0;
+        for (int codigo = 0; codigo < producto; codigo++) {
+            for (int i = 0; i < constantes.length; i++) {
+                parametros.valores[i] = constantes[i].dominio[digitos[i]];
+            }
+            if (cumple(parametros)) {
+                factibles[n++] = codigo;
+            }
+            for (int i = constantes.length - 1; i >= 0 && ++digitos[i] == constantes[i].dominio.length; i--) {
+                digitos[i] = 0;
+            }
+        }
+        return Arrays.copyOf(factibles, n);
+    }
+
+    private boolean cumple(Parametros parametros) {
+        for (int i = 0; i < constantes.length; i++) {
+            for (ToIntFunction<Parametros> relacion : constantes[i].relaciones) {
+                if (parametros.valores[i] == relacion.applyAsInt(parametros)) {
+                    return false;
+                }
+            }
+        }
+        for (Predicate<Parametros> filtro : filtros) {
+            if (!filtro.test(parametros)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Parametros decodifica(int codigo) {
+        Parametros parametros = new Parametros(indices, new int[constantes.length]);
+        for (int i = constantes.length - 1; i >= 0; i--) {
+            int base = constantes[i].dominio.length;
+            parametros.valores[i] = constantes[i].dominio[codigo % base];
+            codigo /= base;
+        }
+        return parametros;
+    }
+
+    private static int distintas(int[] ordenadas, int n) {
+        int distintas = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || ordenadas[i] != ordenadas[i - 1]) {
+                distintas++;
+            }
+        }
+        return distintas;
+    }
+
+    /**
+     * Declaración de las constantes de un generador.
+     */
+    public static final class Definicion {
+        private final List<String> nombres = new ArrayList<>();
+        private final List<int[]> cotas = new ArrayList<>();
+        private final List<Integer> paridades = new ArrayList<>();
+        private final List<List<Integer>> excluidos = new ArrayList<>();
+        private final List<List<ToIntFunction<Parametros>>> relaciones = new ArrayList<>();
+        private final List<Predicate<Parametros>> filtros = new ArrayList<>();
+
+        private Definicion() {
+        }
+
+        /**
+         * Declara una constante entera entre inferior y superior, incluyendo los extremos.
+         */
+        public Definicion entero(String nombre, int inferior, int superior) {
+            return declara(nombre, inferior, superior, -1);
+        }
+
+        /**
+         * Declara una constante impar entre inferior y superior, incluyendo los extremos.
+         */
+        public Definicion impar(String nombre, int inferior, int superior) {
+            return declara(nombre, inferior, superior, 1);
+        }
+
+        /**
+         * Declara una constante par entre inferior y superior, incluyendo los extremos.
+         */
+        public Definicion par(String nombre, int inferior, int superior) {
+            return declara(nombre, inferior, superior, 0);
+        }
+
+        /**
+         * Excluye un valor fijo de la última constante declarada.
+         */
+        public Definicion distintoDe(int valor) {
+            ultima(excluidos).add(valor);
+            return this;
+        }
+
+        /**
+         * Excluye de la última constante declarada el valor que resulta de las constantes
+         * declaradas antes que ella.
+         */
+        public Definicion distintoDe(ToIntFunction<Parametros> relacion) {
+            ultima(relaciones).add(relacion);
+            return this;
+        }
+
+        /**
+         * Excluye de la última constante declarada el valor que tomó otra constante anterior.
+         */
+        public Definicion distintoDe(String anterior) {
+            if (!nombres.subList(0, nombres.size() - 1).contains(anterior)) {
+                throw new RuntimeException("La constante " + ultima(nombres) + " sólo puede compararse con una"
+                        + " declarada antes. Encontrado: " + anterior);
+            }
+            return distintoDe(p -> p.get(anterior));
+        }
+
+        /**
+         * Conserva sólo las combinaciones que cumplen la condición, que puede consultar todas
+         * las constantes. Sirve para quedarse con una forma canónica cuando dos combinaciones
+         * dan el mismo reactivo (por ejemplo, raíces r1 y r2 intercambiadas).
+         */
+        public Definicion soloSi(Predicate<Parametros> condicion) {
+            filtros.add(condicion);
+            return this;
+        }
+
+        /**
+         * Calcula los dominios factibles y enumera el espacio de parámetros.
+         * @return el muestreador
+         * @throws RuntimeException si alguna constante puede quedarse sin valores, o si con
+         * los filtros no queda ninguna combinación
+         */
+        public MuestreadorParametros construye() {
+            Constante[] constantes = new Constante[nombres.size()];
+            Map<String, Integer> indices = new HashMap<>();
+            for (int i = 0; i < constantes.length; i++) {
+                int[] cota = cotas.get(i);
+                int[] dominio = new int[cota[1] - cota[0] + 1];
+                int n = 0;
+                for (int valor = cota[0]; valor <= cota[1]; valor++) {
+                    boolean paridad = paridades.get(i) < 0 || Math.floorMod(valor, 2) == paridades.get(i);
+                    if (paridad && !excluidos.get(i).contains(valor)) {
+                        dominio[n++] = valor;
+                    }
+                }
+                List<ToIntFunction<Parametros>> suyas = relaciones.get(i);
+                if (n <= suyas.size()) {
+                    throw new RuntimeException("Restricciones insatisfacibles para la constante " + nombres.get(i)
+                            + " en [" + cota[0] + ", " + cota[1] + "]: quedan " + n + " valores y "
+                            + suyas.size() + " relaciones pueden excluir uno cada una");
+                }
+                constantes[i] = new Constante(nombres.get(i), Arrays.copyOf(dominio, n), new ArrayList<>(suyas));
+                indices.put(nombres.get(i), i);
+            }
+            MuestreadorParametros muestreador = new MuestreadorParametros(constantes, indices, new ArrayList<>(filtros));
+            if (!filtros.isEmpty() && muestreador.factibles == null) {
+                throw new RuntimeException("Los filtros soloSi requieren un espacio de parámetros enumerable, de a lo más "
+                        + LIMITE_ENUMERACION + " combinaciones");
+            }
+            if (muestreador.tamano() == 0) {
+                throw new RuntimeException("Restricciones insatisfacibles: ninguna combinación de " + nombres
+                        + " cumple las relaciones y los filtros");
+            }
+            return muestreador;
+        }
+
+        private Definicion declara(String nombre, int inferior, int superior, int paridad) {
+            if (nombres.contains(nombre)) {
+                throw new RuntimeException("Constante declarada dos veces: " + nombre);
+            }
+            if (inferior > superior) {
+                throw new RuntimeException("Cota vacía para la constante " + nombre + ": [" + inferior + ", " + superior + "]");
+            }
+            nombres.add(nombre);
+            cotas.add(new int[]{inferior, superior});
+            paridades.add(paridad);
+            excluidos.add(new ArrayList<>());
+            relaciones.add(new ArrayList<>());
+            return this;
+        }
+
+        private <T> T ultima(List<T> lista) {
+            if (lista.isEmpty()) {
+                throw new RuntimeException("Debe declararse una constante antes de sus restricciones");
+            }
+            return lista.get(lista.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.uam.utilidades;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Plantilla de texto con variables $NOMBRE$ (mayúsculas, dígitos y guion bajo), partida una
+ * sola vez en segmentos literales y variables. Llenarla es una sola pasada que agrega cada
+ * segmento al destino, en lugar de una cadena de String.replace que copia el texto completo
+ * por cada variable.<p>
+ * Con una {@link SalidaUtf8} como destino, los literales se escriben ya codificados en UTF-8.<p>
+ * Las sustituciones fijas del texto (fragmentos que se insertan, frases que se cambian) se
+ * aplican con {@link Definicion#reescribe} antes de compilar. Al compilar se declaran, en
+ * orden, las variables que se llenarán; una variable del texto sin declarar o una declarada
+ * que no aparece en el texto es un error, así que se detectan al cargar el generador.<p>
+ * Ejemplo:
+ * <pre>
+ * PlantillaCompilada plantilla = PlantillaCompilada.de(XML_PREFIJO + PLANTILLA_REACTIVO + XML_SUFIJO)
+ *         .reescribe("$RESPUESTA$", RESPUESTA)
+ *         .compila("COMENTARIO", "EXPRESION", "SOLUCION");
+ * String reactivo = plantilla.llena(comentario, expresion, solucion);
+ * </pre>
+ */
+public final class PlantillaCompilada {
+
+    private static final Pattern VARIABLE = Pattern.compile("\\$([A-Z][A-Z0-9_]*)\\$");
+
+    private final List<String> variables;
+    /** Literales; el literal i va antes de la variable en la posición i de posiciones. */
+    private final String[] literales;
+    /** Los mismos literales, codificados una vez en UTF-8. */
+    private final ByteBuffer[] literalesUtf8;
+    /** Índice, en variables, de la variable de cada hueco. */
+    private final int[] posiciones;
+    private final int longitudLiterales;
+
+    private PlantillaCompilada(List<String> variables, String[] literales, int[] posiciones) {
+        this.variables = variables;
+        this.literales = literales;
+        this.posiciones = posiciones;
+        this.literalesUtf8 = new ByteBuffer[literales.length];
+        int longitud = 0;
+        for (int i = 0; i < literales.length; i++) {
+            literalesUtf8[i] = SalidaUtf8.codifica(literales[i]);
+            longitud += literales[i].length();
+        }
+        this.longitudLiterales = longitud;
+    }
+
+    /**
+     * @param texto texto de la plantilla
+     * @return una definición sobre la que se aplican las sustituciones fijas antes de compilar
+     */
+    public static Definicion de(String texto) {
+        return new Definicion(texto);
+    }
+
+    /**
+     * @param valores un valor por variable, en el orden en que se declararon al compilar
+     * @return el texto con las variables sustituidas
+     */
+    public String llena(Object... valores) {
+        StringBuilder destino = new StringBuilder(longitudLiterales + 64 * posiciones.length);
+        llena(destino, valores);
+        return destino.toString();
+    }
+
+    /**
+     * Agrega el texto, con las variables sustituidas, directamente al destino.
+     *
+     * @param destino por ejemplo un StringBuilder reutilizado o el Writer de salida
+     * @param valores un valor por variable, en el orden en que se declararon al compilar
+     */
+    public void llena(Appendable destino, Object... valores) {
+        if (valores.length != variables.size()) {
+            throw new RuntimeException("La plantilla espera " + variables.size() + " valores " + variables
+                    + ". Encontrados: " + valores.length);
+        }
+        SalidaUtf8 salida = destino instanceof SalidaUtf8 ? (SalidaUtf8) destino : null;
+        try {
+            for (int i = 0; i <= posiciones.length; i++) {
+                if (salida != null) {
+                    salida.escribe(literalesUtf8[i]);
+                } else {
+                    destino.append(literales[i]);
+                }
+                if (i == posiciones.length) {
+                    break;
+                }
+                Object valor = valores[posiciones[i]];
+                if (valor == null) {
+                    throw new RuntimeException("Falta el valor de $" + variables.get(posiciones[i]) + "$");
+                }
+                destino.append(valor.toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param variable nombre de una variable declarada, sin los signos $
+     * @return su posición en los valores de {@link #llena}
+     */
+    public int indice(String variable) {
+        int indice = variables.indexOf(variable);
+        if (indice < 0) {
+            throw new RuntimeException("Variable no declarada en la plantilla: " + variable + ". Declaradas: " + variables);
+        }
+        return indice;
+    }
+
+    /**
+     * Texto de una plantilla antes de compilarse.
+     */
+    public static final class Definicion {
+        private String texto;
+
+        private Definicion(String texto) {
+            this.texto = texto;
+        }
+
+        /**
+         * Sustituye literalmente todas las apariciones de un fragmento. El reemplazo puede
+         * contener variables, que quedan en la plantilla.
+         *
+         * @throws RuntimeException si el fragmento no aparece, para no dejar sustituciones muertas
+         */
+        public Definicion reescribe(String buscado, String reemplazo) {
+            if (!texto.contains(buscado)) {
+                throw new RuntimeException("La plantilla no contiene el fragmento a reescribir: " + buscado);
+            }
+            texto = texto.replace(buscado, reemplazo);
+            return this;
+        }
+
+        /**
+         * @param variables variables que se llenarán, sin los signos $, en el orden de sus valores
+         * @return la plantilla partida en segmentos
+         * @throws RuntimeException si el texto tiene variables sin declarar o se declaró alguna que no aparece
+         */
+        public PlantillaCompilada compila(String... variables) {
+            Map<String, Integer> indices = new HashMap<>();
+            for (int i = 0; i < variables.length; i++) {
+                if (indices.put(variables[i], i) != null) {
+                    throw new RuntimeException("Variable declarada dos veces en la plantilla: " + variables[i]);
+                }
+            }
+            List<String> literales = new ArrayList<>();
+            List<Integer> posiciones = new ArrayList<>();
+            Set<String> sinDeclarar = new LinkedHashSet<>();
+            Set<String> usadas = new LinkedHashSet<>();
+            Matcher matcher = VARIABLE.matcher(texto);
+            int inicio = 0;
+            while (matcher.find()) {
+                Integer indice = indices.get(matcher.group(1));
+                if (indice == null) {
+                    if (!esFormula(matcher.start(), matcher.end())) {
+                        sinDeclarar.add(matcher.group(1));
+                    }
+                    continue;
+                }
+                literales.add(texto.substring(inicio, matcher.start()));
+                posiciones.add(indice);
+                usadas.add(matcher.group(1));
+                inicio = matcher.end();
+            }
+            literales.add(texto.substring(inicio));
+            if (!sinDeclarar.isEmpty()) {
+                throw new RuntimeException("Variables de la plantilla sin valor: " + sinDeclarar);
+            }
+            Set<String> sobrantes = new LinkedHashSet<>(Arrays.asList(variables));
+            sobrantes.removeAll(usadas);
+            if (!sobrantes.isEmpty()) {
+                throw new RuntimeException("Variables declaradas que no aparecen en la plantilla: " + sobrantes);
+            }
+            int[] huecos = new int[posiciones.size()];
+            for (int i = 0; i < huecos.length; i++) {
+                huecos[i] = posiciones.get(i);
+            }
+            return new PlantillaCompilada(Arrays.asList(variables.clone()), literales.toArray(new String[0]), huecos);
+        }
+
+        /**
+         * Una fórmula $$A$$ de LaTeX también tiene la forma $A$; si no se declaró, se deja como texto.
+         */
+        private boolean esFormula(int inicio, int fin) {
+            return inicio > 0 && texto.charAt(inicio - 1) == '$' && fin < texto.length() && texto.charAt(fin) == '$';
+        }
+    }
+}
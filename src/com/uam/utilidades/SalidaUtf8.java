@@ -0,0 +1,161 @@
+package com.uam.utilidades;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Salida en UTF-8 a un FileChannel a través de un buffer directo grande. El texto que se
+ * agrega se codifica directamente en el buffer, sin cadenas intermedias; los fragmentos que
+ * no cambian (el prefijo y sufijo del archivo, los literales de una {@link PlantillaCompilada})
+ * se codifican una sola vez y se escriben con {@link #escribe(ByteBuffer)}.<p>
+ * No es segura para usarse desde varios hilos.
+ */
+public final class SalidaUtf8 implements Appendable, Closeable {
+
+    private static final int TAMANO_BUFFER = 1 << 20;
+
+    private final FileChannel canal;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANO_BUFFER);
+    private final CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private SalidaUtf8(FileChannel canal) {
+        this.canal = canal;
+    }
+
+    /**
+     * @param archivo archivo de salida; se crea o se trunca
+     * @return la salida lista para escribir desde el principio del archivo
+     * @throws IOException si no se pudo abrir el archivo
+     */
+    public static SalidaUtf8 crea(Path archivo) throws IOException {
+        return new SalidaUtf8(FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Abre un archivo ya escrito para seguir escribiendo a partir de cierta longitud; lo que
+     * hubiera después se descarta.
+     *
+     * @param archivo archivo de salida existente
+     * @param longitud bytes del archivo que se conservan
+     * @return la salida lista para escribir después de esos bytes
+     * @throws IOException si no se pudo abrir el archivo o es más corto que longitud
+     */
+    public static SalidaUtf8 reanuda(Path archivo, long longitud) throws IOException {
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE);
+        try {
+            if (canal.size() < longitud) {
+                throw new IOException("El archivo " + archivo + " tiene " + canal.size()
+                        + " bytes, menos de los " + longitud + " registrados");
+            }
+            canal.truncate(longitud);
+            canal.position(longitud);
+        } catch (IOException e) {
+            canal.close();
+            throw e;
+        }
+        return new SalidaUtf8(canal);
+    }
+
+    /**
+     * @param texto texto fijo
+     * @return el texto en UTF-8, de sólo lectura, para escribirse muchas veces con {@link #escribe(ByteBuffer)}
+     */
+    public static ByteBuffer codifica(String texto) {
+        return StandardCharsets.UTF_8.encode(texto).asReadOnlyBuffer();
+    }
+
+    /**
+     * Escribe bytes ya codificados sin modificar la posición del buffer recibido.
+     */
+    public void escribe(ByteBuffer bytes) throws IOException {
+        ByteBuffer copia = bytes.duplicate();
+        if (copia.remaining() > buffer.remaining()) {
+            vacia();
+            if (copia.remaining() > buffer.capacity()) {
+                while (copia.hasRemaining()) {
+                    canal.write(copia);
+                }
+                return;
+            }
+        }
+        buffer.put(copia);
+    }
+
+    @Override
+    public SalidaUtf8 append(CharSequence texto) throws IOException {
+        CharBuffer caracteres = CharBuffer.wrap(texto);
+        codificador.reset();
+        while (true) {
+            CoderResult resultado = codificador.encode(caracteres, buffer, true);
+            if (resultado.isOverflow()) {
+                vacia();
+            } else if (resultado.isUnderflow()) {
+                break;
+            } else {
+                resultado.throwException();
+            }
+        }
+        while (codificador.flush(buffer).isOverflow()) {
+            vacia();
+        }
+        return this;
+    }
+
+    @Override
+    public SalidaUtf8 append(CharSequence texto, int inicio, int fin) throws IOException {
+        return append(texto.subSequence(inicio, fin));
+    }
+
+    @Override
+    public SalidaUtf8 append(char caracter) throws IOException {
+        return append(String.valueOf(caracter));
+    }
+
+    /**
+     * @return bytes escritos desde el principio del archivo, incluyendo los que están en el buffer
+     */
+    public long posicion() throws IOException {
+        return canal.position() + buffer.position();
+    }
+
+    /**
+     * Escribe al canal lo que haya en el buffer.
+     */
+    public void vacia() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Escribe el buffer y espera a que el sistema operativo lleve el archivo al disco, para
+     * que lo escrito sobreviva a una caída del sistema y no sólo a la del proceso.
+     */
+    public void sincroniza() throws IOException {
+        vacia();
+        canal.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            vacia();
+        } finally {
+            canal.close();
+        }
+    }
+}
@@ -1,17 +1,18 @@
 package com.uam.utilidades;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
 
 /**
  * Clase con métodos para dar soporte a los generadores de reactivos moodle.
+ * Los métodos aleatorios reciben el flujo del reactivo (véase {@link FlujosAleatorios}).
  *
  * @author Eduardo Mart&iacute;nez Cruz
  */
 public class Utilidades {
 
-    public static final Random RANDOM = new Random();
-    private static final int MAXIMOS_INTENTOS_GENERACION_CON_CRITERIO = 500;
-
+    /** Coeficiente 1 de x: un 1 que no es la última cifra de otro número. */
+    private static final Pattern COEFICIENTE_UNO = Pattern.compile("(?<![0-9])1x");
 
     public static String generaComentario(String prefijo, int numeroReactivo, int posiciones){
         return prefijo + Utilidades.digitoACadena(numeroReactivo, posiciones);
@@ -33,76 +34,85 @@ public class Utilidades {
      * Genera un numero aleatorio entero entre inferior y superior incluyendo
      * los extremos.
      *
+     * @param aleatorio flujo del reactivo
      * @param inferior lower bound of random number
      * @param superior upper bound of random number
      * @return random number between  lower and upper bound
      */
-    public static int obtenerEnteroAleatorio(int inferior, int superior) {
-        return (int) (RANDOM.nextDouble() * ((superior - inferior) + 1) + inferior);
+    public static int obtenerEnteroAleatorio(SplittableRandom aleatorio, int inferior, int superior) {
+        return aleatorio.nextInt(inferior, superior + 1);
     }
-    public static int obtenerParAleatorio(int inferior, int superior) {
-        int candidato=(int) (RANDOM.nextDouble() * ((superior - inferior) + 1) + inferior);
-        if(candidato%2==1){
-            candidato++;
-        }
-        return candidato;
+    /**
+     * Número par uniforme entre inferior y superior incluyendo los extremos.
+     */
+    public static int obtenerParAleatorio(SplittableRandom aleatorio, int inferior, int superior) {
+        return obtenerDeParidad(aleatorio, inferior, superior, 0, null);
     }
-    public static int obtenerImparAleatorio(int inferior, int superior) {
-        int candidato=(int) (RANDOM.nextDouble() * ((superior - inferior) + 1) + inferior);
-        if(candidato%2==0){
-            candidato++;
-        }
-        return candidato;
+
+    /**
+     * Número impar uniforme entre inferior y superior incluyendo los extremos.
+     */
+    public static int obtenerImparAleatorio(SplittableRandom aleatorio, int inferior, int superior) {
+        return obtenerDeParidad(aleatorio, inferior, superior, 1, null);
+    }
+
+    public static int obtenerImparAleatorioDistintoDe(SplittableRandom flujo, int inferior, int superior, int distintoDe){
+        return obtenerDeParidad(flujo, inferior, superior, 1, distintoDe);
     }
 
-    public static int obtenerImparAleatorioDistintoDe(int inferior, int superior, int distintoDe){
-        int intentos = MAXIMOS_INTENTOS_GENERACION_CON_CRITERIO;
-        int aleatorio;
-        do{
-            aleatorio = obtenerImparAleatorio(inferior, superior);
-            intentos--;
-        }while(intentos>=0 && aleatorio == distintoDe);
-        if(intentos<0){
-            throw new RuntimeException("No se ha podido encontrar un numero aleatorio distinto de "+distintoDe+
-                    " usando la cota ["+inferior+"-"+superior+"]");
+    /**
+     * Entero uniforme entre inferior y superior, sin distintoDe, en una sola tirada.
+     */
+    public static int obtenerEnteroAleatorioDistintoDe(SplittableRandom flujo, int inferior, int superior, int distintoDe){
+        boolean excluido = inferior <= distintoDe && distintoDe <= superior;
+        if (superior - inferior + 1 - (excluido ? 1 : 0) < 1) {
+            throw new RuntimeException("No hay un numero aleatorio distinto de "+distintoDe+
+                    " en la cota ["+inferior+"-"+superior+"]");
         }
-        return aleatorio;
+        int aleatorio = flujo.nextInt(inferior, superior + (excluido ? 0 : 1));
+        return excluido && aleatorio >= distintoDe ? aleatorio + 1 : aleatorio;
     }
 
-    public static int obtenerEnteroAleatorioDistintoDe(int inferior, int superior, int distintoDe){
-        int intentos = MAXIMOS_INTENTOS_GENERACION_CON_CRITERIO;
-        int aleatorio;
-        do{
-            aleatorio = obtenerEnteroAleatorio(inferior, superior);  
-            intentos--;
-        }while(intentos>=0 && aleatorio == distintoDe);
-        if(intentos<0){
-            throw new RuntimeException("No se ha podido encontrar un numero aleatorio distinto de "+distintoDe+
-                    " usando la cota ["+inferior+"-"+superior+"]");
+    /**
+     * Toma en una sola tirada un número de la paridad dada en la cota, sin salirse de ella,
+     * saltando distintoDe si no es null.
+     */
+    private static int obtenerDeParidad(SplittableRandom flujo, int inferior, int superior, int paridad,
+                                        Integer distintoDe) {
+        int primero = Math.floorMod(inferior, 2) == paridad ? inferior : inferior + 1;
+        int cuantos = primero > superior ? 0 : (superior - primero) / 2 + 1;
+        boolean excluido = distintoDe != null && distintoDe >= primero && distintoDe <= superior
+                && Math.floorMod(distintoDe, 2) == paridad;
+        if (cuantos - (excluido ? 1 : 0) < 1) {
+            throw new RuntimeException("No hay un numero aleatorio " + (paridad == 0 ? "par" : "impar")
+                    + (distintoDe == null ? "" : " distinto de " + distintoDe)
+                    + " en la cota [" + inferior + "-" + superior + "]");
         }
-        return aleatorio;
+        int aleatorio = primero + 2 * flujo.nextInt(cuantos - (excluido ? 1 : 0));
+        return excluido && aleatorio >= distintoDe ? aleatorio + 2 : aleatorio;
     }
 
     public static void main(String... f)  {
+        SplittableRandom aleatorio = FlujosAleatorios.flujo("Utilidades", 0, 1);
         for(int i=0; i<10;i++){
-            System.out.println(Utilidades.eventoAleatorioDentroDeProbabilidad(50));
+            System.out.println(Utilidades.eventoAleatorioDentroDeProbabilidad(aleatorio, 50));
         }
     }
 
     @SafeVarargs
-    public static <T> T obtenerAleatorioDeArreglo(T... dominio) {
+    public static <T> T obtenerAleatorioDeArreglo(SplittableRandom flujo, T... dominio) {
         T aleatorio =null;
         if (dominio.length > 0) {
-            int indiceAleatorio = Utilidades.obtenerEnteroAleatorio(0, dominio.length - 1);
+            int indiceAleatorio = Utilidades.obtenerEnteroAleatorio(flujo, 0, dominio.length - 1);
             aleatorio = dominio[indiceAleatorio];
         }
         return aleatorio;
     }
 
 
-    public static boolean eventoAleatorioDentroDeProbabilidad(int probabilidad){
+    public static boolean eventoAleatorioDentroDeProbabilidad(SplittableRandom flujo, int probabilidad){
         validarPorcentaje(probabilidad);
-        int aleatorio = obtenerEnteroAleatorio(1, 100);
+        int aleatorio = obtenerEnteroAleatorio(flujo, 1, 100);
         return probabilidad > 0 && aleatorio <= probabilidad;
     }
 
@@ -127,4 +137,14 @@ public class Utilidades {
             return maximoComunDivisor(b,a%b);
     }
 
+    /**
+     * Omite el coeficiente 1 en el texto de un polinomio: "1x^3-1x" queda "x^3-x", pero
+     * "21x^2" no cambia.
+     * @param expresion polinomio en LaTeX con los coeficientes ya sustituidos
+     * @return la expresión para mostrar en el reactivo
+     */
+    public static String omiteCoeficienteUno(String expresion) {
+        return COEFICIENTE_UNO.matcher(expresion).replaceAll("x");
+    }
+
 }